@@ -2,6 +2,7 @@ package student;
 
 
 import java.util.List;
+import java.util.Map;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
@@ -32,6 +33,8 @@ public class BoardGame {
     private final double averageRating;
     /** Year the game was published. */
     private final int yearPublished;
+    /** Raw values of the extra columns, by column index, empty if none were loaded. */
+    private final String[] extras;
 
     /**
      * Constructor for the BoardGame object.
@@ -59,6 +62,40 @@ public class BoardGame {
         this.rank = rank;
         this.averageRating = averageRating;
         this.yearPublished = yearPublished;
+        this.extras = new String[0];
+    }
+
+    /**
+     * Constructor for the BoardGame object with values for extra csv columns.
+     * 
+     * @param name game name
+     * @param id unique identifier
+     * @param minPlayers minimum number of players
+     * @param maxPlayers maximum number of players
+     * @param minPlayTime minimum play time in minutes
+     * @param maxPlayTime maximum play time in minutes
+     * @param difficulty average difficulty of the game
+     * @param rank rank of the game
+     * @param averageRating average rating of the game
+     * @param yearPublished year the game was published
+     * @param extras raw values of extra columns, columns left out have no value
+     */
+    public BoardGame(String name, int id, int minPlayers, int maxPlayers, int minPlayTime,
+            int maxPlayTime, double difficulty, int rank, double averageRating, int yearPublished,
+            Map<ExtraColumn, String> extras) {
+        this.name = name;
+        this.id = id;
+        this.minPlayers = minPlayers;
+        this.maxPlayers = maxPlayers;
+        this.maxPlayTime = maxPlayTime;
+        this.minPlayTime = minPlayTime;
+        this.difficulty = difficulty;
+        this.rank = rank;
+        this.averageRating = averageRating;
+        this.yearPublished = yearPublished;
+        int size = extras.keySet().stream().mapToInt(ExtraColumn::getIndex).max().orElse(-1) + 1;
+        this.extras = new String[size];
+        extras.forEach((column, value) -> this.extras[column.getIndex()] = value);
     }
 
     /**
@@ -156,6 +193,17 @@ public class BoardGame {
         return yearPublished;
     }
 
+    /**
+     * Get the raw value of an extra csv column.
+     * 
+     * @param column the extra column
+     * @return the value as it appeared in the csv file, "" if the game has none
+     */
+    public String getExtra(ExtraColumn column) {
+        int index = column.getIndex();
+        return index < extras.length && extras[index] != null ? extras[index] : "";
+    }
+
     /**
      * Get the Name (value) pair based on the GameData enum.
      * 
@@ -207,7 +255,7 @@ public class BoardGame {
      * 
      * Two BoardGame objects are considered equal if all fields are equal, except for the following:
      * - minPlayers - maxPlayers - maxPlayTime - minPlayTime - difficulty - rank - averageRating -
-     * yearPublished
+     * yearPublished - extras
      * 
      * @param obj object to compare
      * @return true if the objects are equal, false otherwise
@@ -216,14 +264,14 @@ public class BoardGame {
     public boolean equals(Object obj) {
         return EqualsBuilder.reflectionEquals(this, obj, // exclude the following fields
                 List.of("minPlayers", "maxPlayers", "maxPlayTime", "minPlayTime", "difficulty",
-                        "rank", "averageRating", "yearPublished"));
+                        "rank", "averageRating", "yearPublished", "extras"));
     }
 
     /**
      * Get the hash code of the object.
      * 
      * The hash code is based on all fields, except for the following: - minPlayers - maxPlayers -
-     * maxPlayTime - minPlayTime - difficulty - rank - averageRating - yearPublished
+     * maxPlayTime - minPlayTime - difficulty - rank - averageRating - yearPublished - extras
      * 
      * @return hash code of the object
      */
@@ -231,7 +279,7 @@ public class BoardGame {
     public int hashCode() {
         return HashCodeBuilder.reflectionHashCode(this, // exclude the following fields
                 List.of("minPlayers", "maxPlayers", "maxPlayTime", "minPlayTime", "difficulty",
-                        "rank", "averageRating", "yearPublished"));
+                        "rank", "averageRating", "yearPublished", "extras"));
     }
 
 
@@ -0,0 +1,144 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The games that changed between two versions of the catalog.
+ *
+ * A change lists the games that were added or modified, as they are in the new catalog, and the
+ * ids of the games that were removed. Games are matched by id. Listeners of a
+ * {@link VersionedCatalog} receive one change per published version, so they only need to look
+ * at the changed games rather than at the whole catalog.
+ */
+public final class CatalogChange {
+    /** The catalog before the change. */
+    private final GameCatalog previous;
+    /** The catalog after the change. */
+    private final GameCatalog catalog;
+    /** The version number of the catalog after the change. */
+    private final long version;
+    /** Games that were added or modified, as in the new catalog. */
+    private final List<BoardGame> upserted;
+    /** Ids of the games that were removed. */
+    private final Set<Integer> removedIds;
+
+    /**
+     * Constructor for a catalog change.
+     *
+     * @param previous the catalog before the change
+     * @param catalog the catalog after the change
+     * @param version the version number of the catalog after the change
+     * @param upserted the games added or modified
+     * @param removedIds the ids of the games removed
+     */
+    CatalogChange(GameCatalog previous, GameCatalog catalog, long version,
+            List<BoardGame> upserted, Set<Integer> removedIds) {
+        this.previous = previous;
+        this.catalog = catalog;
+        this.version = version;
+        this.upserted = Collections.unmodifiableList(upserted);
+        this.removedIds = Collections.unmodifiableSet(removedIds);
+    }
+
+    /**
+     * Works out the change between two catalogs by comparing their games by id.
+     *
+     * @param previous the catalog before the change
+     * @param catalog the catalog after the change
+     * @param version the version number of the catalog after the change
+     * @return the change
+     */
+    static CatalogChange diff(GameCatalog previous, GameCatalog catalog, long version) {
+        List<BoardGame> upserted = new ArrayList<>();
+        for (int row = 0; row < catalog.size(); row++) {
+            BoardGame game = catalog.game(row);
+            int old = previous.rowOf(game.getId());
+            if (old < 0 || !sameValues(previous.game(old), game)) {
+                upserted.add(game);
+            }
+        }
+        Set<Integer> removedIds = new HashSet<>();
+        for (int row = 0; row < previous.size(); row++) {
+            int id = previous.game(row).getId();
+            if (catalog.rowOf(id) < 0) {
+                removedIds.add(id);
+            }
+        }
+        return new CatalogChange(previous, catalog, version, upserted, removedIds);
+    }
+
+    /**
+     * Checks whether two games hold the same value in every column, the extra columns included.
+     *
+     * BoardGame.equals leaves out most numeric columns, so it cannot tell whether a game changed.
+     *
+     * @param a a game
+     * @param b another game
+     * @return true if every column is equal
+     */
+    static boolean sameValues(BoardGame a, BoardGame b) {
+        for (ExtraColumn column : ExtraColumn.values()) {
+            if (!a.getExtra(column).equals(b.getExtra(column))) {
+                return false;
+            }
+        }
+        return a.getId() == b.getId() && Objects.equals(a.getName(), b.getName())
+                && a.getMinPlayers() == b.getMinPlayers() && a.getMaxPlayers() == b.getMaxPlayers()
+                && a.getMinPlayTime() == b.getMinPlayTime()
+                && a.getMaxPlayTime() == b.getMaxPlayTime()
+                && Double.compare(a.getDifficulty(), b.getDifficulty()) == 0
+                && a.getRank() == b.getRank()
+                && Double.compare(a.getRating(), b.getRating()) == 0
+                && a.getYearPublished() == b.getYearPublished();
+    }
+
+    /**
+     * Gets the catalog before the change.
+     *
+     * @return the previous catalog
+     */
+    public GameCatalog getPreviousCatalog() {
+        return previous;
+    }
+
+    /**
+     * Gets the catalog after the change.
+     *
+     * @return the new catalog
+     */
+    public GameCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Gets the version number of the catalog after the change.
+     *
+     * @return the new version number
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the games that were added or modified, as they are in the new catalog.
+     *
+     * @return an unmodifiable list of games
+     */
+    public List<BoardGame> getUpserted() {
+        return upserted;
+    }
+
+    /**
+     * Gets the ids of the games that were removed.
+     *
+     * @return an unmodifiable set of game ids
+     */
+    public Set<Integer> getRemovedIds() {
+        return removedIds;
+    }
+}
@@ -0,0 +1,216 @@
+package student;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Summary statistics of one numeric column over a set of games: count, minimum, maximum, sum and
+ * mean, plus a histogram.
+ *
+ * The histogram splits the range of the column over the whole catalog into bins of equal width,
+ * so histograms of different filters on the same catalog line up. The last bin includes the
+ * maximum.
+ */
+public final class ColumnStats {
+    /** Number of histogram bins used when none is given. */
+    public static final int DEFAULT_BINS = 10;
+
+    /** The column. */
+    private final GameData column;
+    /** Number of games. */
+    private final long count;
+    /** Smallest value, NaN if there are no games. */
+    private final double min;
+    /** Largest value, NaN if there are no games. */
+    private final double max;
+    /** Sum of the values. */
+    private final double sum;
+    /** Lower bound of the first bin. */
+    private final double lower;
+    /** Upper bound of the last bin. */
+    private final double upper;
+    /** Number of games per bin. */
+    private final long[] histogram;
+
+    /**
+     * Constructor for column statistics.
+     *
+     * @param column the column
+     * @param count the number of games
+     * @param min the smallest value
+     * @param max the largest value
+     * @param sum the sum of the values
+     * @param lower the lower bound of the first bin
+     * @param upper the upper bound of the last bin
+     * @param histogram the number of games per bin
+     */
+    private ColumnStats(GameData column, long count, double min, double max, double sum,
+            double lower, double upper, long[] histogram) {
+        this.column = column;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.lower = lower;
+        this.upper = upper;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Computes the statistics of several columns in one pass over the rows. Values are read
+     * straight from the column arrays, and nothing is allocated per row.
+     *
+     * @param catalog the catalog holding the rows
+     * @param rows the rows to read
+     * @param matches the rows of those to count, null for all of them
+     * @param columns the numeric columns
+     * @param bins the number of histogram bins
+     * @return the statistics of each column, in the order given
+     * @throws IllegalArgumentException if a column is not numeric or bins is less than 1
+     */
+    static Map<GameData, ColumnStats> compute(GameCatalog catalog, BitSet rows,
+            IntPredicate matches, Collection<GameData> columns, int bins) {
+        if (bins < 1) {
+            throw new IllegalArgumentException("Histogram needs at least one bin: " + bins);
+        }
+        GameData[] targets = columns.toArray(new GameData[0]);
+        int k = targets.length;
+        IntToDoubleFunction[] values = new IntToDoubleFunction[k];
+        double[] lower = new double[k];
+        double[] upper = new double[k];
+        double[] width = new double[k];
+        double[] min = new double[k];
+        double[] max = new double[k];
+        double[] sum = new double[k];
+        long[][] histogram = new long[k][bins];
+        for (int c = 0; c < k; c++) {
+            values[c] = catalog.numeric(targets[c]);
+            int[] ascending = catalog.ascending(targets[c]);
+            if (ascending.length > 0) {
+                lower[c] = values[c].applyAsDouble(ascending[0]);
+                upper[c] = values[c].applyAsDouble(ascending[ascending.length - 1]);
+            }
+            width[c] = (upper[c] - lower[c]) / bins;
+            min[c] = Double.POSITIVE_INFINITY;
+            max[c] = Double.NEGATIVE_INFINITY;
+        }
+
+        long count = 0;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (matches != null && !matches.test(row)) {
+                continue;
+            }
+            count++;
+            for (int c = 0; c < k; c++) {
+                double value = values[c].applyAsDouble(row);
+                min[c] = Math.min(min[c], value);
+                max[c] = Math.max(max[c], value);
+                sum[c] += value;
+                int bin = width[c] > 0 ? (int) ((value - lower[c]) / width[c]) : 0;
+                histogram[c][Math.min(bin, bins - 1)]++;
+            }
+        }
+
+        Map<GameData, ColumnStats> stats = new LinkedHashMap<>();
+        for (int c = 0; c < k; c++) {
+            stats.put(targets[c], new ColumnStats(targets[c], count,
+                    count == 0 ? Double.NaN : min[c], count == 0 ? Double.NaN : max[c], sum[c],
+                    lower[c], upper[c], histogram[c]));
+        }
+        return stats;
+    }
+
+    /**
+     * Gets the column.
+     *
+     * @return the column
+     */
+    public GameData getColumn() {
+        return column;
+    }
+
+    /**
+     * Gets the number of games.
+     *
+     * @return the number of games
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the smallest value.
+     *
+     * @return the smallest value, NaN if there are no games
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Gets the largest value.
+     *
+     * @return the largest value, NaN if there are no games
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Gets the sum of the values.
+     *
+     * @return the sum, 0 if there are no games
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Gets the mean of the values.
+     *
+     * @return the mean, NaN if there are no games
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * Gets the number of games in each histogram bin.
+     *
+     * @return a new array with one count per bin
+     */
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    /**
+     * Gets the lower bound of a histogram bin, inclusive.
+     *
+     * @param bin the bin index
+     * @return the lower bound
+     */
+    public double getBinLower(int bin) {
+        return lower + (upper - lower) * bin / histogram.length;
+    }
+
+    /**
+     * Gets the upper bound of a histogram bin, exclusive except for the last bin.
+     *
+     * @param bin the bin index
+     * @return the upper bound
+     */
+    public double getBinUpper(int bin) {
+        return bin == histogram.length - 1 ? upper : getBinLower(bin + 1);
+    }
+
+    @Override
+    public String toString() {
+        return column + " n=" + count + " min=" + min + " max=" + max + " mean=" + getMean()
+                + " histogram=" + Arrays.toString(histogram);
+    }
+}
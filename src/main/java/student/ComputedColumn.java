@@ -0,0 +1,165 @@
+package student;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A named column whose values are computed from an {@link Expression} over the built-in numeric
+ * columns, such as {@code avgtime = (minplaytime + maxplaytime) / 2}.
+ *
+ * Once defined, the name can be used in filters ({@code avgtime < 45}) and sort specs
+ * ({@code avgtime desc}) like a built-in column. Names are not case sensitive, and must not
+ * clash with a built-in or extra column. Definitions are global, shared by every planner in the
+ * process, since filters and sort specs are parsed without a planner at hand. A name keeps its
+ * expression until it is removed; removing a column changes the keys of cached results, so
+ * results computed with the old expression are never returned for a new one.
+ *
+ * A computed column is evaluated through its expression for each row. A materialized column is
+ * evaluated once per catalog into an array instead, which suits columns used on every query.
+ */
+public final class ComputedColumn {
+    /** Defined columns, by lower case name. */
+    private static final Map<String, ComputedColumn> DEFINED = new ConcurrentHashMap<>();
+    /** Number of columns removed so far. */
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    /** The name, in lower case. */
+    private final String name;
+    /** The expression computing the values. */
+    private final Expression expression;
+    /** Whether the values are stored as an array per catalog. */
+    private final boolean materialized;
+
+    /**
+     * Constructor for a computed column.
+     *
+     * @param name the lower case name
+     * @param expression the expression
+     * @param materialized whether to store the values as an array per catalog
+     */
+    private ComputedColumn(String name, Expression expression, boolean materialized) {
+        this.name = name;
+        this.expression = expression;
+        this.materialized = materialized;
+    }
+
+    /**
+     * Defines a computed column. Defining a name again with the same expression and
+     * materialization returns the existing column.
+     *
+     * @param name the name, letters, digits and underscores, starting with a letter
+     * @param expression the expression computing the values
+     * @param materialized whether to store the values as an array per catalog
+     * @return the column
+     * @throws IllegalArgumentException if the name is not valid or already used, or the
+     *         expression is not valid
+     */
+    public static ComputedColumn define(String name, String expression, boolean materialized) {
+        String lower = name.trim().toLowerCase(Locale.ROOT);
+        if (!lower.matches("[a-z][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid column name: " + name);
+        }
+        if (isBuiltIn(lower) || ExtraColumn.lookup(lower) != null) {
+            throw new IllegalArgumentException("Name of a built-in column: " + name);
+        }
+        ComputedColumn column = new ComputedColumn(lower, Expression.parse(expression),
+                materialized);
+        ComputedColumn existing = DEFINED.putIfAbsent(lower, column);
+        if (existing == null) {
+            return column;
+        }
+        if (existing.expression.toString().equals(column.expression.toString())
+                && existing.materialized == materialized) {
+            return existing;
+        }
+        throw new IllegalArgumentException("Column already defined: " + name + " = "
+                + existing.expression);
+    }
+
+    /**
+     * Removes a computed column. Sessions that already filtered on it keep their rows, but new
+     * filters and sort specs no longer accept the name until it is defined again.
+     *
+     * @param name the name, any case
+     * @return true if a column had that name
+     */
+    public static boolean remove(String name) {
+        if (DEFINED.remove(name.trim().toLowerCase(Locale.ROOT)) == null) {
+            return false;
+        }
+        GENERATION.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Gets the number of columns removed so far, which cache keys include so that a name
+     * defined again never finds results of its previous expression.
+     *
+     * @return the generation of the definitions
+     */
+    static long generation() {
+        return GENERATION.get();
+    }
+
+    /**
+     * Finds a computed column by name.
+     *
+     * @param name the name, any case
+     * @return the column, or null if no column has that name
+     */
+    public static ComputedColumn lookup(String name) {
+        return DEFINED.get(name.trim().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Checks whether a name belongs to a built-in column or a range filter.
+     *
+     * @param name the lower case name
+     * @return true if the name is taken
+     */
+    private static boolean isBuiltIn(String name) {
+        if (name.equals("players") || name.equals("time") || name.equals("playtime")) {
+            return true;
+        }
+        try {
+            GameData.fromString(name);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the name.
+     *
+     * @return the lower case name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the expression computing the values.
+     *
+     * @return the expression
+     */
+    public Expression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Checks whether the values are stored as an array per catalog.
+     *
+     * @return true for materialized columns
+     */
+    public boolean isMaterialized() {
+        return materialized;
+    }
+
+    @Override
+    public String toString() {
+        return name + " = " + expression;
+    }
+}
@@ -1,10 +1,7 @@
 package student;
 
-import java.util.Collections;
-import java.util.List;
 import java.util.Properties;
 import java.util.Scanner;
-import java.util.stream.Stream;
 import java.util.Random;
 
 
@@ -83,7 +80,7 @@ public class ConsoleApp {
      * Generate a random number based on the current filter.
      */
     private void randomNumber() {
-        int max = (int) planner.filter("").count();
+        int max = (int) planner.count("");
         if (max > 0) {
             int random = RND.nextInt(max) + 1; // random is 0-(max-1) so add 1.
             printOutput("%s %d%n", ConsoleText.EASTER_EGG, random);
@@ -115,13 +112,11 @@ public class ConsoleApp {
      * Process the filter command.
      */
     private void processFilter() {
-        Stream<BoardGame> result = null;
+        ResultView result = null;
         GameData sortON = GameData.NAME; // default
 
         if (current.hasNext()) {
-            String filter = remainder();
-            filter = filter.replaceAll("\\s", ""); // remove spaces
-            filter = filter.toLowerCase(); // make it lower case
+            String filter = compactFilter(remainder());
             if (filter.equalsIgnoreCase(ConsoleText.CMD_QUESTION.toString())) {
                 printOutput("%s%n", ConsoleText.FILTER_HELP);
                 return; // leave early. only doing ? as help could be a game name.
@@ -132,53 +127,78 @@ public class ConsoleApp {
                 printOutput("%s%n", ConsoleText.FILTERED_CLEAR);
                 return; // leave early.
             }
+            if (filter.equalsIgnoreCase(ConsoleText.CMD_UNDO.toString())) {
+                planner.undo(); // then show what the filter is back to
+                printFilterView(planner.view(""), sortON);
+                return; // leave early.
+            }
             if (filter.contains(ConsoleText.CMD_SORT_OPTION.toString())) {
                 // break it up, figure out sort
-                boolean ascending = true; // default
+                SortSpec sortSpec = SortSpec.of(sortON, true); // default
                 String[] parts = filter.split(ConsoleText.CMD_SORT_OPTION.toString());
                 if (parts.length == 2) {
-                    String sort = parts[1];
-                    if (sort.contains(ConsoleText.CMD_SORT_OPTION_DIRECTION_ASC.toString())) {
-                        ascending = true;
-                        sort = sort.substring(0,
-                                sort.indexOf(ConsoleText.CMD_SORT_OPTION_DIRECTION_ASC.toString()));
-                    } else if (sort
-                            .contains(ConsoleText.CMD_SORT_OPTION_DIRECTION_DESC.toString())) {
-                        ascending = false;
-                        sort = sort.substring(0, sort
-                                .indexOf(ConsoleText.CMD_SORT_OPTION_DIRECTION_DESC.toString()));
-                    }
+                    // one or more keys, such as rating desc, difficulty asc, name asc
                     try {
-                        sortON = GameData.fromString(sort);
+                        sortSpec = SortSpec.parse(parts[1]);
                     } catch (IllegalArgumentException e) {
                         printOutput("%s%n", ConsoleText.INVALID);
                         return; // leave early.
                     }
+                    if (sortSpec.getPrimaryColumn() != null) {
+                        sortON = sortSpec.getPrimaryColumn(); // computed columns show no info
+                    }
                 }
 
-                result = planner.filter(parts[0], sortON, ascending);  // NOTICE: sortON and ascending are used here.
+                result = planner.view(parts[0], sortSpec);  // NOTICE: the full sort spec is used here.
             } else {
-                result = planner.filter(filter); // default sort
+                result = planner.view(filter); // default sort
             }
         } else {
             printOutput("%s%n", ConsoleText.NO_FILTER);
-            result = planner.filter("");
+            result = planner.view("");
+        }
+        printFilterView(result, sortON);
+    }
+
+    /**
+     * Removes the spaces from a filter and makes it lower case. The patterns of regex and glob
+     * clauses are kept as typed, as spaces and escapes matter there, and they ignore case anyway.
+     * 
+     * @param filter the filter as typed
+     * @return the compacted filter
+     */
+    private static String compactFilter(String filter) {
+        StringBuilder compact = new StringBuilder();
+        for (String clause : FilterHandler.splitClauses(filter)) {
+            if (compact.length() > 0) {
+                compact.append(',');
+            }
+            Operations operator = Operations.getOperatorFromStr(clause);
+            if (operator == Operations.MATCHES || operator == Operations.GLOB) {
+                int at = clause.indexOf(operator.getOperator());
+                compact.append(clause.substring(0, at).replaceAll("\\s", "").toLowerCase())
+                        .append(operator.getOperator())
+                        .append(clause.substring(at + operator.getOperator().length()).trim());
+            } else {
+                compact.append(clause.replaceAll("\\s", "").toLowerCase()); // remove spaces
+            }
         }
-        printFilterStream(result, sortON);
+        return compact.toString();
     }
 
     /**
-     * Print the filtered stream of games.
+     * Print the filtered view of games.
      * 
-     * @param games  the stream of games to print.
+     * @param games  the view of games to print.
      * @param sortON also is the column used for 'extra info' based on the sort
      *               type.
      */
-    private static void printFilterStream(Stream<BoardGame> games, GameData sortON) {
-        int counter = 1;
-        List<BoardGame> gameList = games != null ? games.toList() : Collections.emptyList();
-        for (BoardGame game : gameList) {
-            printOutput("%d: %s%n", counter++, game.toStringWithInfo(sortON));
+    private static void printFilterView(ResultView games, GameData sortON) {
+        if (games == null) {
+            return;
+        }
+        for (int i = 0; i < games.size(); i++) {
+            printOutput("%d: %s%n", i + 1, games.get(i).toStringWithInfo(sortON));
         }
     }
 
@@ -203,7 +223,7 @@ public class ConsoleApp {
                         break;
                     }
                     try {
-                        gameList.addToList(toAdd, planner.filter(""));
+                        gameList.addToList(toAdd, planner.view(""));
                     } catch (IllegalArgumentException e) {
                         printOutput("%s %s%n", ConsoleText.INVALID_LIST, toAdd);
                     }
@@ -332,7 +352,7 @@ public class ConsoleApp {
         /** commands general. */
         CMD_EXIT, CMD_HELP, CMD_QUESTION, CMD_FILTER, CMD_LIST,
         /** commands specific to lists and filters. */
-        CMD_SHOW, CMD_ADD, CMD_REMOVE, CMD_CLEAR, CMD_SAVE,
+        CMD_SHOW, CMD_ADD, CMD_REMOVE, CMD_CLEAR, CMD_SAVE, CMD_UNDO,
         /** more options on commands. */
         CMD_OPTION_ALL, CMD_SORT_OPTION, CMD_SORT_OPTION_DIRECTION_ASC, CMD_SORT_OPTION_DIRECTION_DESC;
 
@@ -0,0 +1,296 @@
+package student;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * An arithmetic expression over the numeric columns of a game, such as
+ * {@code (minplaytime + maxplaytime) / 2} or {@code rating / difficulty}.
+ *
+ * Expressions hold numbers, numeric column names, the operators + - * / and parentheses, with the
+ * usual precedence. The text is parsed once into a tree of primitive functions, with constant
+ * parts folded. Binding the tree to a catalog reads the column arrays once and gives a function
+ * from row id to value, so evaluating a row never boxes or looks up a column. Division follows
+ * double arithmetic, so dividing by zero gives an infinity or NaN rather than an error.
+ *
+ * Instances are immutable.
+ */
+public final class Expression {
+    /** The text the expression was parsed from. */
+    private final String text;
+    /** The root of the tree. */
+    private final Node root;
+
+    /**
+     * Constructor for an expression.
+     *
+     * @param text the text
+     * @param root the root of the parsed tree
+     */
+    private Expression(String text, Node root) {
+        this.text = text;
+        this.root = root;
+    }
+
+    /**
+     * Parses an expression.
+     *
+     * @param text the expression text
+     * @return the expression
+     * @throws IllegalArgumentException if the text is not a valid expression or names a column
+     *         that is not numeric
+     */
+    public static Expression parse(String text) {
+        Parser parser = new Parser(text);
+        Node root = parser.sum();
+        if (!parser.atEnd()) {
+            throw new IllegalArgumentException("Unexpected '" + parser.text.charAt(parser.position)
+                    + "' in expression " + text);
+        }
+        return new Expression(text.trim(), root);
+    }
+
+    /**
+     * Binds the expression to the columns of a catalog.
+     *
+     * @param catalog the catalog
+     * @return the value of the expression for each row id
+     */
+    public IntToDoubleFunction bind(GameCatalog catalog) {
+        return root.rows.apply(catalog);
+    }
+
+    /**
+     * Evaluates the expression for a game.
+     *
+     * @param game the game
+     * @return the value
+     */
+    public double evaluate(BoardGame game) {
+        return root.games.applyAsDouble(game);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * A node of the tree: the same value computed from a catalog row or from a game.
+     */
+    private static final class Node {
+        /** Binds the node to a catalog. */
+        private final Function<GameCatalog, IntToDoubleFunction> rows;
+        /** Computes the node from a game. */
+        private final ToDoubleFunction<BoardGame> games;
+        /** The value of a constant node, NaN for other nodes. */
+        private final double constant;
+        /** Whether the node is constant. */
+        private final boolean isConstant;
+
+        /**
+         * Constructor for a node that reads columns.
+         *
+         * @param rows binds the node to a catalog
+         * @param games computes the node from a game
+         */
+        private Node(Function<GameCatalog, IntToDoubleFunction> rows,
+                ToDoubleFunction<BoardGame> games) {
+            this.rows = rows;
+            this.games = games;
+            this.constant = Double.NaN;
+            this.isConstant = false;
+        }
+
+        /**
+         * Constructor for a constant node.
+         *
+         * @param value the constant value
+         */
+        private Node(double value) {
+            this.rows = catalog -> row -> value;
+            this.games = game -> value;
+            this.constant = value;
+            this.isConstant = true;
+        }
+
+        /**
+         * Creates the node for a column.
+         *
+         * @param column a numeric column
+         * @return the node
+         */
+        private static Node column(GameData column) {
+            return new Node(catalog -> catalog.numeric(column), game -> value(game, column));
+        }
+
+        /**
+         * Combines two nodes with an operator, folding constants.
+         *
+         * @param left the left operand
+         * @param right the right operand
+         * @param operator the operator
+         * @return the node
+         */
+        private static Node combine(Node left, Node right, DoubleBinaryOperator operator) {
+            if (left.isConstant && right.isConstant) {
+                return new Node(operator.applyAsDouble(left.constant, right.constant));
+            }
+            return new Node(catalog -> {
+                IntToDoubleFunction a = left.rows.apply(catalog);
+                IntToDoubleFunction b = right.rows.apply(catalog);
+                return row -> operator.applyAsDouble(a.applyAsDouble(row), b.applyAsDouble(row));
+            }, game -> operator.applyAsDouble(left.games.applyAsDouble(game),
+                    right.games.applyAsDouble(game)));
+        }
+
+        /**
+         * Reads a numeric value from a game.
+         *
+         * @param game the game
+         * @param column a numeric column
+         * @return the value
+         */
+        private static double value(BoardGame game, GameData column) {
+            return switch (column) {
+                case RATING -> game.getRating();
+                case DIFFICULTY -> game.getDifficulty();
+                case RANK -> game.getRank();
+                case MIN_PLAYERS -> game.getMinPlayers();
+                case MAX_PLAYERS -> game.getMaxPlayers();
+                case MIN_TIME -> game.getMinPlayTime();
+                case MAX_TIME -> game.getMaxPlayTime();
+                case YEAR -> game.getYearPublished();
+                default -> throw new IllegalArgumentException("Not a numeric column " + column);
+            };
+        }
+    }
+
+    /**
+     * Recursive descent parser over the text of an expression. Spaces are skipped between
+     * tokens, so {@code 1 2} or {@code min players} are rejected rather than joined.
+     */
+    private static final class Parser {
+        /** The expression text. */
+        private final String text;
+        /** Position of the next character. */
+        private int position;
+
+        /**
+         * Constructor for a parser.
+         *
+         * @param text the expression text
+         */
+        private Parser(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Skips spaces, then checks whether the whole text was read.
+         *
+         * @return true if no token is left
+         */
+        private boolean atEnd() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            return position >= text.length();
+        }
+
+        /**
+         * Parses terms joined by + and -.
+         *
+         * @return the node
+         */
+        private Node sum() {
+            Node node = product();
+            while (!atEnd()) {
+                char c = text.charAt(position);
+                if (c == '+') {
+                    position++;
+                    node = Node.combine(node, product(), (a, b) -> a + b);
+                } else if (c == '-') {
+                    position++;
+                    node = Node.combine(node, product(), (a, b) -> a - b);
+                } else {
+                    return node;
+                }
+            }
+            return node;
+        }
+
+        /**
+         * Parses factors joined by * and /.
+         *
+         * @return the node
+         */
+        private Node product() {
+            Node node = factor();
+            while (!atEnd()) {
+                char c = text.charAt(position);
+                if (c == '*') {
+                    position++;
+                    node = Node.combine(node, factor(), (a, b) -> a * b);
+                } else if (c == '/') {
+                    position++;
+                    node = Node.combine(node, factor(), (a, b) -> a / b);
+                } else {
+                    return node;
+                }
+            }
+            return node;
+        }
+
+        /**
+         * Parses a number, a column, a negated factor or an expression in parentheses.
+         *
+         * @return the node
+         */
+        private Node factor() {
+            if (atEnd()) {
+                throw new IllegalArgumentException("Unexpected end of expression " + text);
+            }
+            char c = text.charAt(position);
+            if (c == '-') {
+                position++;
+                return Node.combine(new Node(0), factor(), (a, b) -> a - b);
+            }
+            if (c == '(') {
+                position++;
+                Node node = sum();
+                if (atEnd() || text.charAt(position) != ')') {
+                    throw new IllegalArgumentException("Missing ')' in expression " + text);
+                }
+                position++;
+                return node;
+            }
+            int start = position;
+            if (Character.isDigit(c) || c == '.') {
+                while (position < text.length() && (Character.isDigit(text.charAt(position))
+                        || text.charAt(position) == '.')) {
+                    position++;
+                }
+                try {
+                    return new Node(Double.parseDouble(text.substring(start, position)));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid number in expression " + text);
+                }
+            }
+            while (position < text.length() && (Character.isLetterOrDigit(text.charAt(position))
+                    || text.charAt(position) == '_')) {
+                position++;
+            }
+            if (start == position) {
+                throw new IllegalArgumentException("Unexpected '" + c + "' in expression "
+                        + text);
+            }
+            GameData column = GameData.fromString(text.substring(start, position));
+            if (!GameCatalog.isIntColumn(column) && !GameCatalog.isDoubleColumn(column)) {
+                throw new IllegalArgumentException("Not a numeric column: " + column);
+            }
+            return Node.column(column);
+        }
+    }
+}
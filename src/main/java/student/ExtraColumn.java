@@ -0,0 +1,185 @@
+package student;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A column of the csv file beyond the ten in {@link GameData}, such as {@code numowned} or
+ * {@code bggrecagerange}. Registered columns are read by {@link GamesLoader}, and can be used in
+ * filters ({@code objecttype==thing}) and sort specs ({@code numowned desc}) by their csv name,
+ * like a built-in column.
+ *
+ * The schema is a registry shared by every catalog, as games keep their extra values by column
+ * position. The columns below are registered up front; more can be registered before loading.
+ *
+ * Memory per game, for each registered column:
+ * <ul>
+ * <li>every game holds one reference to its raw value (4 bytes with compressed references).
+ * Equal values loaded from one file share a single string.</li>
+ * <li>a {@link Kind#NUMBER} column is stored by each catalog as a double array, 8 bytes.</li>
+ * <li>a {@link Kind#CATEGORY} column is dictionary encoded: each catalog stores the distinct
+ * values once, sorted, and a code per game in 1 byte for up to 256 values, 2 bytes for up to
+ * 65536 values and 4 bytes beyond.</li>
+ * <li>sorting on a column adds 8 bytes, its ranks and ascending order, on first use.</li>
+ * </ul>
+ */
+public final class ExtraColumn {
+    /** Registered columns, by position. */
+    private static final List<ExtraColumn> COLUMNS = new CopyOnWriteArrayList<>();
+    /** Registered columns, by name. */
+    private static final Map<String, ExtraColumn> BY_NAME = new ConcurrentHashMap<>();
+
+    /** Number of users owning the game. */
+    public static final ExtraColumn NUM_OWNED = register("numowned", Kind.NUMBER);
+    /** Type of the item, such as thing. */
+    public static final ExtraColumn OBJECT_TYPE = register("objecttype", Kind.CATEGORY);
+    /** Best player counts as voted on BGG. */
+    public static final ExtraColumn BEST_PLAYERS = register("bggbestplayers", Kind.CATEGORY);
+    /** Recommended age, such as 10+. */
+    public static final ExtraColumn AGE_RANGE = register("bggrecagerange", Kind.CATEGORY);
+    /** How much text must be read during play. */
+    public static final ExtraColumn LANGUAGE_DEPENDENCE =
+            register("bgglanguagedependence", Kind.CATEGORY);
+
+    /** The csv column name, in lower case. */
+    private final String name;
+    /** How the values are stored. */
+    private final Kind kind;
+    /** The position of the column among the registered columns. */
+    private final int index;
+
+    /**
+     * How the values of a column are stored.
+     */
+    public enum Kind {
+        /** Decimal numbers, missing or invalid values read as NaN. */
+        NUMBER,
+        /** Text from a small set of values, dictionary encoded. */
+        CATEGORY
+    }
+
+    /**
+     * Constructor for an extra column.
+     *
+     * @param name the lower case csv column name
+     * @param kind how the values are stored
+     * @param index the position among the registered columns
+     */
+    private ExtraColumn(String name, Kind kind, int index) {
+        this.name = name;
+        this.kind = kind;
+        this.index = index;
+    }
+
+    /**
+     * Registers a csv column to load. Registering a name again with the same kind returns the
+     * existing column. Games loaded before the column was registered have no value for it.
+     *
+     * @param name the csv column name
+     * @param kind how the values are stored
+     * @return the column
+     * @throws IllegalArgumentException if the name belongs to a built-in or computed column, or
+     *         is registered with another kind
+     */
+    public static synchronized ExtraColumn register(String name, Kind kind) {
+        String lower = name.trim().toLowerCase(Locale.ROOT);
+        ExtraColumn existing = BY_NAME.get(lower);
+        if (existing != null) {
+            if (existing.kind != kind) {
+                throw new IllegalArgumentException("Column already registered: " + name + " as "
+                        + existing.kind);
+            }
+            return existing;
+        }
+        if (lower.isEmpty() || isGameData(lower) || ComputedColumn.lookup(lower) != null) {
+            throw new IllegalArgumentException("Invalid column name: " + name);
+        }
+        ExtraColumn column = new ExtraColumn(lower, kind, COLUMNS.size());
+        COLUMNS.add(column);
+        BY_NAME.put(lower, column);
+        return column;
+    }
+
+    /**
+     * Finds a registered column by name.
+     *
+     * @param name the csv column name, any case
+     * @return the column, or null if no column has that name
+     */
+    public static ExtraColumn lookup(String name) {
+        return BY_NAME.get(name.trim().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Gets the registered columns.
+     *
+     * @return the columns, in the order registered
+     */
+    public static List<ExtraColumn> values() {
+        return List.copyOf(COLUMNS);
+    }
+
+    /**
+     * Parses a value of a number column.
+     *
+     * @param value the raw value
+     * @return the number, or NaN if the value is missing or not a number
+     */
+    public static double parseNumber(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Checks whether a name belongs to a built-in column.
+     *
+     * @param name the lower case name
+     * @return true if the name is taken
+     */
+    private static boolean isGameData(String name) {
+        try {
+            GameData.fromString(name);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the csv column name.
+     *
+     * @return the lower case name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets how the values are stored.
+     *
+     * @return the kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the position of the column among the registered columns.
+     *
+     * @return the index
+     */
+    int getIndex() {
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,17 @@
+package student;
+
+/**
+ * The facets the games of a filter can be counted by, to show how many games remain for each
+ * value beside a filter control.
+ */
+public enum Facet {
+    /**
+     * Player counts from 1 up. A game is counted for every player count it supports, so one game
+     * can fall in several buckets. The last bucket counts games for that many players or more.
+     */
+    PLAYERS,
+    /** Difficulty bands one point wide. The last band counts every harder game. */
+    DIFFICULTY,
+    /** Decades of publication, from the earliest to the latest in the collection. */
+    DECADE
+}
@@ -0,0 +1,140 @@
+package student;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts of the games of one filter step per bucket of each {@link Facet}.
+ *
+ * Counts are immutable. Narrowing a filter derives the counts of the new step from the counts of
+ * the previous one by taking off the rows the new clauses removed, so the work is proportional to
+ * the rows that changed rather than to the catalog. Reading the counts of a facet costs one step
+ * per bucket.
+ */
+public final class FacetCounts {
+    /** Highest player count with its own bucket, the last bucket is for this many or more. */
+    static final int MAX_PLAYERS = 10;
+    /** Lowest difficulty of the last band, which holds every harder game. */
+    static final int MAX_DIFFICULTY = 5;
+
+    /** The catalog the rows belong to. */
+    private final GameCatalog catalog;
+    /** Index of the earliest decade in the catalog, the year divided by 10. */
+    private final int firstDecade;
+    /** Counts per bucket, indexed by facet ordinal. */
+    private final int[][] counts;
+
+    /**
+     * Constructor for facet counts.
+     *
+     * @param catalog the catalog the rows belong to
+     * @param firstDecade the index of the earliest decade
+     * @param counts the counts per bucket, indexed by facet ordinal
+     */
+    private FacetCounts(GameCatalog catalog, int firstDecade, int[][] counts) {
+        this.catalog = catalog;
+        this.firstDecade = firstDecade;
+        this.counts = counts;
+    }
+
+    /**
+     * Counts a set of rows from scratch.
+     *
+     * @param catalog the catalog the rows belong to
+     * @param rows the rows to count
+     * @return the counts
+     */
+    static FacetCounts count(GameCatalog catalog, BitSet rows) {
+        int firstDecade = 0;
+        int decades = 0;
+        if (catalog.size() > 0) {
+            ColumnStats years = catalog.stats(GameData.YEAR);
+            firstDecade = Math.floorDiv((int) years.getMin(), 10);
+            decades = Math.floorDiv((int) years.getMax(), 10) - firstDecade + 1;
+        }
+        int[][] counts = new int[Facet.values().length][];
+        counts[Facet.PLAYERS.ordinal()] = new int[MAX_PLAYERS];
+        counts[Facet.DIFFICULTY.ordinal()] = new int[MAX_DIFFICULTY + 1];
+        counts[Facet.DECADE.ordinal()] = new int[decades];
+
+        FacetCounts facets = new FacetCounts(catalog, firstDecade, counts);
+        facets.add(rows, 1);
+        return facets;
+    }
+
+    /**
+     * Derives the counts of a narrower step by taking off the rows it removed.
+     *
+     * @param removed rows counted here that the narrower step no longer holds
+     * @return the new counts, this object is left unchanged
+     */
+    FacetCounts without(BitSet removed) {
+        int[][] copy = new int[counts.length][];
+        for (int f = 0; f < counts.length; f++) {
+            copy[f] = counts[f].clone();
+        }
+        FacetCounts narrowed = new FacetCounts(catalog, firstDecade, copy);
+        narrowed.add(removed, -1);
+        return narrowed;
+    }
+
+    /**
+     * Gets the number of games in each bucket of a facet.
+     *
+     * @param facet the facet
+     * @return the count of each bucket by label, in bucket order
+     */
+    public Map<String, Integer> get(Facet facet) {
+        int[] buckets = counts[facet.ordinal()];
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int b = 0; b < buckets.length; b++) {
+            result.put(label(facet, b), buckets[b]);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the label of a bucket, such as "4" or "10+" players, "2-3" difficulty or "1990s".
+     *
+     * @param facet the facet
+     * @param bucket the bucket index
+     * @return the label
+     */
+    private String label(Facet facet, int bucket) {
+        return switch (facet) {
+            case PLAYERS -> bucket + 1 == MAX_PLAYERS ? MAX_PLAYERS + "+"
+                    : Integer.toString(bucket + 1);
+            case DIFFICULTY -> bucket == MAX_DIFFICULTY ? MAX_DIFFICULTY + "+"
+                    : bucket + "-" + (bucket + 1);
+            case DECADE -> (firstDecade + bucket) * 10 + "s";
+        };
+    }
+
+    /**
+     * Adds a set of rows to the counts, or takes them off.
+     *
+     * @param rows the rows
+     * @param delta 1 to add the rows, -1 to take them off
+     */
+    private void add(BitSet rows, int delta) {
+        int[] minPlayers = catalog.intColumn(GameData.MIN_PLAYERS);
+        int[] maxPlayers = catalog.intColumn(GameData.MAX_PLAYERS);
+        double[] difficulty = catalog.doubleColumn(GameData.DIFFICULTY);
+        int[] years = catalog.intColumn(GameData.YEAR);
+        int[] players = counts[Facet.PLAYERS.ordinal()];
+        int[] bands = counts[Facet.DIFFICULTY.ordinal()];
+        int[] decades = counts[Facet.DECADE.ordinal()];
+
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            int top = Math.min(maxPlayers[row], MAX_PLAYERS);
+            // a game for more players than the last bucket still counts in it
+            for (int n = Math.min(Math.max(minPlayers[row], 1), MAX_PLAYERS); n <= top; n++) {
+                players[n - 1] += delta;
+            }
+            int band = (int) Math.max(0, Math.min(difficulty[row], MAX_DIFFICULTY));
+            bands[band] += delta;
+            decades[Math.floorDiv(years[row], 10) - firstDecade] += delta;
+        }
+    }
+}
@@ -1,5 +1,12 @@
 package student;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
 import java.util.function.Predicate;
 
 /**
@@ -22,6 +29,16 @@ public final class FilterHandler {
      * @return A predicate that can be used to filter BoardGame objects
      */
     public static Predicate<BoardGame> createFilter(GameData column, Operations operator, String value) {
+        if (operator == Operations.OVERLAPS) {
+            int[] range = parseRange(value);
+            if (range == null || !isRangeColumn(column)) {
+                return game -> false;
+            }
+            return column == GameData.MIN_PLAYERS
+                    ? game -> game.getMinPlayers() <= range[1] && game.getMaxPlayers() >= range[0]
+                    : game -> game.getMinPlayTime() <= range[1]
+                            && game.getMaxPlayTime() >= range[0];
+        }
         return switch (column) {
             case NAME -> createStringFilter(game -> game.getName(), operator, value);
             case RATING -> createDoubleFilter(BoardGame::getRating, operator, value);
@@ -49,6 +66,11 @@ public final class FilterHandler {
             Operations operator,
             String value) {
 
+        if (operator == Operations.MATCHES || operator == Operations.GLOB) {
+            NamePattern pattern = namePattern(operator, value);
+            return game -> pattern.matches(extractor.apply(game));
+        }
+
         // Convert value to lowercase for case-insensitive comparison
         String lowerValue = value.toLowerCase();
 
@@ -126,6 +148,293 @@ public final class FilterHandler {
         }
     }
 
+    /**
+     * Creates a filter over catalog row ids for a parsed filter expression.
+     *
+     * The value is parsed once, and rows are tested against the primitive column arrays of the
+     * catalog. The id column is not filterable and matches no rows.
+     *
+     * @param catalog The catalog the row ids refer to
+     * @param clause The parsed filter expression
+     * @return A predicate over row ids
+     */
+    public static IntPredicate createRowFilter(GameCatalog catalog, FilterComponents clause) {
+        GameData column = clause.getColumn();
+        Operations operator = clause.getOperator();
+        String value = clause.getValue();
+        BitSet indexed = indexedRows(catalog, clause);
+        if (indexed != null) {
+            return indexed::get;
+        }
+        if (clause.getComputed() != null) {
+            return createComputedFilter(catalog.computed(clause.getComputed()), operator, value);
+        }
+        ExtraColumn extra = clause.getExtra();
+        if (extra != null && extra.getKind() == ExtraColumn.Kind.NUMBER) {
+            return createComputedFilter(catalog.numeric(extra), operator, value);
+        }
+        if (extra != null) {
+            return createCategoryFilter(catalog.codes(extra), catalog.dictionary(extra), operator,
+                    value);
+        }
+        if (operator == Operations.OVERLAPS) {
+            return row -> false; // not a valid range
+        }
+        if (column == GameData.NAME) {
+            if (operator == Operations.MATCHES || operator == Operations.GLOB) {
+                return namePattern(operator, value).rows(catalog);
+            }
+            String[] names = catalog.lowerNames();
+            String lowerValue = value.toLowerCase(Locale.ROOT);
+            return switch (operator) {
+                case EQUALS -> row -> names[row].equals(lowerValue);
+                case NOT_EQUALS -> row -> !names[row].equals(lowerValue);
+                case CONTAINS -> row -> names[row].contains(lowerValue);
+                case GREATER_THAN -> row -> names[row].compareTo(lowerValue) > 0;
+                case GREATER_THAN_EQUALS -> row -> names[row].compareTo(lowerValue) >= 0;
+                case LESS_THAN -> row -> names[row].compareTo(lowerValue) < 0;
+                case LESS_THAN_EQUALS -> row -> names[row].compareTo(lowerValue) <= 0;
+                default -> row -> false;
+            };
+        }
+        try {
+            if (GameCatalog.isIntColumn(column)) {
+                int[] values = catalog.intColumn(column);
+                int intValue = Integer.parseInt(value);
+                return switch (operator) {
+                    case EQUALS -> row -> values[row] == intValue;
+                    case NOT_EQUALS -> row -> values[row] != intValue;
+                    case GREATER_THAN -> row -> values[row] > intValue;
+                    case GREATER_THAN_EQUALS -> row -> values[row] >= intValue;
+                    case LESS_THAN -> row -> values[row] < intValue;
+                    case LESS_THAN_EQUALS -> row -> values[row] <= intValue;
+                    default -> row -> false; // contains is only for names
+                };
+            }
+            if (GameCatalog.isDoubleColumn(column)) {
+                double[] values = catalog.doubleColumn(column);
+                double doubleValue = Double.parseDouble(value);
+                return switch (operator) {
+                    case EQUALS -> row -> values[row] == doubleValue;
+                    case NOT_EQUALS -> row -> values[row] != doubleValue;
+                    case GREATER_THAN -> row -> values[row] > doubleValue;
+                    case GREATER_THAN_EQUALS -> row -> values[row] >= doubleValue;
+                    case LESS_THAN -> row -> values[row] < doubleValue;
+                    case LESS_THAN_EQUALS -> row -> values[row] <= doubleValue;
+                    default -> row -> false; // contains is only for names
+                };
+            }
+        } catch (NumberFormatException e) {
+            // If value is not a valid number, include no games
+            return row -> false;
+        }
+        return row -> false;
+    }
+
+    /**
+     * Gets the compiled pattern of a regex or glob clause. A regex is written between slashes,
+     * and the operator holds the opening one.
+     *
+     * @param operator MATCHES or GLOB
+     * @param value The regex with its closing slash, or the glob
+     * @return The pattern, compiled once and then cached
+     * @throws IllegalArgumentException if the regex is not valid
+     */
+    private static NamePattern namePattern(Operations operator, String value) {
+        if (operator == Operations.GLOB) {
+            return NamePattern.glob(value);
+        }
+        return NamePattern.regex(value.endsWith("/") ? value.substring(0, value.length() - 1)
+                : value);
+    }
+
+    /**
+     * Creates a filter over row ids for a computed column or extra number column, compared as
+     * decimals.
+     *
+     * @param values The value of each row
+     * @param operator The operation to apply
+     * @param value The value to compare against
+     * @return A predicate over row ids
+     */
+    private static IntPredicate createComputedFilter(IntToDoubleFunction values,
+            Operations operator, String value) {
+        try {
+            double doubleValue = Double.parseDouble(value);
+            return switch (operator) {
+                case EQUALS -> row -> values.applyAsDouble(row) == doubleValue;
+                case NOT_EQUALS -> row -> values.applyAsDouble(row) != doubleValue;
+                case GREATER_THAN -> row -> values.applyAsDouble(row) > doubleValue;
+                case GREATER_THAN_EQUALS -> row -> values.applyAsDouble(row) >= doubleValue;
+                case LESS_THAN -> row -> values.applyAsDouble(row) < doubleValue;
+                case LESS_THAN_EQUALS -> row -> values.applyAsDouble(row) <= doubleValue;
+                default -> row -> false; // contains and ranges are only for other columns
+            };
+        } catch (NumberFormatException e) {
+            // If value is not a valid number, include no games
+            return row -> false;
+        }
+    }
+
+    /**
+     * Creates a filter over row ids for an extra category column.
+     *
+     * Values are compared ignoring case and spaces, as the console removes spaces from filters.
+     * Each distinct value is tested once, so testing a row is a lookup by its dictionary code.
+     *
+     * @param codes The dictionary code of each row
+     * @param dictionary The distinct values by code
+     * @param operator The operation to apply
+     * @param value The value to compare against
+     * @return A predicate over row ids
+     */
+    private static IntPredicate createCategoryFilter(IntUnaryOperator codes,
+            List<String> dictionary, Operations operator, String value) {
+        String key = value.replaceAll("\\s", "").toLowerCase();
+        boolean[] matches = new boolean[dictionary.size()];
+        for (int code = 0; code < matches.length; code++) {
+            String entry = dictionary.get(code).replaceAll("\\s", "").toLowerCase();
+            matches[code] = switch (operator) {
+                case EQUALS -> entry.equals(key);
+                case NOT_EQUALS -> !entry.equals(key);
+                case CONTAINS -> entry.contains(key);
+                case GREATER_THAN -> entry.compareTo(key) > 0;
+                case GREATER_THAN_EQUALS -> entry.compareTo(key) >= 0;
+                case LESS_THAN -> entry.compareTo(key) < 0;
+                case LESS_THAN_EQUALS -> entry.compareTo(key) <= 0;
+                default -> false;
+            };
+        }
+        return row -> matches[codes.applyAsInt(row)];
+    }
+
+    /**
+     * Finds the rows matching a clause through an index of the catalog, without testing rows.
+     *
+     * A range clause, such as players:4 or time:30-60, is answered by the interval index of its
+     * range in O(log n + k) for k matches.
+     *
+     * @param catalog The catalog the row ids refer to
+     * @param clause The parsed filter expression
+     * @return The matching rows, or null if the clause cannot use an index
+     */
+    public static BitSet indexedRows(GameCatalog catalog, FilterComponents clause) {
+        if (clause.getOperator() != Operations.OVERLAPS || !isRangeColumn(clause.getColumn())) {
+            return null;
+        }
+        int[] range = parseRange(clause.getValue());
+        if (range == null) {
+            return null;
+        }
+        return catalog.intervals(clause.getColumn()).overlapping(range[0], range[1]);
+    }
+
+    /**
+     * Checks whether a column stands for a range of a game, the players or the play time. The
+     * lower bound column stands for its range.
+     *
+     * @param column The column
+     * @return true for MIN_PLAYERS and MIN_TIME
+     */
+    private static boolean isRangeColumn(GameData column) {
+        return column == GameData.MIN_PLAYERS || column == GameData.MIN_TIME;
+    }
+
+    /**
+     * Parses the value of a range clause, a single number N or a range A-B.
+     *
+     * @param value The value
+     * @return The lower and upper bounds, or null if the value is not a valid range
+     */
+    private static int[] parseRange(String value) {
+        String[] bounds = value.split("-", -1);
+        try {
+            if (bounds.length == 1) {
+                int n = Integer.parseInt(bounds[0].trim());
+                return new int[] {n, n};
+            }
+            if (bounds.length == 2) {
+                return new int[] {Integer.parseInt(bounds[0].trim()),
+                    Integer.parseInt(bounds[1].trim())};
+            }
+        } catch (NumberFormatException e) {
+            // not a number, so not a range
+        }
+        return null;
+    }
+
+    /**
+     * Gets the column a range clause applies to, from the name before the operator.
+     *
+     * @param name "players" or "time", or a column name of either range
+     * @return MIN_PLAYERS or MIN_TIME, the lower bound column of the range
+     * @throws IllegalArgumentException if the name is not a range
+     */
+    private static GameData rangeColumn(String name) {
+        return switch (name.toLowerCase()) {
+            case "players" -> GameData.MIN_PLAYERS;
+            case "time", "playtime" -> GameData.MIN_TIME;
+            default -> switch (GameData.fromString(name)) {
+                case MIN_PLAYERS, MAX_PLAYERS -> GameData.MIN_PLAYERS;
+                case MIN_TIME, MAX_TIME -> GameData.MIN_TIME;
+                default -> throw new IllegalArgumentException("No range with name " + name);
+            };
+        };
+    }
+
+    /**
+     * Splits a filter into its clauses at commas. A comma inside a regex belongs to the regex,
+     * unless it follows the closing slash, spaces aside, so {@code name~/x{1,3}/, year>2000} is
+     * two clauses. A slash the regex matches before such a comma is written as \/, and a regex
+     * without its closing slash runs to the end of the filter. Joining the clauses with commas
+     * gives back a filter that splits the same way.
+     *
+     * @param filter The filter text
+     * @return The clauses, untrimmed, empty ones included
+     */
+    public static List<String> splitClauses(String filter) {
+        List<String> clauses = new ArrayList<>();
+        String regexOperator = Operations.MATCHES.getOperator();
+        int start = 0;
+        int opening = -1; // the opening slash of the regex of the current clause, if any
+        for (int i = 0; i < filter.length(); i++) {
+            if (opening < 0 && filter.startsWith(regexOperator, i)) {
+                opening = i + regexOperator.length() - 1;
+                i = opening;
+            } else if (filter.charAt(i) == ','
+                    && (opening < 0 || closesRegex(filter, opening, i))) {
+                clauses.add(filter.substring(start, i));
+                start = i + 1;
+                opening = -1;
+            }
+        }
+        clauses.add(filter.substring(start));
+        return clauses;
+    }
+
+    /**
+     * Checks whether a comma directly follows the closing slash of a regex, spaces aside.
+     *
+     * @param filter The filter text
+     * @param opening The position of the opening slash
+     * @param comma The position of the comma
+     * @return True if the comma ends the clause
+     */
+    private static boolean closesRegex(String filter, int opening, int comma) {
+        int slash = comma - 1;
+        while (slash > opening && Character.isWhitespace(filter.charAt(slash))) {
+            slash--;
+        }
+        if (slash <= opening || filter.charAt(slash) != '/') {
+            return false;
+        }
+        int escapes = 0;
+        for (int i = slash - 1; i > opening && filter.charAt(i) == '\\'; i--) {
+            escapes++;
+        }
+        return escapes % 2 == 0;
+    }
+
     /**
      * Parses a filter expression into its components.
      *
@@ -139,20 +448,37 @@ public final class FilterHandler {
             return null;
         }
 
-        // Split the expression by the operator
-        String[] parts = expression.split(operator.getOperator());
+        // Split the expression by the operator, patterns may hold the operator again
+        boolean isPattern = operator == Operations.MATCHES || operator == Operations.GLOB;
+        String[] parts = expression.split(operator.getOperator(), isPattern ? 2 : 0);
         if (parts.length != 2) {
             return null;
         }
 
         try {
-            // Get the column to filter on
-            GameData column = GameData.fromString(parts[0].trim());
             String value = parts[1].trim();
-
+            if (isPattern) {
+                // only names can be matched against a pattern
+                if (GameData.fromString(parts[0].trim()) != GameData.NAME) {
+                    return null;
+                }
+                namePattern(operator, value); // compiles the pattern, failing if it is not valid
+                return new FilterComponents(GameData.NAME, operator, value);
+            }
+            ComputedColumn computed = ComputedColumn.lookup(parts[0]);
+            if (computed != null && operator != Operations.OVERLAPS) {
+                return new FilterComponents(computed, operator, value);
+            }
+            ExtraColumn extra = ExtraColumn.lookup(parts[0]);
+            if (extra != null && operator != Operations.OVERLAPS) {
+                return new FilterComponents(extra, operator, value);
+            }
+            // Get the column to filter on
+            GameData column = operator == Operations.OVERLAPS ? rangeColumn(parts[0].trim())
+                    : GameData.fromString(parts[0].trim());
             return new FilterComponents(column, operator, value);
         } catch (IllegalArgumentException e) {
-            // Invalid column name
+            // Invalid column name or pattern
             return null;
         }
     }
@@ -162,8 +488,12 @@ public final class FilterHandler {
      */
     public static class FilterComponents {
 
-        /** The column to filter on. */
+        /** The column to filter on, null for a computed or extra column. */
         private final GameData column;
+        /** The computed column to filter on, null for other columns. */
+        private final ComputedColumn computed;
+        /** The extra column to filter on, null for other columns. */
+        private final ExtraColumn extra;
         /** The operation to apply. */
         private final Operations operator;
         /** The value to compare against. */
@@ -178,6 +508,38 @@ public final class FilterHandler {
          */
         public FilterComponents(GameData column, Operations operator, String value) {
             this.column = column;
+            this.computed = null;
+            this.extra = null;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        /**
+         * Constructor for FilterComponents on a computed column.
+         *
+         * @param computed The computed column
+         * @param operator The operation
+         * @param value The value to compare against
+         */
+        public FilterComponents(ComputedColumn computed, Operations operator, String value) {
+            this.column = null;
+            this.computed = computed;
+            this.extra = null;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        /**
+         * Constructor for FilterComponents on an extra column.
+         *
+         * @param extra The extra column
+         * @param operator The operation
+         * @param value The value to compare against
+         */
+        public FilterComponents(ExtraColumn extra, Operations operator, String value) {
+            this.column = null;
+            this.computed = null;
+            this.extra = extra;
             this.operator = operator;
             this.value = value;
         }
@@ -185,12 +547,30 @@ public final class FilterHandler {
         /**
          * Gets the game data column.
          *
-         * @return The game data column
+         * @return The game data column, null for a computed or extra column
          */
         public GameData getColumn() {
             return column;
         }
 
+        /**
+         * Gets the computed column.
+         *
+         * @return The computed column, null for other columns
+         */
+        public ComputedColumn getComputed() {
+            return computed;
+        }
+
+        /**
+         * Gets the extra column.
+         *
+         * @return The extra column, null for other columns
+         */
+        public ExtraColumn getExtra() {
+            return extra;
+        }
+
         /**
          * Gets the operation.
          *
@@ -208,6 +588,33 @@ public final class FilterHandler {
         public String getValue() {
             return value;
         }
+
+        /**
+         * Gets the normalized form of the expression.
+         *
+         * Two expressions that select the same games normalize to the same string, regardless of
+         * spacing, column alias or letter case.
+         *
+         * @return the normalized expression
+         */
+        public String normalized() {
+            if (computed != null) {
+                return computed.getName().toUpperCase() + operator.getOperator()
+                        + value.toLowerCase();
+            }
+            if (extra != null) {
+                return extra.getName().toUpperCase() + operator.getOperator()
+                        + value.replaceAll("\\s", "").toLowerCase();
+            }
+            if (operator == Operations.OVERLAPS) {
+                String range = column == GameData.MIN_PLAYERS ? "PLAYERS" : "TIME";
+                return range + operator.getOperator() + value.replace(" ", "");
+            }
+            if (operator == Operations.MATCHES || operator == Operations.GLOB) {
+                return column.name() + operator.getOperator() + value; // escapes are case sensitive
+            }
+            return column.name() + operator.getOperator() + value.toLowerCase();
+        }
     }
 }
 
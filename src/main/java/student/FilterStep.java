@@ -0,0 +1,218 @@
+package student;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * One step of a progressive filter: the clauses applied so far and the rows that survive them.
+ *
+ * The rows of a step never change, so steps can be kept on a stack and returned to without
+ * filtering the catalog again. They are computed the first time they are needed, so a filter
+ * whose results are never read costs nothing. The row bitset is shared with the result cache and
+ * must never be modified.
+ *
+ * A step also remembers the order its rows were last sorted in. A filter applied on top of the
+ * step can then keep that order by dropping rows, rather than sorting the survivors again.
+ */
+public final class FilterStep {
+    /** Estimated fixed cost of a step (the step, its chain and bitset objects). */
+    private static final int STEP_OVERHEAD_BYTES = 160;
+
+    /** Normalized clauses applied up to this step, in canonical order. */
+    private final SortedSet<String> chain;
+    /** The clauses this step added to the previous one, as normalized text. */
+    private final String added;
+    /** Computes the surviving rows, null once they are computed. */
+    private Supplier<BitSet> pending;
+    /** Row ids that survive the clauses, null until computed. */
+    private BitSet rows;
+    /** Number of surviving rows. */
+    private int count;
+    /** The rows in the order they were last sorted in, null if they were never sorted. */
+    private volatile SortedView view;
+    /** The facet counts of the rows, null until first asked for. */
+    private volatile FacetCounts facets;
+
+    /**
+     * Constructor for a filter step.
+     *
+     * @param chain the normalized clauses applied up to this step
+     * @param added the clauses added by this step
+     * @param rows the surviving rows, must not be modified afterwards
+     */
+    public FilterStep(SortedSet<String> chain, String added, BitSet rows) {
+        this(chain, added, () -> rows);
+    }
+
+    /**
+     * Constructor for a filter step whose rows are computed when first needed.
+     *
+     * @param chain the normalized clauses applied up to this step
+     * @param added the clauses added by this step
+     * @param rows computes the surviving rows, called at most once
+     */
+    public FilterStep(SortedSet<String> chain, String added, Supplier<BitSet> rows) {
+        this.chain = Collections.unmodifiableSortedSet(new TreeSet<>(chain));
+        this.added = added;
+        this.pending = rows;
+    }
+
+    /**
+     * Creates the first step, with no clauses and every row of the catalog.
+     *
+     * @param catalog the catalog
+     * @return the unfiltered step
+     */
+    public static FilterStep unfiltered(GameCatalog catalog) {
+        return new FilterStep(new TreeSet<>(), "", catalog.allRows());
+    }
+
+    /**
+     * Gets the normalized clauses applied up to this step.
+     *
+     * @return an unmodifiable sorted set of clauses
+     */
+    public SortedSet<String> getChain() {
+        return chain;
+    }
+
+    /**
+     * Gets the clauses this step added, separated by commas.
+     *
+     * @return the added clauses, empty for the unfiltered step
+     */
+    public String getAdded() {
+        return added;
+    }
+
+    /**
+     * Gets the rows that survive the clauses, computing them if needed. The bitset must not be
+     * modified.
+     *
+     * @return the surviving row ids
+     */
+    public synchronized BitSet getRows() {
+        if (pending != null) {
+            rows = pending.get();
+            count = rows.cardinality();
+            pending = null;
+        }
+        return rows;
+    }
+
+    /**
+     * Gets the number of rows that survive the clauses, computing them if needed.
+     *
+     * @return the number of rows
+     */
+    public synchronized int getCount() {
+        getRows();
+        return count;
+    }
+
+    /**
+     * Checks whether the rows of this step have been computed yet.
+     *
+     * @return true if the rows are known
+     */
+    public synchronized boolean isComputed() {
+        return pending == null;
+    }
+
+    /**
+     * Estimates the bytes held by this step: its computed rows and its sorted view. Rows that
+     * are not computed yet cost nothing.
+     *
+     * @return the estimated size in bytes
+     */
+    public synchronized long estimateBytes() {
+        long bytes = STEP_OVERHEAD_BYTES;
+        if (rows != null) {
+            bytes += rows.size() / Byte.SIZE;
+        }
+        SortedView last = view;
+        if (last != null) {
+            bytes += (long) last.getSorted().length * Integer.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the rows in the order they were last sorted in.
+     *
+     * @return the last sorted view, or null if the rows were never sorted
+     */
+    public SortedView getView() {
+        return view;
+    }
+
+    /**
+     * Records the order the rows were last sorted in.
+     *
+     * @param sortOn the sort keys
+     * @param sorted the rows in sorted order, must not be modified afterwards
+     */
+    public void setView(SortSpec sortOn, int[] sorted) {
+        this.view = new SortedView(sortOn, sorted);
+    }
+
+    /**
+     * Gets the facet counts of the rows.
+     *
+     * @return the facet counts, or null if they were never computed
+     */
+    public FacetCounts getFacets() {
+        return facets;
+    }
+
+    /**
+     * Records the facet counts of the rows.
+     *
+     * @param facets the facet counts
+     */
+    public void setFacets(FacetCounts facets) {
+        this.facets = facets;
+    }
+
+    /**
+     * The rows of a step in sorted order, tagged with the sort keys used.
+     */
+    public static final class SortedView {
+        /** The sort keys the rows are ordered by. */
+        private final SortSpec sortOn;
+        /** The row ids in sorted order. */
+        private final int[] sorted;
+
+        /**
+         * Constructor for a sorted view.
+         *
+         * @param sortOn the sort keys
+         * @param sorted the rows in sorted order
+         */
+        private SortedView(SortSpec sortOn, int[] sorted) {
+            this.sortOn = sortOn;
+            this.sorted = sorted;
+        }
+
+        /**
+         * Gets the sort keys the rows are ordered by.
+         *
+         * @return the sort keys
+         */
+        public SortSpec getSortOn() {
+            return sortOn;
+        }
+
+        /**
+         * Gets the row ids in sorted order. The array must not be modified.
+         *
+         * @return the sorted row ids
+         */
+        public int[] getSorted() {
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,812 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Column oriented, read only view of the board game collection.
+ *
+ * Every game is given a row id, and each column is stored as a primitive array indexed by row id.
+ * At load time the catalog also computes, for every sortable column, the dense rank of each row
+ * (equal values share a rank) and the ascending permutation of row ids. A sorted result can then
+ * be produced by walking the permutation instead of sorting the games again. It also computes the
+ * statistics of every numeric column, so aggregates over the whole collection need no scan, and
+ * interval indexes over the player count and play time ranges.
+ *
+ * Names are ordered by the collation key of a {@link NameCollation}, for the locale the catalog
+ * is built with.
+ *
+ * Registered {@link ExtraColumn extra columns} are stored at load as well, numbers as a decimal
+ * array and categories as dictionary codes.
+ */
+public final class GameCatalog {
+    /** Games by row id. */
+    private final BoardGame[] games;
+    /** Lower case names by row id, used for name filters. */
+    private final String[] lowerNames;
+    /** The collation ordering the names. */
+    private final NameCollation collation;
+    /** Collation keys of the names by row id, in ascending order. */
+    private final byte[][] nameKeys;
+    /** Game ids in ascending order. */
+    private final int[] sortedIds;
+    /** Row ids in the order of sortedIds. */
+    private final int[] rowsById;
+    /** Columns holding whole numbers. */
+    private final Map<GameData, int[]> intColumns = new EnumMap<>(GameData.class);
+    /** Columns holding decimal numbers. */
+    private final Map<GameData, double[]> doubleColumns = new EnumMap<>(GameData.class);
+    /** Dense rank of each row, per sortable column. */
+    private final Map<GameData, int[]> ranks = new EnumMap<>(GameData.class);
+    /** Row ids in ascending order, per sortable column. */
+    private final Map<GameData, int[]> ascending = new EnumMap<>(GameData.class);
+    /** Number of distinct values, per sortable column. */
+    private final Map<GameData, Integer> cardinalities = new EnumMap<>(GameData.class);
+    /** Statistics of every game, per numeric column. */
+    private final Map<GameData, ColumnStats> stats = new EnumMap<>(GameData.class);
+    /** Interval indexes, by the column holding the lower bound. */
+    private final Map<GameData, IntervalIndex> intervals = new EnumMap<>(GameData.class);
+    /** Similarity index, null until first used. */
+    private SimilarityIndex similarity;
+    /** Normalized numeric columns, by column and normalization, computed on first use. */
+    private final Map<String, double[]> normalized = new ConcurrentHashMap<>();
+    /** Values and ranks of computed columns, computed on first use. */
+    private final Map<ComputedColumn, Computed> computed = new ConcurrentHashMap<>();
+    /** Generation of the computed column definitions when removed columns were last dropped. */
+    private volatile long computedGeneration = ComputedColumn.generation();
+    /** Values and ranks of extra columns, category values as their dictionary codes. */
+    private final Map<ExtraColumn, Computed> extras = new ConcurrentHashMap<>();
+
+    /**
+     * Builds the catalog from a set of games, with names ordered by the default collation.
+     *
+     * @param games the complete set of board games
+     * @see #GameCatalog(Set, NameCollation)
+     */
+    public GameCatalog(Set<BoardGame> games) {
+        this(games, NameCollation.getDefault());
+    }
+
+    /**
+     * Builds the catalog from a set of games.
+     *
+     * Rows are numbered by name in the order of the collation, then by case insensitive name,
+     * then id, so the row order does not depend on the iteration order of the set. The collation
+     * key of every name is kept, so name ranks are computed with byte compares.
+     *
+     * @param games the complete set of board games
+     * @param collation the order of the names
+     */
+    public GameCatalog(Set<BoardGame> games, NameCollation collation) {
+        this.collation = collation;
+        BoardGame[] unordered = games.toArray(new BoardGame[0]);
+        int n = unordered.length;
+        // build the key and lower case name of each game once, then sort on them
+        byte[][] keys = new byte[n][];
+        String[] lower = new String[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = collation.key(unordered[i].getName());
+            lower[i] = unordered[i].getName().toLowerCase(Locale.ROOT);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing((Integer i) -> keys[i], NameCollation::compare)
+                .thenComparing(i -> lower[i])
+                .thenComparingInt(i -> unordered[i].getId()));
+
+        this.games = new BoardGame[n];
+        lowerNames = new String[n];
+        nameKeys = new byte[n][];
+        int[] nameRanks = new int[n];
+        for (int row = 0; row < n; row++) {
+            this.games[row] = unordered[order[row]];
+            lowerNames[row] = lower[order[row]];
+            nameKeys[row] = keys[order[row]];
+            // rows are in key order, so a new key is the next rank
+            nameRanks[row] = row == 0 ? 0 : nameRanks[row - 1]
+                    + (Arrays.equals(nameKeys[row - 1], nameKeys[row]) ? 0 : 1);
+        }
+        for (GameData column : GameData.values()) {
+            if (isIntColumn(column)) {
+                int[] values = new int[n];
+                for (int row = 0; row < n; row++) {
+                    values[row] = intValue(this.games[row], column);
+                }
+                intColumns.put(column, values);
+            } else if (isDoubleColumn(column)) {
+                double[] values = new double[n];
+                for (int row = 0; row < n; row++) {
+                    values[row] = doubleValue(this.games[row], column);
+                }
+                doubleColumns.put(column, values);
+            }
+        }
+
+        long[] byId = new long[n];
+        for (int row = 0; row < n; row++) {
+            byId[row] = ((long) this.games[row].getId() << Integer.SIZE) | row;
+        }
+        Arrays.sort(byId);
+        sortedIds = new int[n];
+        rowsById = new int[n];
+        for (int i = 0; i < n; i++) {
+            sortedIds[i] = (int) (byId[i] >> Integer.SIZE);
+            rowsById[i] = (int) byId[i];
+        }
+
+        ranks.put(GameData.NAME, nameRanks);
+        intColumns.forEach((column, values) -> ranks.put(column, denseRanks(values)));
+        doubleColumns.forEach((column, values) -> ranks.put(column, denseRanks(values)));
+        ranks.forEach((column, rank) -> {
+            ascending.put(column, permutation(rank));
+            cardinalities.put(column, Arrays.stream(rank).max().orElse(-1) + 1);
+        });
+
+        List<GameData> numeric = new ArrayList<>(intColumns.keySet());
+        numeric.addAll(doubleColumns.keySet());
+        stats.putAll(ColumnStats.compute(this, allRows(), null, numeric,
+                ColumnStats.DEFAULT_BINS));
+        intervals.put(GameData.MIN_PLAYERS, new IntervalIndex(intColumn(GameData.MIN_PLAYERS),
+                intColumn(GameData.MAX_PLAYERS)));
+        intervals.put(GameData.MIN_TIME, new IntervalIndex(intColumn(GameData.MIN_TIME),
+                intColumn(GameData.MAX_TIME)));
+        ExtraColumn.values().forEach(this::extraData);
+    }
+
+    /**
+     * Gets the number of games (rows) in the catalog.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return games.length;
+    }
+
+    /**
+     * Gets the game stored at a row.
+     *
+     * @param row the row id
+     * @return the game
+     */
+    public BoardGame game(int row) {
+        return games[row];
+    }
+
+    /**
+     * Finds the row of a game by its id.
+     *
+     * @param id the game id
+     * @return the row id, or -1 if no game has that id
+     */
+    public int rowOf(int id) {
+        int i = Arrays.binarySearch(sortedIds, id);
+        return i >= 0 ? rowsById[i] : -1;
+    }
+
+    /**
+     * Finds the row of a game by its name, ignoring case. Rows are ordered by the collation key
+     * of the name, so this is a binary search over the keys.
+     *
+     * @param name the game name
+     * @return the row id of the first game with that name, or -1 if there is none
+     */
+    public int rowOfName(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        byte[] key = collation.key(name);
+        int found = Arrays.binarySearch(nameKeys, key, NameCollation::compare);
+        if (found < 0) {
+            return -1;
+        }
+        int row = found;
+        while (row > 0 && NameCollation.compare(nameKeys[row - 1], key) == 0) {
+            row--;
+        }
+        // names with equal keys may still differ, such as in width or ignorable characters
+        for (; row < nameKeys.length && NameCollation.compare(nameKeys[row], key) == 0; row++) {
+            if (lowerNames[row].equals(lower)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the collation ordering the names of the catalog.
+     *
+     * @return the collation
+     */
+    public NameCollation collation() {
+        return collation;
+    }
+
+    /**
+     * Gets the similarity index of the catalog. It is built on first use, as most sessions never
+     * search for similar games.
+     *
+     * @return the similarity index
+     */
+    public synchronized SimilarityIndex similarity() {
+        if (similarity == null) {
+            similarity = new SimilarityIndex(this);
+        }
+        return similarity;
+    }
+
+    /**
+     * Gets a numeric column normalized for scoring. Each normalization of a column is computed
+     * once and then shared. The array must not be modified.
+     *
+     * @param column the numeric column
+     * @param normalization how to scale it
+     * @return the normalized value of each row
+     * @throws IllegalArgumentException if the column is not numeric
+     */
+    public double[] normalized(GameData column, ScoreSpec.Normalization normalization) {
+        numeric(column); // fails for columns that are not numeric
+        return normalized.computeIfAbsent(column + "/" + normalization,
+                key -> normalization.apply(this, column));
+    }
+
+    /**
+     * Gets the values of a computed column. A materialized column is evaluated for every row on
+     * first use and read from an array afterwards; other columns evaluate their expression for
+     * each row read.
+     *
+     * @param column the computed column
+     * @return a function from row id to value
+     */
+    public IntToDoubleFunction computed(ComputedColumn column) {
+        return computedData(column).values;
+    }
+
+    /**
+     * Gets the dense rank of every row for a computed column, computed on first use. The array
+     * must not be modified.
+     *
+     * @param column the computed column
+     * @return ranks indexed by row id
+     */
+    public int[] ranks(ComputedColumn column) {
+        return computedData(column).sortData().ranks;
+    }
+
+    /**
+     * Gets the row ids in ascending order of a computed column, ties by row id. The array must
+     * not be modified.
+     *
+     * @param column the computed column
+     * @return the ascending permutation of row ids
+     */
+    public int[] ascending(ComputedColumn column) {
+        return computedData(column).sortData().ascending;
+    }
+
+    /**
+     * Gets the number of distinct values of a computed column.
+     *
+     * @param column the computed column
+     * @return the number of distinct values
+     */
+    public int cardinality(ComputedColumn column) {
+        return computedData(column).sortData().cardinality;
+    }
+
+    /**
+     * Gets the data of a computed column, binding its expression on first use. The data of
+     * columns removed since the last call is dropped first, so redefining a column does not
+     * keep the values of every earlier definition.
+     *
+     * @param column the computed column
+     * @return the data
+     */
+    private Computed computedData(ComputedColumn column) {
+        long generation = ComputedColumn.generation();
+        if (generation != computedGeneration) {
+            computedGeneration = generation;
+            computed.keySet().removeIf(old -> ComputedColumn.lookup(old.getName()) != old);
+        }
+        return computed.computeIfAbsent(column, key -> {
+            IntToDoubleFunction values = key.getExpression().bind(this);
+            if (key.isMaterialized()) {
+                double[] array = evaluate(values);
+                values = row -> array[row];
+            }
+            return new Computed(values);
+        });
+    }
+
+    /**
+     * Gets the values of an extra number column. Missing values read as NaN.
+     *
+     * @param column the extra column
+     * @return a function from row id to value
+     * @throws IllegalArgumentException if the column is a category
+     */
+    public IntToDoubleFunction numeric(ExtraColumn column) {
+        if (column.getKind() != ExtraColumn.Kind.NUMBER) {
+            throw new IllegalArgumentException("Not a number column: " + column);
+        }
+        return extraData(column).values;
+    }
+
+    /**
+     * Gets the dictionary codes of an extra category column. A code is the position of the value
+     * in {@link #dictionary(ExtraColumn)}, so codes order like the values.
+     *
+     * @param column the extra column
+     * @return a function from row id to code
+     * @throws IllegalArgumentException if the column is a number
+     */
+    public IntUnaryOperator codes(ExtraColumn column) {
+        return category(column).codes;
+    }
+
+    /**
+     * Gets the distinct values of an extra category column, in ascending order. Games without a
+     * value have the empty string.
+     *
+     * @param column the extra column
+     * @return the values, by code
+     * @throws IllegalArgumentException if the column is a number
+     */
+    public List<String> dictionary(ExtraColumn column) {
+        return List.of(category(column).dictionary);
+    }
+
+    /**
+     * Gets the dense rank of every row for an extra column, computed on first use. The array
+     * must not be modified.
+     *
+     * @param column the extra column
+     * @return ranks indexed by row id
+     */
+    public int[] ranks(ExtraColumn column) {
+        return extraData(column).sortData().ranks;
+    }
+
+    /**
+     * Gets the row ids in ascending order of an extra column, ties by row id. The array must not
+     * be modified.
+     *
+     * @param column the extra column
+     * @return the ascending permutation of row ids
+     */
+    public int[] ascending(ExtraColumn column) {
+        return extraData(column).sortData().ascending;
+    }
+
+    /**
+     * Gets the number of distinct values of an extra column.
+     *
+     * @param column the extra column
+     * @return the number of distinct values
+     */
+    public int cardinality(ExtraColumn column) {
+        return extraData(column).sortData().cardinality;
+    }
+
+    /**
+     * Gets the data of an extra category column.
+     *
+     * @param column the extra column
+     * @return the data
+     * @throws IllegalArgumentException if the column is a number
+     */
+    private Computed category(ExtraColumn column) {
+        if (column.getKind() != ExtraColumn.Kind.CATEGORY) {
+            throw new IllegalArgumentException("Not a category column: " + column);
+        }
+        return extraData(column);
+    }
+
+    /**
+     * Gets the data of an extra column, reading it from the games on first use. Columns
+     * registered when the catalog is built are read at load.
+     *
+     * @param column the extra column
+     * @return the data
+     */
+    private Computed extraData(ExtraColumn column) {
+        return extras.computeIfAbsent(column, key -> {
+            int n = games.length;
+            if (key.getKind() == ExtraColumn.Kind.NUMBER) {
+                double[] values = new double[n];
+                for (int row = 0; row < n; row++) {
+                    values[row] = ExtraColumn.parseNumber(games[row].getExtra(key));
+                }
+                return new Computed(row -> values[row]);
+            }
+            String[] raw = new String[n];
+            for (int row = 0; row < n; row++) {
+                raw[row] = games[row].getExtra(key);
+            }
+            String[] dictionary = Arrays.stream(raw).sorted().distinct().toArray(String[]::new);
+            int[] codes = denseRanks(raw);
+            return new Computed(compact(codes, dictionary.length), dictionary);
+        });
+    }
+
+    /**
+     * Stores dictionary codes in the smallest array that holds them.
+     *
+     * @param codes the code of each row
+     * @param size the number of distinct codes
+     * @return a function from row id to code
+     */
+    private static IntUnaryOperator compact(int[] codes, int size) {
+        if (size <= 1 << Byte.SIZE) {
+            byte[] small = new byte[codes.length];
+            for (int row = 0; row < codes.length; row++) {
+                small[row] = (byte) codes[row];
+            }
+            return row -> small[row] & 0xFF;
+        }
+        if (size <= 1 << Short.SIZE) {
+            short[] medium = new short[codes.length];
+            for (int row = 0; row < codes.length; row++) {
+                medium[row] = (short) codes[row];
+            }
+            return row -> medium[row] & 0xFFFF;
+        }
+        return row -> codes[row];
+    }
+
+    /**
+     * Evaluates a function for every row.
+     *
+     * @param values the function
+     * @return its value for each row id
+     */
+    private double[] evaluate(IntToDoubleFunction values) {
+        double[] array = new double[games.length];
+        for (int row = 0; row < array.length; row++) {
+            array[row] = values.applyAsDouble(row);
+        }
+        return array;
+    }
+
+    /**
+     * Gets a bitset with every row of the catalog set.
+     *
+     * @return a new bitset of all rows
+     */
+    public BitSet allRows() {
+        BitSet rows = new BitSet(games.length);
+        rows.set(0, games.length);
+        return rows;
+    }
+
+    /**
+     * Gets the lower case names, indexed by row id, lowered with the root locale so they do not
+     * depend on the default locale. The array must not be modified.
+     *
+     * @return lower case names
+     */
+    public String[] lowerNames() {
+        return lowerNames;
+    }
+
+    /**
+     * Gets the values of a whole number column, indexed by row id. The array must not be modified.
+     *
+     * @param column the column
+     * @return the column values
+     * @throws IllegalArgumentException if the column does not hold whole numbers
+     */
+    public int[] intColumn(GameData column) {
+        return require(intColumns, column);
+    }
+
+    /**
+     * Gets the values of a decimal column, indexed by row id. The array must not be modified.
+     *
+     * @param column the column
+     * @return the column values
+     * @throws IllegalArgumentException if the column does not hold decimals
+     */
+    public double[] doubleColumn(GameData column) {
+        return require(doubleColumns, column);
+    }
+
+    /**
+     * Gets the values of a numeric column as decimals, read straight from the column array.
+     *
+     * @param column a whole number or decimal column
+     * @return a function from row id to value
+     * @throws IllegalArgumentException if the column is not numeric
+     */
+    public IntToDoubleFunction numeric(GameData column) {
+        if (isIntColumn(column)) {
+            int[] values = intColumn(column);
+            return row -> values[row];
+        }
+        double[] values = doubleColumn(column);
+        return row -> values[row];
+    }
+
+    /**
+     * Gets the dense rank of every row for a column. Rows with equal values share a rank, and
+     * ranks start at 0. The array must not be modified.
+     *
+     * @param column the column
+     * @return ranks indexed by row id
+     * @throws IllegalArgumentException if the column is not sortable
+     */
+    public int[] ranks(GameData column) {
+        return require(ranks, column);
+    }
+
+    /**
+     * Gets the row ids in ascending order of a column, ties by row id. The array must not be
+     * modified.
+     *
+     * @param column the column
+     * @return the ascending permutation of row ids
+     * @throws IllegalArgumentException if the column is not sortable
+     */
+    public int[] ascending(GameData column) {
+        return require(ascending, column);
+    }
+
+    /**
+     * Gets the number of distinct values of a column, one more than its highest rank.
+     *
+     * @param column the column
+     * @return the number of distinct values
+     * @throws IllegalArgumentException if the column is not sortable
+     */
+    public int cardinality(GameData column) {
+        return require(cardinalities, column);
+    }
+
+    /**
+     * Gets the statistics of a numeric column over every game, computed at load with
+     * {@link ColumnStats#DEFAULT_BINS} histogram bins.
+     *
+     * @param column the column
+     * @return the statistics
+     * @throws IllegalArgumentException if the column is not numeric
+     */
+    public ColumnStats stats(GameData column) {
+        return require(stats, column);
+    }
+
+    /**
+     * Gets the interval index over the player count range or the play time range of every game.
+     *
+     * @param column MIN_PLAYERS for [minPlayers, maxPlayers], MIN_TIME for [minTime, maxTime]
+     * @return the interval index
+     * @throws IllegalArgumentException for any other column
+     */
+    public IntervalIndex intervals(GameData column) {
+        return require(intervals, column);
+    }
+
+    /**
+     * Checks whether a column is stored as whole numbers.
+     *
+     * @param column the column
+     * @return true for whole number columns
+     */
+    public static boolean isIntColumn(GameData column) {
+        return switch (column) {
+            case RANK, MIN_PLAYERS, MAX_PLAYERS, MIN_TIME, MAX_TIME, YEAR -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Checks whether a column is stored as decimals.
+     *
+     * @param column the column
+     * @return true for decimal columns
+     */
+    public static boolean isDoubleColumn(GameData column) {
+        return column == GameData.RATING || column == GameData.DIFFICULTY;
+    }
+
+    /**
+     * Gets a whole number value from a game.
+     *
+     * @param game the game
+     * @param column a whole number column
+     * @return the value
+     */
+    private static int intValue(BoardGame game, GameData column) {
+        return switch (column) {
+            case RANK -> game.getRank();
+            case MIN_PLAYERS -> game.getMinPlayers();
+            case MAX_PLAYERS -> game.getMaxPlayers();
+            case MIN_TIME -> game.getMinPlayTime();
+            case MAX_TIME -> game.getMaxPlayTime();
+            case YEAR -> game.getYearPublished();
+            default -> throw new IllegalArgumentException("Not a whole number column " + column);
+        };
+    }
+
+    /**
+     * Gets a decimal value from a game.
+     *
+     * @param game the game
+     * @param column a decimal column
+     * @return the value
+     */
+    private static double doubleValue(BoardGame game, GameData column) {
+        return switch (column) {
+            case RATING -> game.getRating();
+            case DIFFICULTY -> game.getDifficulty();
+            default -> throw new IllegalArgumentException("Not a decimal column " + column);
+        };
+    }
+
+    /**
+     * Looks up a column array, failing for columns the map does not hold.
+     *
+     * @param map the column map
+     * @param column the column
+     * @param <T> the array type
+     * @return the column array
+     */
+    private static <T> T require(Map<GameData, T> map, GameData column) {
+        T values = map.get(column);
+        if (values == null) {
+            throw new IllegalArgumentException("Column not available: " + column);
+        }
+        return values;
+    }
+
+    /**
+     * Computes dense ranks for whole number values.
+     *
+     * @param values the values by row id
+     * @return ranks by row id
+     */
+    private static int[] denseRanks(int[] values) {
+        int[] distinct = Arrays.stream(values).sorted().distinct().toArray();
+        int[] rank = new int[values.length];
+        for (int row = 0; row < values.length; row++) {
+            rank[row] = Arrays.binarySearch(distinct, values[row]);
+        }
+        return rank;
+    }
+
+    /**
+     * Computes dense ranks for decimal values.
+     *
+     * @param values the values by row id
+     * @return ranks by row id
+     */
+    private static int[] denseRanks(double[] values) {
+        double[] distinct = Arrays.stream(values).sorted().distinct().toArray();
+        int[] rank = new int[values.length];
+        for (int row = 0; row < values.length; row++) {
+            rank[row] = Arrays.binarySearch(distinct, values[row]);
+        }
+        return rank;
+    }
+
+    /**
+     * Computes dense ranks for string values.
+     *
+     * @param values the values by row id
+     * @return ranks by row id
+     */
+    private static int[] denseRanks(String[] values) {
+        String[] distinct = Arrays.stream(values).sorted().distinct().toArray(String[]::new);
+        int[] rank = new int[values.length];
+        for (int row = 0; row < values.length; row++) {
+            rank[row] = Arrays.binarySearch(distinct, values[row]);
+        }
+        return rank;
+    }
+
+    /**
+     * Computes the ascending permutation of row ids from ranks, ties by row id.
+     *
+     * Each row is packed into a long as (rank, row) so the sort runs on primitives.
+     *
+     * @param rank ranks by row id
+     * @return row ids in ascending order
+     */
+    private static int[] permutation(int[] rank) {
+        long[] packed = new long[rank.length];
+        for (int row = 0; row < rank.length; row++) {
+            packed[row] = ((long) rank[row] << Integer.SIZE) | row;
+        }
+        Arrays.sort(packed);
+        int[] order = new int[rank.length];
+        for (int i = 0; i < packed.length; i++) {
+            order[i] = (int) packed[i];
+        }
+        return order;
+    }
+
+    /**
+     * The values of a computed or extra column in a catalog, and its sort data once needed.
+     */
+    private final class Computed {
+        /** The value of each row, the dictionary code for a category. */
+        private final IntToDoubleFunction values;
+        /** The dictionary code of each row, null unless a category. */
+        private final IntUnaryOperator codes;
+        /** The distinct values by code, null unless a category. */
+        private final String[] dictionary;
+        /** The sort data, null until first sorted on. */
+        private SortData sort;
+
+        /**
+         * Constructor for computed column data.
+         *
+         * @param values the value of each row
+         */
+        private Computed(IntToDoubleFunction values) {
+            this.values = values;
+            this.codes = null;
+            this.dictionary = null;
+        }
+
+        /**
+         * Constructor for category column data.
+         *
+         * @param codes the dictionary code of each row
+         * @param dictionary the distinct values by code
+         */
+        private Computed(IntUnaryOperator codes, String[] dictionary) {
+            this.values = codes::applyAsInt;
+            this.codes = codes;
+            this.dictionary = dictionary;
+        }
+
+        /**
+         * Gets the sort data, computing it on first use.
+         *
+         * @return the sort data
+         */
+        private synchronized SortData sortData() {
+            if (sort == null) {
+                // dictionary codes are dense ranks already
+                int[] rank = codes != null ? IntStream.range(0, games.length)
+                        .map(codes).toArray() : denseRanks(evaluate(values));
+                sort = new SortData(rank, permutation(rank),
+                        Arrays.stream(rank).max().orElse(-1) + 1);
+            }
+            return sort;
+        }
+    }
+
+    /**
+     * Ranks, ascending order and number of distinct values of a column.
+     */
+    private static final class SortData {
+        /** Dense rank of each row. */
+        private final int[] ranks;
+        /** Row ids in ascending order. */
+        private final int[] ascending;
+        /** Number of distinct values. */
+        private final int cardinality;
+
+        /**
+         * Constructor for sort data.
+         *
+         * @param ranks the dense rank of each row
+         * @param ascending the row ids in ascending order
+         * @param cardinality the number of distinct values
+         */
+        private SortData(int[] ranks, int[] ascending, int cardinality) {
+            this.ranks = ranks;
+            this.ascending = ascending;
+            this.cardinality = cardinality;
+        }
+    }
+}
@@ -31,10 +31,8 @@ public class GameList implements IGameList {
 
     @Override
     public List<String> getGameNames() {
-        // Return a sorted list of game names (case insensitive)
-        return gameNames.stream()
-                .sorted(String.CASE_INSENSITIVE_ORDER)
-                .collect(Collectors.toList());
+        // Return a sorted list of game names (case insensitive, in collation order)
+        return NameCollation.getDefault().sort(gameNames);
     }
 
     @Override
@@ -71,12 +69,32 @@ public class GameList implements IGameList {
             throw new IllegalArgumentException("Invalid input parameters");
         }
 
+        // Convert filtered stream to list for multiple passes
+        addToList(str, filtered.collect(Collectors.toList()));
+    }
+
+    @Override
+    public void addToList(String str, ResultView filtered) throws IllegalArgumentException {
+        // Validate input parameters
+        if (str == null || filtered == null) {
+            throw new IllegalArgumentException("Invalid input parameters");
+        }
+
+        // The view can be read by index directly, so it is not copied
+        addToList(str, filtered.asList());
+    }
+
+    /**
+     * Adds a game or games to the list from a list of filtered games.
+     *
+     * @param str The string to parse
+     * @param gamesList The filtered games, read by index
+     * @throws IllegalArgumentException If the string is not valid
+     */
+    private void addToList(String str, List<BoardGame> gamesList) throws IllegalArgumentException {
         // Trim input string
         String input = str.trim();
 
-        // Convert filtered stream to list for multiple passes
-        List<BoardGame> gamesList = filtered.collect(Collectors.toList());
-
         // Check if filtered list is empty
         if (gamesList.isEmpty()) {
             throw new IllegalArgumentException("No games available to add");
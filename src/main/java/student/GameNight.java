@@ -0,0 +1,80 @@
+package student;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A plan for a game night: the games to play, in order, and what they add up to.
+ */
+public final class GameNight {
+    /** The games to play, in the order to play them. */
+    private final List<BoardGame> games;
+    /** Total of the longest play times of the games. */
+    private final int minutes;
+    /** Total rating of the games. */
+    private final double totalRating;
+    /** Whether the plan is proven the best possible. */
+    private final boolean optimal;
+
+    /**
+     * Constructor for a game night.
+     *
+     * @param games the games, in the order to play them
+     * @param minutes the total of their longest play times
+     * @param totalRating the total of their ratings
+     * @param optimal whether the plan is proven the best possible
+     */
+    GameNight(List<BoardGame> games, int minutes, double totalRating, boolean optimal) {
+        this.games = Collections.unmodifiableList(games);
+        this.minutes = minutes;
+        this.totalRating = totalRating;
+        this.optimal = optimal;
+    }
+
+    /**
+     * Gets the games to play, in the order to play them.
+     *
+     * @return an unmodifiable list of games
+     */
+    public List<BoardGame> getGames() {
+        return games;
+    }
+
+    /**
+     * Gets the time the games take, by their longest play times.
+     *
+     * @return the total in minutes
+     */
+    public int getMinutes() {
+        return minutes;
+    }
+
+    /**
+     * Gets the total rating of the games.
+     *
+     * @return the sum of their ratings
+     */
+    public double getTotalRating() {
+        return totalRating;
+    }
+
+    /**
+     * Checks whether the plan is proven the best possible. A plan is not proven when the solver
+     * ran out of time and returned the best plan it had found.
+     *
+     * @return true if no plan scores higher
+     */
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder plan = new StringBuilder();
+        for (BoardGame game : games) {
+            plan.append(game.getName()).append(" (").append(game.getMaxPlayTime())
+                    .append(" min)\n");
+        }
+        return plan.append("Total: ").append(minutes).append(" min").toString();
+    }
+}
@@ -0,0 +1,172 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the games to play in one night for a group of players and a time budget.
+ *
+ * A game fits if it supports the number of players and its longest play time fits the budget.
+ * The planner maximizes an objective over the games that fit together: the summed rating, or
+ * variety, the number of games played with rating breaking ties. This is a 0/1 knapsack over
+ * whole minutes, solved exactly by dynamic programming over the budget.
+ *
+ * The candidates are first cut down without losing the best plan: at most budget / t games of
+ * play time t fit in a night, so only the best that many of each play time are kept. That leaves
+ * O(budget log budget) candidates however many games are given. If the table would still be too
+ * large, or the time limit runs out, the games not solved yet are added greedily by value per
+ * minute, and the plan is marked as not proven optimal.
+ *
+ * The games of a plan are ordered heaviest first, while the players are fresh.
+ */
+public final class GameNightPlanner {
+    /** Time limit used when none is given. */
+    public static final long DEFAULT_TIME_LIMIT_MILLIS = 250;
+    /** Largest number of table cells the solver fills before completing the plan greedily. */
+    private static final long MAX_CELLS = 1L << 26;
+
+    /**
+     * What a plan maximizes.
+     */
+    public enum Objective {
+        /** The summed rating of the games. */
+        RATING,
+        /** The number of games, then their summed rating. */
+        VARIETY
+    }
+
+    // Private constructor to prevent instantiation
+    private GameNightPlanner() {
+        // Utility class should not be instantiated
+    }
+
+    /**
+     * Plans a game night.
+     *
+     * @param candidates the games to choose from
+     * @param players the number of players
+     * @param minutes the time budget in minutes
+     * @param objective what to maximize
+     * @param timeLimitMillis how long to search before returning the best plan found
+     * @return the plan, empty if no game fits
+     * @throws IllegalArgumentException if players is less than 1 or the budget or time limit is
+     *         negative
+     */
+    public static GameNight plan(Collection<BoardGame> candidates, int players, int minutes,
+            Objective objective, long timeLimitMillis) {
+        if (players < 1) {
+            throw new IllegalArgumentException("Need at least one player: " + players);
+        }
+        if (minutes < 0 || timeLimitMillis < 0) {
+            throw new IllegalArgumentException("Time must not be negative");
+        }
+        long deadline = System.nanoTime() + timeLimitMillis * 1_000_000;
+
+        // Games that fit on their own, once each
+        Map<Integer, BoardGame> fitting = new LinkedHashMap<>();
+        double ratings = 0;
+        for (BoardGame game : candidates) {
+            if (game.getMinPlayers() <= players && game.getMaxPlayers() >= players
+                    && game.getMaxPlayTime() > 0 && game.getMaxPlayTime() <= minutes
+                    && fitting.putIfAbsent(game.getId(), game) == null) {
+                ratings += Math.max(game.getRating(), 0);
+            }
+        }
+        double ratingScale = 1 + ratings;
+        Comparator<Item> byValue = Comparator.comparingDouble((Item item) -> -item.value)
+                .thenComparingInt(item -> item.game.getId());
+        List<Item> items = new ArrayList<>();
+        for (BoardGame game : fitting.values()) {
+            double rating = Math.max(game.getRating(), 0);
+            // variety counts games first, the ratings only add up to less than one game
+            double value = objective == Objective.RATING ? rating : 1 + rating / ratingScale;
+            if (value > 0) {
+                items.add(new Item(game, value));
+            }
+        }
+
+        // Keep the best budget / t games of each play time t
+        items.sort(Comparator.comparingInt((Item item) -> item.minutes).thenComparing(byValue));
+        List<Item> kept = new ArrayList<>();
+        int run = 0;
+        for (int i = 0; i < items.size(); i++) {
+            run = i > 0 && items.get(i - 1).minutes == items.get(i).minutes ? run + 1 : 0;
+            if (run < minutes / items.get(i).minutes) {
+                kept.add(items.get(i));
+            }
+        }
+        kept.sort(Comparator.comparingDouble((Item item) -> -item.value / item.minutes)
+                .thenComparing(byValue));
+
+        // Best value within each budget, over the first games solved
+        int width = minutes + 1;
+        int rows = (int) Math.min(kept.size(), MAX_CELLS / width);
+        double[] best = new double[width];
+        BitSet taken = new BitSet();
+        int solved = 0;
+        while (solved < rows && System.nanoTime() < deadline) {
+            Item item = kept.get(solved);
+            for (int t = minutes; t >= item.minutes; t--) {
+                double value = best[t - item.minutes] + item.value;
+                if (value > best[t]) {
+                    best[t] = value;
+                    taken.set(solved * width + t);
+                }
+            }
+            solved++;
+        }
+
+        List<BoardGame> chosen = new ArrayList<>();
+        int left = minutes;
+        for (int i = solved - 1; i >= 0; i--) {
+            if (taken.get(i * width + left)) {
+                chosen.add(kept.get(i).game);
+                left -= kept.get(i).minutes;
+            }
+        }
+        // Games not solved are added greedily
+        for (int i = solved; i < kept.size(); i++) {
+            if (kept.get(i).minutes <= left) {
+                chosen.add(kept.get(i).game);
+                left -= kept.get(i).minutes;
+            }
+        }
+
+        chosen.sort(Comparator.comparingDouble(BoardGame::getDifficulty).reversed()
+                .thenComparing(BoardGame::getName, SortComparator.nameComparator()));
+        double totalRating = 0;
+        for (BoardGame game : chosen) {
+            totalRating += game.getRating();
+        }
+        return new GameNight(chosen, minutes - left, totalRating, solved == kept.size());
+    }
+
+    /**
+     * A candidate game with its play time and value.
+     */
+    private static final class Item {
+        /** The game. */
+        private final BoardGame game;
+        /** Its longest play time. */
+        private final int minutes;
+        /** Its value under the objective. */
+        private final double value;
+
+        /**
+         * Constructor for a candidate.
+         *
+         * @param game the game
+         * @param value its value under the objective
+         */
+        private Item(BoardGame game, double value) {
+            this.game = game;
+            this.minutes = game.getMaxPlayTime();
+            this.value = value;
+        }
+    }
+}
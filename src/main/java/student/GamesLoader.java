@@ -53,9 +53,12 @@ public final class GamesLoader {
             return games;
         }
 
-        Map<GameData, Integer> columnMap = processHeader(lines.remove(0));
+        String header = lines.remove(0);
+        Map<GameData, Integer> columnMap = processHeader(header);
+        Map<ExtraColumn, Integer> extraMap = processExtraHeader(header);
+        Map<String, String> shared = new HashMap<>();
 
-        games = lines.stream().map(line -> toBoardGame(line, columnMap))
+        games = lines.stream().map(line -> toBoardGame(line, columnMap, extraMap, shared))
                 .filter(game -> game != null).collect(Collectors.toSet());
 
         return games;
@@ -67,14 +70,25 @@ public final class GamesLoader {
      * 
      * @param line      the line to convert
      * @param columnMap the map of columns to index
+     * @param extraMap the map of extra columns to index
+     * @param shared values read so far, so equal extra values share one string
      * @return a BoardGame object
      */
-    private static BoardGame toBoardGame(String line, Map<GameData, Integer> columnMap) {
+    private static BoardGame toBoardGame(String line, Map<GameData, Integer> columnMap,
+            Map<ExtraColumn, Integer> extraMap, Map<String, String> shared) {
         String[] columns = line.split(DELIMITER);
         if (columns.length < columnMap.values().stream().max(Integer::compareTo).get()) {
             return null;
         }
 
+        Map<ExtraColumn, String> extras = new HashMap<>();
+        extraMap.forEach((column, index) -> {
+            // split drops trailing empty columns, so they have no value
+            if (index < columns.length && !columns[index].isEmpty()) {
+                extras.put(column, shared.computeIfAbsent(columns[index], value -> value));
+            }
+        });
+
         try {
             BoardGame game = new BoardGame(columns[columnMap.get(GameData.NAME)],
                     Integer.parseInt(columns[columnMap.get(GameData.ID)]),
@@ -85,7 +99,7 @@ public final class GamesLoader {
                     Double.parseDouble(columns[columnMap.get(GameData.DIFFICULTY)]),
                     Integer.parseInt(columns[columnMap.get(GameData.RANK)]),
                     Double.parseDouble(columns[columnMap.get(GameData.RATING)]),
-                    Integer.parseInt(columns[columnMap.get(GameData.YEAR)]));
+                    Integer.parseInt(columns[columnMap.get(GameData.YEAR)]), extras);
             return game;
         } catch (NumberFormatException e) {
             // skip if there is an issue
@@ -117,4 +131,23 @@ public final class GamesLoader {
         return columnMap;
     }
 
+    /**
+     * Processes the header line to find the registered extra columns.
+     * 
+     * @param header the header line
+     * @return a map of extra column to index, for the columns the file has
+     * @see ExtraColumn
+     */
+    private static Map<ExtraColumn, Integer> processExtraHeader(String header) {
+        Map<ExtraColumn, Integer> extraMap = new HashMap<>();
+        String[] columns = header.split(DELIMITER);
+        for (int i = 0; i < columns.length; i++) {
+            ExtraColumn column = ExtraColumn.lookup(columns[i]);
+            if (column != null) {
+                extraMap.put(column, i);
+            }
+        }
+        return extraMap;
+    }
+
 }
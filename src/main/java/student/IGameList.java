@@ -88,6 +88,16 @@ public interface IGameList {
      */
     void addToList(String str, Stream<BoardGame> filtered) throws IllegalArgumentException;
 
+    /**
+     * Adds a game or games to the list, reading them from a filter result view. Works the same
+     * as {@link #addToList(String, Stream)}, without copying the filtered games.
+     * 
+     * @param str      the string to parse and add games to the list.
+     * @param filtered the filtered results to use as a basis for adding.
+     * @throws IllegalArgumentException if the string is not valid.
+     */
+    void addToList(String str, ResultView filtered) throws IllegalArgumentException;
+
     /**
      * Removes a game or games from the list.
      * 
@@ -1,5 +1,9 @@
 package student;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 /**
@@ -60,6 +64,10 @@ public interface IPlanner {
      * 
      * ~= : contains the text
      * 
+     * : : overlaps a range, only for players and time. players:4 keeps games that can be played
+     * by exactly 4 players, and time:30-60 keeps games whose play time range overlaps 30 to 60
+     * minutes. Both are answered from an index rather than by testing every game.
+     * 
      * The left side of the filter describes the column to filter on. The right side of the filter
      * describes the value to filter on.
      * 
@@ -96,6 +104,19 @@ public interface IPlanner {
      * would filter the board games to only those with the word "pandemic" in the name, but could
      * also have Pandemic or PANDEMIC.
      * 
+     * Names can also be matched against a regular expression between slashes, or a glob where *
+     * matches anything and ? any one character. Both ignore case. For example:
+     * 
+     * name~/^(7|seven) wonders/
+     * 
+     * name=*dungeon*
+     * 
+     * A comma inside a regex, as in name~/^.{1,3}$/, belongs to the regex, unless it follows the
+     * closing slash, which ends the clause. Globs cannot hold commas.
+     * 
+     * Each pattern is compiled once and cached. Games are first checked for the fixed text the
+     * pattern needs, such as "wonders" or "dungeon", so most never reach the regex engine.
+     * 
      * Column names will match the values in GameData. As such is it possible to use
      * 
      * GameData.MIN_PLAYERS.getColumnName() or GameData.fromString("minplayers") to get the column
@@ -103,6 +124,9 @@ public interface IPlanner {
      * 
      * Note: id is a special column that is not used for filtering or sorting.
      * 
+     * Registered {@link ExtraColumn extra columns}, such as objecttype==thing or numowned>1000,
+     * filter the same way by their csv name. Category values compare ignoring case and spaces.
+     * 
      * if the filter is empty (""), then the results should return the current filter sorted based
      * on the sortOn column and in the defined direction.
      * 
@@ -115,9 +139,267 @@ public interface IPlanner {
      */
     Stream<BoardGame> filter(String filter, GameData sortOn, boolean ascending);
 
+    /**
+     * Filters the board games by the passed in text filter, sorting the results on several
+     * columns.
+     * 
+     * The filter works the same as {@link #filter(String, GameData, boolean)}. The results are
+     * sorted on the first key of the sort spec, and ties are broken by the keys that follow, for
+     * example SortSpec.parse("rating desc, difficulty asc, name asc").
+     * 
+     * The filter is applied to the current filter right away, but no games are filtered or
+     * sorted until a terminal operation is called on the returned stream.
+     * 
+     * @param filter The filter to apply to the board games.
+     * @param sortOn The columns and directions to sort the results on.
+     * @return A stream of board games that match the filter.
+     * @see #filter(String, GameData, boolean)
+     */
+    Stream<BoardGame> filter(String filter, SortSpec sortOn);
+
+    /**
+     * Filters the board games like {@link #filter(String)}, returning a read only view of the
+     * results sorted by name in ascending order.
+     * 
+     * @param filter The filter to apply to the board games.
+     * @return A view of the board games that match the filter.
+     */
+    ResultView view(String filter);
+
+    /**
+     * Filters the board games like {@link #filter(String, SortSpec)}, returning a read only view
+     * of the results. The view can be read by index and sliced without copying the results.
+     * 
+     * @param filter The filter to apply to the board games.
+     * @param sortOn The columns and directions to sort the results on.
+     * @return A view of the board games that match the filter.
+     */
+    ResultView view(String filter, SortSpec sortOn);
+
+    /**
+     * Evaluates several independent queries, each applied on top of the current filter, in a
+     * single pass over the games. Clauses shared between queries are only tested once. The
+     * current filter is left unchanged.
+     * 
+     * @param queries The filters and sorts to evaluate.
+     * @return A view of the results of each query, in the same order.
+     */
+    List<ResultView> batch(List<QuerySpec> queries);
+
+    /**
+     * Subscribes to the results of a filter, applied on top of the current filter, as new
+     * versions of the collection are published. The listener is told which games were added,
+     * removed or reordered by each version that changes the results. The current filter is left
+     * unchanged.
+     * 
+     * @param filter The filter to follow.
+     * @param sortOn The columns and directions the results are sorted on.
+     * @param listener Receives the changes to the results.
+     * @return The subscription, holding the current results, to close when no longer needed.
+     * @throws IllegalArgumentException if a clause of the current filter no longer parses, such
+     *         as one on a computed column that was removed since.
+     */
+    Subscription subscribe(String filter, SortSpec sortOn, Consumer<ResultDelta> listener);
+
+    /**
+     * Counts the board games that match a filter, applied on top of the current filter. Unlike
+     * {@link #filter(String)}, the current filter is left unchanged and nothing is sorted.
+     * 
+     * @param filter The filter to test, "" to count the current filter.
+     * @return The number of matching board games.
+     */
+    long count(String filter);
+
+    /**
+     * Checks whether any board game matches a filter, applied on top of the current filter. The
+     * current filter is left unchanged, and the check stops at the first match.
+     * 
+     * @param filter The filter to test, "" to check the current filter.
+     * @return true if at least one board game matches.
+     */
+    boolean exists(String filter);
+
+    /**
+     * Computes the count, minimum, maximum, sum, mean and histogram of a numeric column over the
+     * games that match a filter, applied on top of the current filter. The current filter is left
+     * unchanged. The histogram has {@link ColumnStats#DEFAULT_BINS} bins.
+     * 
+     * @param filter The filter to test, "" to aggregate the current filter.
+     * @param column The numeric column to aggregate.
+     * @return The statistics of the column.
+     * @throws IllegalArgumentException if the column is not numeric.
+     */
+    ColumnStats aggregate(String filter, GameData column);
+
+    /**
+     * Computes the statistics of several numeric columns over the games that match a filter,
+     * reading each matching game once for all of them. With no filter at all, the statistics
+     * computed when the games were loaded are returned without reading any game.
+     * 
+     * @param filter The filter to test, "" to aggregate the current filter.
+     * @param columns The numeric columns to aggregate.
+     * @param bins The number of histogram bins per column.
+     * @return The statistics of each column, in the order given.
+     * @throws IllegalArgumentException if a column is not numeric or bins is less than 1.
+     */
+    Map<GameData, ColumnStats> aggregate(String filter, Collection<GameData> columns, int bins);
+
+    /**
+     * Counts the games of the current filter in each bucket of a facet, such as the number of
+     * games for each player count. Counts are kept per filter step, and narrowing the filter
+     * only takes off the games it removed, so asking after every filter is cheap.
+     * 
+     * @param facet The facet to count by.
+     * @return The number of games in each bucket by label, in bucket order.
+     */
+    Map<String, Integer> facets(Facet facet);
+
+    /**
+     * Finds the games of the current filter most similar to a game, comparing rating,
+     * difficulty, player counts and play times with equal weights.
+     * 
+     * @param name The name of the game to compare with, any case. It need not pass the filter.
+     * @param k The number of games to find.
+     * @return Up to k games, most similar first, never the game itself.
+     * @throws IllegalArgumentException if no game has that name or k is negative.
+     * @see #similar(String, int, Map)
+     */
+    List<BoardGame> similar(String name, int k);
+
+    /**
+     * Finds the games of the current filter most similar to a game, by weighted distance over
+     * rating, difficulty, player counts and play times. Each feature is scaled to the spread of
+     * the collection before weighting, and is looked up in an index rather than compared with
+     * every game.
+     * 
+     * @param name The name of the game to compare with, any case. It need not pass the filter.
+     * @param k The number of games to find.
+     * @param weights The weight of each feature, from {@link SimilarityIndex#FEATURES}. Features
+     *        left out are ignored.
+     * @return Up to k games, most similar first, never the game itself.
+     * @throws IllegalArgumentException if no game has that name, k is negative, or a weight is
+     *         negative or not for a feature.
+     */
+    List<BoardGame> similar(String name, int k, Map<GameData, Double> weights);
+
+    /**
+     * Plans a game night from the games that match a filter, applied on top of the current
+     * filter. Games must support the number of players, and their longest play times must add
+     * up to no more than the time budget. The current filter is left unchanged.
+     * 
+     * @param filter The filter to test, "" to plan from the current filter.
+     * @param players The number of players.
+     * @param minutes The time budget in minutes.
+     * @param objective What the plan maximizes.
+     * @return The plan, its games ordered heaviest first.
+     * @throws IllegalArgumentException if players is less than 1 or minutes is negative.
+     * @see GameNightPlanner
+     */
+    GameNight planNight(String filter, int players, int minutes,
+            GameNightPlanner.Objective objective);
+
+    /**
+     * Plans a game night from a list of game names, such as the names of a game list. Names of
+     * games not in the collection are ignored.
+     * 
+     * @param names The names of the games to choose from.
+     * @param players The number of players.
+     * @param minutes The time budget in minutes.
+     * @param objective What the plan maximizes.
+     * @return The plan, its games ordered heaviest first.
+     * @throws IllegalArgumentException if players is less than 1 or minutes is negative.
+     * @see IGameList#getGameNames()
+     */
+    GameNight planNight(Collection<String> names, int players, int minutes,
+            GameNightPlanner.Objective objective);
+
+    /**
+     * Ranks the games that match a filter, applied on top of the current filter, by a blended
+     * score, and returns the best k. For example, {@code ScoreSpec.parse("0.6*rating -
+     * 0.3*difficulty + 0.1*year")} favours well rated, light and recent games. Only the best k
+     * are kept while ranking, so nothing is sorted. The current filter is left unchanged.
+     * 
+     * @param filter The filter to test, "" to rank the current filter.
+     * @param score The score to rank by.
+     * @param k The number of games to return.
+     * @return Up to k games, highest score first, equal scores by name.
+     * @throws IllegalArgumentException if k is negative.
+     */
+    List<BoardGame> top(String filter, ScoreSpec score, int k);
+
+    /**
+     * Picks random board games that match a filter, applied on top of the current filter. Every
+     * match is equally likely to be picked. The filter is read in one pass, and only the picks
+     * are kept. The current filter is left unchanged and nothing is sorted.
+     * 
+     * @param filter The filter to test, "" to sample the current filter.
+     * @param n The number of games to pick.
+     * @return Up to n distinct matching games, sorted by name.
+     * @throws IllegalArgumentException if n is negative.
+     */
+    List<BoardGame> sample(String filter, int n);
+
+    /**
+     * Picks random board games that match a filter, like {@link #sample(String, int)}, always
+     * picking the same games for the same seed and collection.
+     * 
+     * @param filter The filter to test, "" to sample the current filter.
+     * @param n The number of games to pick.
+     * @param seed The seed of the random picks.
+     * @return Up to n distinct matching games, sorted by name.
+     * @throws IllegalArgumentException if n is negative.
+     */
+    List<BoardGame> sample(String filter, int n, long seed);
+
+    /**
+     * Picks random board games that match a filter, favouring games with a higher value in a
+     * numeric column. For example, weighting on GameData.RATING makes a game rated 8 twice as
+     * likely to be picked first as a game rated 4. Games with a value of zero or less are never
+     * picked.
+     * 
+     * @param filter The filter to test, "" to sample the current filter.
+     * @param n The number of games to pick.
+     * @param weightOn The numeric column to weight by, or null for equal weights.
+     * @param seed The seed of the random picks.
+     * @return Up to n distinct matching games, sorted by name.
+     * @throws IllegalArgumentException if n is negative or the column is not numeric.
+     */
+    List<BoardGame> sample(String filter, int n, GameData weightOn, long seed);
+
     /**
      * Resets the collection to have no filters applied.
      */
     void reset();
 
+    /**
+     * Steps back to before the most recent filter that added clauses, as if it had never been
+     * applied. Does nothing if no filters are applied.
+     * 
+     * Earlier results are kept, so stepping back never filters the collection again.
+     */
+    void undo();
+
+    /**
+     * Jumps back to an earlier filter step. Step 0 is the unfiltered collection, and each filter
+     * that adds clauses is one more step. Later steps are dropped once a new filter is applied.
+     * 
+     * @param step The step to return to, from 0 to {@link #currentStep()}.
+     * @throws IllegalArgumentException if the step does not exist.
+     */
+    void revertTo(int step);
+
+    /**
+     * Gets the current filter step, 0 when no filters are applied.
+     * 
+     * @return the current step.
+     */
+    int currentStep();
+
+    /**
+     * Gets the clauses each step added, in normalized form. The first entry is step 1.
+     * 
+     * @return the clauses added by each step up to the current one.
+     */
+    List<String> filterHistory();
+
 }
@@ -0,0 +1,182 @@
+package student;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Centered interval tree over one range per row, such as [minPlayers, maxPlayers], answering
+ * which rows overlap a query range in O(log n + k) for k matches.
+ *
+ * Each node holds a center value and the intervals that contain it, once sorted by lower bound
+ * and once by upper bound, descending. Intervals entirely below the center go to the left
+ * subtree and intervals entirely above it to the right. The center is the median lower bound of
+ * the node's intervals, so every node holds at least one interval and the tree has O(log n)
+ * levels. Rows whose upper bound is below their lower bound match no query and are left out.
+ */
+public final class IntervalIndex {
+    /** Lower bounds, by row id. */
+    private final int[] lower;
+    /** Upper bounds, by row id. */
+    private final int[] upper;
+    /** The root node, null if no row has a valid interval. */
+    private final Node root;
+
+    /**
+     * Builds the index.
+     *
+     * @param lower the lower bound of each row, must not be modified afterwards
+     * @param upper the upper bound of each row, must not be modified afterwards
+     */
+    public IntervalIndex(int[] lower, int[] upper) {
+        this.lower = lower;
+        this.upper = upper;
+        int[] rows = new int[lower.length];
+        int n = 0;
+        for (int row = 0; row < lower.length; row++) {
+            if (lower[row] <= upper[row]) {
+                rows[n++] = row;
+            }
+        }
+        this.root = build(sortBy(lower, Arrays.copyOf(rows, n), false));
+    }
+
+    /**
+     * Finds the rows whose interval overlaps a range, bounds included. A single value finds the
+     * intervals that contain it.
+     *
+     * @param from the lower bound of the range
+     * @param to the upper bound of the range
+     * @return the matching rows, empty if from is greater than to
+     */
+    public BitSet overlapping(int from, int to) {
+        BitSet matches = new BitSet(lower.length);
+        if (from <= to) {
+            collect(root, from, to, matches);
+        }
+        return matches;
+    }
+
+    /**
+     * Collects the rows of a subtree that overlap a range.
+     *
+     * @param start the root of the subtree
+     * @param from the lower bound of the range
+     * @param to the upper bound of the range
+     * @param matches receives the matching rows
+     */
+    private void collect(Node start, int from, int to, BitSet matches) {
+        Node node = start;
+        while (node != null) {
+            if (to < node.center) {
+                // every interval here ends after the range, so it overlaps if it starts in it
+                for (int row : node.byLower) {
+                    if (lower[row] > to) {
+                        break;
+                    }
+                    matches.set(row);
+                }
+                node = node.left;
+            } else if (from > node.center) {
+                for (int row : node.byUpper) {
+                    if (upper[row] < from) {
+                        break;
+                    }
+                    matches.set(row);
+                }
+                node = node.right;
+            } else {
+                // the range covers the center, so every interval here overlaps it
+                for (int row : node.byLower) {
+                    matches.set(row);
+                }
+                collect(node.left, from, to, matches);
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Builds the subtree of a set of rows.
+     *
+     * @param rows the rows, sorted by lower bound
+     * @return the root of the subtree, null if there are no rows
+     */
+    private Node build(int[] rows) {
+        if (rows.length == 0) {
+            return null;
+        }
+        int center = lower[rows[rows.length / 2]];
+        int[] left = new int[rows.length];
+        int[] middle = new int[rows.length];
+        int[] right = new int[rows.length];
+        int l = 0;
+        int m = 0;
+        int r = 0;
+        for (int row : rows) {
+            if (upper[row] < center) {
+                left[l++] = row;
+            } else if (lower[row] > center) {
+                right[r++] = row;
+            } else {
+                middle[m++] = row;
+            }
+        }
+        int[] byLower = Arrays.copyOf(middle, m);
+        return new Node(center, byLower, sortBy(upper, byLower.clone(), true),
+                build(Arrays.copyOf(left, l)), build(Arrays.copyOf(right, r)));
+    }
+
+    /**
+     * Sorts rows by a bound, ties by row id.
+     *
+     * @param bounds the bound of each row
+     * @param rows the rows to sort, sorted in place
+     * @param descending whether to put the largest bounds first
+     * @return the sorted rows
+     */
+    private static int[] sortBy(int[] bounds, int[] rows, boolean descending) {
+        long[] keyed = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            long bound = descending ? -(long) bounds[rows[i]] : bounds[rows[i]];
+            keyed[i] = (bound << Integer.SIZE) | rows[i];
+        }
+        Arrays.sort(keyed);
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = (int) keyed[i];
+        }
+        return rows;
+    }
+
+    /**
+     * A node of the tree.
+     */
+    private static final class Node {
+        /** The center value. */
+        private final int center;
+        /** Rows whose interval contains the center, by ascending lower bound. */
+        private final int[] byLower;
+        /** The same rows, by descending upper bound. */
+        private final int[] byUpper;
+        /** Subtree of the intervals below the center. */
+        private final Node left;
+        /** Subtree of the intervals above the center. */
+        private final Node right;
+
+        /**
+         * Constructor for a node.
+         *
+         * @param center the center value
+         * @param byLower the rows containing the center, by ascending lower bound
+         * @param byUpper the same rows, by descending upper bound
+         * @param left the subtree below the center
+         * @param right the subtree above the center
+         */
+        private Node(int center, int[] byLower, int[] byUpper, Node left, Node right) {
+            this.center = center;
+            this.byLower = byLower;
+            this.byUpper = byUpper;
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package student;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The order of game names for a locale, so that accented and non-Latin titles sort where a reader
+ * of that language expects them, rather than by character code.
+ *
+ * Comparing with a {@link Collator} directly is slow, as every comparison works through the
+ * collation rules of both names. Instead each name is turned once into a binary collation key,
+ * and names are ordered by comparing their keys as unsigned bytes, which is a plain memory
+ * compare. Keys are not cached here, so names typed by users never pile up: a catalog keeps the
+ * keys of its own names, and {@link #sort(Collection)} builds each key once per call. A key takes
+ * about four bytes per character.
+ *
+ * Case is ignored while accents are not: "Go" and "GO" compare equal, and "Cafe" sorts before
+ * "Caf&eacute;".
+ */
+public final class NameCollation {
+    /** The collation used when none is given, for the root locale until changed. */
+    private static volatile NameCollation defaultCollation = new NameCollation(Locale.ROOT);
+
+    /** The locale whose rules order the names. */
+    private final Locale locale;
+    /** The collator, which synchronizes its own key building. */
+    private final Collator collator;
+
+    /**
+     * Constructor for a name collation.
+     *
+     * @param locale the locale whose rules order the names
+     */
+    private NameCollation(Locale locale) {
+        this.locale = locale;
+        this.collator = Collator.getInstance(locale);
+        collator.setStrength(Collator.SECONDARY);
+        collator.setDecomposition(Collator.CANONICAL_DECOMPOSITION);
+    }
+
+    /**
+     * Creates the collation for a locale.
+     *
+     * @param locale the locale whose rules order the names
+     * @return the collation
+     */
+    public static NameCollation forLocale(Locale locale) {
+        Objects.requireNonNull(locale, "locale");
+        NameCollation current = defaultCollation;
+        return current.locale.equals(locale) ? current : new NameCollation(locale);
+    }
+
+    /**
+     * Gets the collation used by catalogs and comparators that are not given one.
+     *
+     * @return the default collation
+     */
+    public static NameCollation getDefault() {
+        return defaultCollation;
+    }
+
+    /**
+     * Sets the locale of the default collation. Catalogs built earlier keep their order.
+     *
+     * @param locale the locale whose rules order the names
+     */
+    public static void setDefault(Locale locale) {
+        defaultCollation = forLocale(locale);
+    }
+
+    /**
+     * Gets the locale whose rules order the names.
+     *
+     * @return the locale
+     */
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * Builds the collation key of a name.
+     *
+     * @param name the name
+     * @return the key, which compares with {@link #compare(byte[], byte[])} like the name
+     */
+    public byte[] key(String name) {
+        return collator.getCollationKey(name).toByteArray();
+    }
+
+    /**
+     * Compares two collation keys.
+     *
+     * @param a one key
+     * @param b another key
+     * @return negative, zero or positive as the first name sorts before, with or after the second
+     */
+    public static int compare(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, b);
+    }
+
+    /**
+     * Gets a comparator of names, which runs the collation rules on every comparison. Names that
+     * differ only in case compare equal. To sort many names, {@link #sort(Collection)} is faster.
+     *
+     * @return the comparator
+     */
+    public Comparator<String> comparator() {
+        return collator::compare;
+    }
+
+    /**
+     * Sorts names, building the key of each name once rather than comparing through the rules.
+     *
+     * @param names the names to sort
+     * @return a new list of the names in collation order, names equal but for case in the order
+     *         given
+     */
+    public List<String> sort(Collection<String> names) {
+        Keyed[] keyed = new Keyed[names.size()];
+        int i = 0;
+        for (String name : names) {
+            keyed[i++] = new Keyed(name, key(name));
+        }
+        Arrays.sort(keyed, (a, b) -> compare(a.key, b.key));
+        List<String> sorted = new ArrayList<>(keyed.length);
+        for (Keyed entry : keyed) {
+            sorted.add(entry.name);
+        }
+        return sorted;
+    }
+
+    @Override
+    public String toString() {
+        return "NameCollation{" + locale.toLanguageTag() + '}';
+    }
+
+    /**
+     * A name with its collation key.
+     */
+    private static final class Keyed {
+        /** The name. */
+        private final String name;
+        /** Its collation key. */
+        private final byte[] key;
+
+        /**
+         * Constructor for a keyed name.
+         *
+         * @param name the name
+         * @param key its collation key
+         */
+        private Keyed(String name, byte[] key) {
+            this.name = name;
+            this.key = key;
+        }
+    }
+}
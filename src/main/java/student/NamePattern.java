@@ -0,0 +1,299 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * A regex or glob pattern over game names, such as {@code ^(7|seven) wonders} or
+ * {@code *dungeon*}. Patterns match ignoring case.
+ *
+ * Running a regex is much slower than looking for a fixed string, so each pattern also keeps the
+ * literal fragments every matching name must contain, in lower case. A name is only handed to the
+ * regex once it contains all of them, which a plain substring search over the lower case names
+ * decides, so most names never reach the regex. Patterns with no fragment that is certain, such
+ * as alternatives at the top level, test every name.
+ *
+ * Compiled patterns are cached by their text, so a filter is compiled once however often it is
+ * run.
+ */
+public final class NamePattern {
+    /** Letters of escapes that stand alone, such as \d or \b, with no operand after them. */
+    private static final String SIMPLE_ESCAPES = "dDsSwWhHvVbBAzZGRX";
+    /** Most patterns kept in the cache before it is emptied. */
+    private static final int CACHE_SIZE = 256;
+    /** Compiled patterns, by kind and text. */
+    private static final Map<String, NamePattern> CACHE = new ConcurrentHashMap<>();
+
+    /** The compiled pattern. */
+    private final Pattern pattern;
+    /** Whether the pattern must match the whole name, as globs do. */
+    private final boolean whole;
+    /** Lower case fragments every matching name contains, longest first. */
+    private final List<String> literals;
+
+    /**
+     * Constructor for a name pattern.
+     *
+     * @param pattern the compiled pattern
+     * @param whole whether the pattern must match the whole name
+     * @param literals lower case fragments every matching name contains
+     */
+    private NamePattern(Pattern pattern, boolean whole, List<String> literals) {
+        this.pattern = pattern;
+        this.whole = whole;
+        literals.sort(Comparator.comparingInt(String::length).reversed());
+        this.literals = List.copyOf(literals);
+    }
+
+    /**
+     * Gets the pattern for a regex, which matches names containing a match, compiling it on
+     * first use.
+     *
+     * @param regex the regular expression
+     * @return the pattern
+     * @throws IllegalArgumentException if the regex is not valid
+     */
+    public static NamePattern regex(String regex) {
+        return cached("~/" + regex, () -> new NamePattern(compile(regex), false,
+                regexLiterals(regex)));
+    }
+
+    /**
+     * Gets the pattern for a glob, which matches whole names, compiling it on first use. In a
+     * glob * matches any run of characters and ? any single character; everything else matches
+     * itself.
+     *
+     * @param glob the glob
+     * @return the pattern
+     */
+    public static NamePattern glob(String glob) {
+        return cached("=" + glob, () -> {
+            StringBuilder regex = new StringBuilder();
+            List<String> literals = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            for (char c : glob.toCharArray()) {
+                if (c == '*' || c == '?') {
+                    regex.append(c == '*' ? ".*" : ".");
+                    addLiteral(literals, literal);
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                    literal.append(c);
+                }
+            }
+            addLiteral(literals, literal);
+            return new NamePattern(compile(regex.toString()), true, literals);
+        });
+    }
+
+    /**
+     * Looks up a pattern in the cache, compiling it if missing.
+     *
+     * @param key the kind and text of the pattern
+     * @param compiler compiles the pattern
+     * @return the pattern
+     */
+    private static NamePattern cached(String key, Supplier<NamePattern> compiler) {
+        NamePattern found = CACHE.get(key);
+        if (found != null) {
+            return found;
+        }
+        if (CACHE.size() >= CACHE_SIZE) {
+            CACHE.clear();
+        }
+        return CACHE.computeIfAbsent(key, k -> compiler.get());
+    }
+
+    /**
+     * Compiles a regex to match ignoring case.
+     *
+     * @param regex the regex
+     * @return the compiled pattern
+     */
+    private static Pattern compile(String regex) {
+        return Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    /**
+     * Finds the literal fragments every match of a regex contains. Only the top level is read:
+     * groups, character classes and escapes such as \d end a fragment, a character made optional
+     * by ?, * or {...} is dropped, and alternatives at the top level, inline flags anywhere or
+     * escapes with an operand, such as \x41, give no fragments. Leaving out a fragment only costs
+     * time, while a wrong one would drop names that match.
+     *
+     * @param regex the regex
+     * @return the lower case fragments, possibly none
+     */
+    private static List<String> regexLiterals(String regex) {
+        List<String> literals = new ArrayList<>();
+        if (regex.contains("(?")) {
+            return literals; // flags such as (?x) change what the rest means
+        }
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                char next = i + 1 < regex.length() ? regex.charAt(i + 1) : 'E';
+                if (!Character.isLetterOrDigit(next)) {
+                    literal.append(next); // a quoted character such as \.
+                } else if (SIMPLE_ESCAPES.indexOf(next) >= 0) {
+                    addLiteral(literals, literal); // a class such as \d, or a boundary
+                } else {
+                    // escapes such as \x41, \0101, \k<n>, \cX, \Q and unicode escapes take
+                    // an operand, which must not be read as literal text
+                    return new ArrayList<>();
+                }
+                i += 2;
+            } else if (c == '(' || c == '[') {
+                addLiteral(literals, literal);
+                int end = closing(regex, i);
+                if (end < 0) {
+                    return new ArrayList<>();
+                }
+                i = end + 1;
+            } else if (c == '|') {
+                return new ArrayList<>();
+            } else if (c == '?' || c == '*' || c == '{') {
+                if (literal.length() > 0) {
+                    literal.setLength(literal.length() - 1); // the character may be missing
+                }
+                addLiteral(literals, literal);
+                int end = c == '{' ? regex.indexOf('}', i) : i;
+                if (end < 0) {
+                    return new ArrayList<>();
+                }
+                i = end + 1;
+            } else if (c == '+') {
+                addLiteral(literals, literal); // the character repeats, so the run stops here
+                i++;
+            } else if (c == '.' || c == '^' || c == '$' || c == ')' || c == ']' || c == '}') {
+                addLiteral(literals, literal);
+                i++;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        addLiteral(literals, literal);
+        return literals;
+    }
+
+    /**
+     * Finds the end of the group or character class opening at a position.
+     *
+     * @param regex the regex
+     * @param open the position of ( or [
+     * @return the position of the matching ) or ], or -1 if there is none or a class is nested
+     */
+    private static int closing(String regex, int open) {
+        boolean inClass = false;
+        int depth = 0;
+        for (int i = open; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                if (c == '[') {
+                    return -1;
+                }
+                if (c == ']') {
+                    inClass = false;
+                    if (depth == 0) {
+                        return i;
+                    }
+                }
+            } else if (c == '[') {
+                inClass = true;
+                // a ] straight after [ or [^ is a member of the class
+                i += i + 1 < regex.length() && regex.charAt(i + 1) == '^' ? 1 : 0;
+                i += i + 1 < regex.length() && regex.charAt(i + 1) == ']' ? 1 : 0;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a fragment to the list if it is not empty, and starts a new one.
+     *
+     * @param literals the fragments so far
+     * @param literal the fragment being read
+     */
+    private static void addLiteral(List<String> literals, StringBuilder literal) {
+        if (literal.length() > 0) {
+            literals.add(literal.toString().toLowerCase(Locale.ROOT));
+            literal.setLength(0);
+        }
+    }
+
+    /**
+     * Gets the lower case fragments every matching name contains.
+     *
+     * @return the fragments, longest first
+     */
+    public List<String> getLiterals() {
+        return literals;
+    }
+
+    /**
+     * Checks whether a name matches.
+     *
+     * @param name the name
+     * @return true if the name matches
+     */
+    public boolean matches(String name) {
+        return couldMatch(name.toLowerCase(Locale.ROOT)) && run(name);
+    }
+
+    /**
+     * Creates a filter over the rows of a catalog. Rows are first checked for the literal
+     * fragments in their lower case name, and only then run through the pattern.
+     *
+     * @param catalog the catalog the row ids refer to
+     * @return a predicate over row ids, safe to call from several threads
+     */
+    public IntPredicate rows(GameCatalog catalog) {
+        String[] names = catalog.lowerNames();
+        return row -> couldMatch(names[row]) && run(catalog.game(row).getName());
+    }
+
+    /**
+     * Checks whether a lower case name contains every literal fragment.
+     *
+     * @param lowerName the lower case name
+     * @return false if the name cannot match
+     */
+    private boolean couldMatch(String lowerName) {
+        for (String literal : literals) {
+            if (!lowerName.contains(literal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs the pattern over a name.
+     *
+     * @param name the name
+     * @return true if the name matches
+     */
+    private boolean run(String name) {
+        return whole ? pattern.matcher(name).matches() : pattern.matcher(name).find();
+    }
+
+    @Override
+    public String toString() {
+        return pattern.pattern();
+    }
+}
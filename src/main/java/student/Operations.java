@@ -40,7 +40,13 @@ public enum Operations {
     EQUALS("=="), NOT_EQUALS("!="), GREATER_THAN(">"), LESS_THAN("<"), GREATER_THAN_EQUALS(
             ">="),
     /** Operations to use. */
-    LESS_THAN_EQUALS("<="), CONTAINS("~=");
+    LESS_THAN_EQUALS("<="), CONTAINS("~="),
+    /** Range overlap, such as players:4 or time:30-60. Only for the players and time ranges. */
+    OVERLAPS(":"),
+    /** Regex search, such as name~/^(7|seven) wonders/. Only for names, ignoring case. */
+    MATCHES("~/"),
+    /** Glob match of the whole value, such as name=*dungeon*. Only for names, ignoring case. */
+    GLOB("=");
 
     /** The operator. */
     private final String operator;
@@ -85,7 +91,9 @@ public enum Operations {
      * @return The operator.
      */
     public static Operations getOperatorFromStr(String str) {
-        if (str.contains(">=")) {
+        if (str.contains("~/")) {
+            return Operations.MATCHES; // first, as the pattern may hold other operators
+        } else if (str.contains(">=")) {
             return Operations.GREATER_THAN_EQUALS;
         } else if (str.contains("<=")) {
             return Operations.LESS_THAN_EQUALS;
@@ -99,6 +107,10 @@ public enum Operations {
             return Operations.NOT_EQUALS;
         } else if (str.contains("~=")) {
             return Operations.CONTAINS;
+        } else if (str.contains("=")) {
+            return Operations.GLOB;
+        } else if (str.contains(":")) {
+            return Operations.OVERLAPS;
         } else {
             return null;
         }
@@ -0,0 +1,122 @@
+package student;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Settings for running filters and sorts in parallel.
+ *
+ * Work on fewer rows than the threshold always runs on the calling thread. Larger work is split
+ * into fixed size chunks of rows and run on a fork join pool with the configured parallelism.
+ * Results never depend on these settings, only the time it takes to compute them.
+ *
+ * Instances are immutable and can be shared between planners. Settings with the same parallelism
+ * share one pool, so creating settings never starts threads of its own; idle workers of the pool
+ * stop by themselves.
+ */
+public final class ParallelConfig {
+    /** Default number of rows from which work runs in parallel. */
+    public static final int DEFAULT_THRESHOLD = 1 << 16;
+    /** Default number of rows per chunk, a multiple of 64 so chunks never share a bitset word. */
+    public static final int DEFAULT_CHUNK_ROWS = 1 << 14;
+
+    /** Settings that never run in parallel. */
+    public static final ParallelConfig SEQUENTIAL =
+            new ParallelConfig(Integer.MAX_VALUE, 1, DEFAULT_CHUNK_ROWS);
+
+    /** Pools for parallel work, by parallelism. */
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    /** Holder for the default settings, so the pool is only created when first used. */
+    private static final class Defaults {
+        /** Default settings, using every available processor. */
+        private static final ParallelConfig INSTANCE = new ParallelConfig(DEFAULT_THRESHOLD,
+                Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_ROWS);
+    }
+
+    /** Number of rows from which work runs in parallel. */
+    private final int threshold;
+    /** Number of threads used for parallel work. */
+    private final int parallelism;
+    /** Number of rows per chunk. */
+    private final int chunkRows;
+    /** Shared pool for parallel work, null when the parallelism is 1. */
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates parallel settings.
+     *
+     * @param threshold the number of rows from which work runs in parallel
+     * @param parallelism the number of threads to use, 1 to always run sequentially
+     * @param chunkRows the number of rows per chunk, a positive multiple of 64
+     */
+    public ParallelConfig(int threshold, int parallelism, int chunkRows) {
+        if (threshold < 0 || parallelism < 1 || chunkRows <= 0 || chunkRows % Long.SIZE != 0) {
+            throw new IllegalArgumentException("Invalid parallel settings");
+        }
+        this.threshold = threshold;
+        this.parallelism = parallelism;
+        this.chunkRows = chunkRows;
+        this.pool = parallelism > 1 ? POOLS.computeIfAbsent(parallelism, ForkJoinPool::new) : null;
+    }
+
+    /**
+     * Gets the default settings: the default threshold and chunk size, using every available
+     * processor.
+     *
+     * @return the default settings
+     */
+    public static ParallelConfig defaults() {
+        return Defaults.INSTANCE;
+    }
+
+    /**
+     * Checks whether work on a number of rows should run in parallel.
+     *
+     * @param rows the number of rows the work touches
+     * @return true to run in parallel
+     */
+    public boolean isParallel(int rows) {
+        return pool != null && rows >= threshold;
+    }
+
+    /**
+     * Gets the number of rows from which work runs in parallel.
+     *
+     * @return the threshold
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Gets the number of threads used for parallel work.
+     *
+     * @return the parallelism
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Gets the number of rows per chunk.
+     *
+     * @return rows per chunk
+     */
+    public int getChunkRows() {
+        return chunkRows;
+    }
+
+    /**
+     * Runs a task on the pool and waits for it.
+     *
+     * @param task the task to run
+     * @param <T> the result type
+     * @return the result of the task
+     */
+    <T> T invoke(ForkJoinTask<T> task) {
+        return pool == null ? task.invoke() : pool.invoke(task);
+    }
+}
@@ -1,27 +1,59 @@
 package student;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
 import java.util.stream.Stream;
 
 /**
  * Implementation of the IPlanner interface.
  * This class is responsible for filtering and sorting board games
  * based on different criteria.
+ *
+ * A planner is a lightweight session over a shared, immutable {@link GameCatalog}. Any number of
+ * planners can be created over the same catalog, each keeping only its own filter steps and
+ * result cache. The filter steps are held as an immutable chain that is swapped atomically, so a
+ * planner can be used from several threads at once and reads never take a lock.
+ *
+ * Sessions read their catalog from a {@link VersionedCatalog}. Each query pins the current
+ * version, and a session that finds a newer version than the one its steps were filtered on
+ * replays its filter history on the new catalog first. Cached results are keyed by version.
  */
 public class Planner implements IPlanner {
-    /** Original set of games (unmodified). */
-    private final Set<BoardGame> allGames;
+    /** The versions of the catalog. */
+    private final VersionedCatalog versions;
 
-    /** Current filtered set of games. */
-    private List<BoardGame> currentFilteredGames;
+    /** The catalog and filter steps of the session, replaced as a whole on every change. */
+    private final AtomicReference<State> state;
+
+    /** Cache of previously computed filter and sort results. */
+    private final ResultCache cache;
+
+    /** When and how to filter and sort in parallel. */
+    private volatile ParallelConfig parallel = ParallelConfig.defaults();
+
+    /** Random source for samples. */
+    private final Random random = new Random();
 
     /** Delimiter for multiple filters. */
     private static final String FILTER_SEPARATOR = ",";
 
+    /** Default sort, by name in ascending order. */
+    private static final SortSpec DEFAULT_SORT = SortSpec.of(GameData.NAME, true);
+
 
     /**
      * Constructor for the Planner.
@@ -29,8 +61,60 @@ public class Planner implements IPlanner {
      * @param games The complete set of board games to filter
      */
     public Planner(Set<BoardGame> games) {
-        this.allGames = games;
-        this.currentFilteredGames = new ArrayList<>(games);
+        this(new GameCatalog(games));
+    }
+
+    /**
+     * Constructor for the Planner with a custom result cache.
+     *
+     * @param games The complete set of board games to filter
+     * @param cache The cache used for filter and sort results
+     */
+    public Planner(Set<BoardGame> games, ResultCache cache) {
+        this(new GameCatalog(games), cache);
+    }
+
+    /**
+     * Constructor for a Planner session over a shared catalog.
+     *
+     * @param catalog The catalog of games, shared with other sessions
+     */
+    public Planner(GameCatalog catalog) {
+        this(catalog, new ResultCache());
+    }
+
+    /**
+     * Constructor for a Planner session over a shared catalog with a custom result cache.
+     *
+     * @param catalog The catalog of games, shared with other sessions
+     * @param cache The cache used for filter and sort results
+     */
+    public Planner(GameCatalog catalog, ResultCache cache) {
+        this(new VersionedCatalog(catalog), cache);
+    }
+
+    /**
+     * Constructor for a Planner session over a versioned catalog. Publishing a new version
+     * updates every session over it.
+     *
+     * @param versions The versions of the catalog, shared with other sessions
+     */
+    public Planner(VersionedCatalog versions) {
+        this(versions, new ResultCache());
+    }
+
+    /**
+     * Constructor for a Planner session over a versioned catalog with a custom result cache.
+     *
+     * @param versions The versions of the catalog, shared with other sessions
+     * @param cache The cache used for filter and sort results
+     */
+    public Planner(VersionedCatalog versions, ResultCache cache) {
+        this.versions = versions;
+        this.cache = cache;
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            this.state = new AtomicReference<>(new State(pinned.getCatalog(), pinned.getVersion()));
+        }
     }
 
     @Override
@@ -47,211 +131,770 @@ public class Planner implements IPlanner {
 
     @Override
     public Stream<BoardGame> filter(String filter, GameData sortOn, boolean ascending) {
-        // Reset to current filtered games if starting a new filter chain
-        if (filter == null || filter.trim().isEmpty()) {
-            return sortGames(currentFilteredGames.stream(), sortOn, ascending);
+        return filter(filter, SortSpec.of(sortOn, ascending));
+    }
+
+    @Override
+    public Stream<BoardGame> filter(String filter, SortSpec sortOn) {
+        return view(filter, sortOn).stream();
+    }
+
+    @Override
+    public ResultView view(String filter) {
+        return view(filter, DEFAULT_SORT);
+    }
+
+    @Override
+    public ResultView view(String filter, SortSpec sortOn) {
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            while (true) {
+                State current = current(pinned);
+                PendingResult result = apply(current, filter, sortOn);
+                // Another thread changed the session in the meantime: apply the filter to its
+                // state instead
+                if (result.next == current || state.compareAndSet(current, result.next)) {
+                    return new ResultView(current.catalog, result::sorted);
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<ResultView> batch(List<QuerySpec> queries) {
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            State current = current(pinned);
+            ResultView[] views = new ResultView[queries.size()];
+            String[] keys = new String[queries.size()];
+            String[] filters = new String[queries.size()];
+
+            // Number the distinct new clauses of the queries that are not cached, and note which
+            // clauses each distinct filter needs
+            Map<String, Integer> clauseIds = new HashMap<>();
+            List<IntPredicate> predicates = new ArrayList<>();
+            Map<String, List<Integer>> filterClauses = new LinkedHashMap<>();
+            for (int i = 0; i < queries.size(); i++) {
+                QuerySpec query = queries.get(i);
+                SortedSet<String> chain = new TreeSet<>(current.step.getChain());
+                List<FilterHandler.FilterComponents> clauses =
+                        parseClauses(query.getFilter(), chain);
+                keys[i] = ResultCache.key(current.version, chain, query.getSortOn());
+                filters[i] = String.join(FILTER_SEPARATOR, chain);
+                ResultCache.Entry entry = cache.get(keys[i]);
+                if (entry != null) {
+                    int[] sorted = entry.getSorted();
+                    views[i] = new ResultView(current.catalog, () -> sorted);
+                } else if (!filterClauses.containsKey(filters[i])) {
+                    List<Integer> ids = new ArrayList<>();
+                    for (FilterHandler.FilterComponents clause : clauses) {
+                        ids.add(clauseIds.computeIfAbsent(clause.normalized(), normalized -> {
+                            predicates.add(FilterHandler.createRowFilter(current.catalog, clause));
+                            return predicates.size() - 1;
+                        }));
+                    }
+                    filterClauses.put(filters[i], ids);
+                }
+            }
+
+            // One scan tests every distinct clause, then each filter combines its clauses
+            BitSet base = current.step.getRows();
+            BitSet[] clauseRows = predicates.isEmpty() ? new BitSet[0]
+                    : RowScanner.filterAll(base, predicates.toArray(new IntPredicate[0]), parallel);
+            Map<String, BitSet> filtered = new HashMap<>();
+            filterClauses.forEach((filter, ids) -> {
+                BitSet rows = base;
+                if (!ids.isEmpty()) {
+                    rows = (BitSet) clauseRows[ids.get(0)].clone();
+                    for (int i = 1; i < ids.size(); i++) {
+                        rows.and(clauseRows[ids.get(i)]);
+                    }
+                }
+                filtered.put(filter, rows);
+            });
+
+            // Sort each distinct filter and sort once
+            Map<String, int[]> sortedByKey = new HashMap<>();
+            for (int i = 0; i < queries.size(); i++) {
+                if (views[i] != null) {
+                    continue;
+                }
+                BitSet rows = filtered.get(filters[i]);
+                SortSpec sortOn = queries.get(i).getSortOn();
+                int[] sorted = sortedByKey.computeIfAbsent(keys[i], key -> cache.put(key, rows,
+                        RowSorter.sort(current.catalog, rows, sortOn, parallel)).getSorted());
+                views[i] = new ResultView(current.catalog, () -> sorted);
+            }
+            return List.of(views);
+        }
+    }
+
+    @Override
+    public Subscription subscribe(String filter, SortSpec sortOn,
+            Consumer<ResultDelta> listener) {
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            SortedSet<String> chain = new TreeSet<>(current(pinned).step.getChain());
+            parseClauses(filter, chain);
+            return Subscription.register(versions, chain, sortOn, listener);
         }
+    }
 
-        // Split the filter string by commas
-        String[] filterParts = filter.trim().split(FILTER_SEPARATOR);
-        Stream<BoardGame> result = currentFilteredGames.stream();
+    @Override
+    public long count(String filter) {
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            State current = current(pinned);
+            List<FilterHandler.FilterComponents> clauses =
+                    parseClauses(filter, new TreeSet<>(current.step.getChain()));
+            if (clauses.isEmpty()) {
+                return current.step.getCount();
+            }
+            return RowScanner.count(current.step.getRows(), compile(current.catalog, clauses));
+        }
+    }
 
-        // Apply each filter part sequentially
-        for (String part : filterParts) {
-            result = applyFilter(result, part.trim());
+    @Override
+    public boolean exists(String filter) {
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            State current = current(pinned);
+            List<FilterHandler.FilterComponents> clauses =
+                    parseClauses(filter, new TreeSet<>(current.step.getChain()));
+            if (clauses.isEmpty()) {
+                return !current.step.getRows().isEmpty();
+            }
+            return RowScanner.first(current.step.getRows(),
+                    compile(current.catalog, clauses)) >= 0;
         }
+    }
+
+    @Override
+    public ColumnStats aggregate(String filter, GameData column) {
+        return aggregate(filter, List.of(column), ColumnStats.DEFAULT_BINS).get(column);
+    }
+
+    @Override
+    public Map<GameData, ColumnStats> aggregate(String filter, Collection<GameData> columns,
+            int bins) {
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            State current = current(pinned);
+            List<FilterHandler.FilterComponents> clauses =
+                    parseClauses(filter, new TreeSet<>(current.step.getChain()));
+            if (clauses.isEmpty() && current.step.getChain().isEmpty()
+                    && bins == ColumnStats.DEFAULT_BINS) {
+                // nothing filtered, so the statistics computed at load apply
+                Map<GameData, ColumnStats> stats = new LinkedHashMap<>();
+                for (GameData column : columns) {
+                    stats.put(column, current.catalog.stats(column));
+                }
+                return stats;
+            }
+            return ColumnStats.compute(current.catalog, current.step.getRows(),
+                    clauses.isEmpty() ? null : compile(current.catalog, clauses), columns, bins);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> facets(Facet facet) {
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            return facetsOf(current(pinned)).get(facet);
+        }
+    }
+
+    @Override
+    public List<BoardGame> similar(String name, int k) {
+        return similar(name, k, null);
+    }
+
+    @Override
+    public List<BoardGame> similar(String name, int k, Map<GameData, Double> weights) {
+        double[] weighting = SimilarityIndex.weights(weights);
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            State current = current(pinned);
+            int target = current.catalog.rowOfName(name);
+            if (target < 0) {
+                throw new IllegalArgumentException("No game named " + name);
+            }
+            BitSet rows = current.step.getRows();
+            List<BoardGame> similar = new ArrayList<>();
+            for (int row : current.catalog.similarity().nearest(target, k, weighting, rows::get)) {
+                similar.add(current.catalog.game(row));
+            }
+            return similar;
+        }
+    }
+
+    @Override
+    public GameNight planNight(String filter, int players, int minutes,
+            GameNightPlanner.Objective objective) {
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            State current = current(pinned);
+            List<FilterHandler.FilterComponents> clauses =
+                    parseClauses(filter, new TreeSet<>(current.step.getChain()));
+            BitSet rows = clauses.isEmpty() ? current.step.getRows()
+                    : filterRows(current.catalog, current.step.getRows(), clauses, parallel);
+            List<BoardGame> candidates = new ArrayList<>(rows.cardinality());
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                candidates.add(current.catalog.game(row));
+            }
+            return GameNightPlanner.plan(candidates, players, minutes, objective,
+                    GameNightPlanner.DEFAULT_TIME_LIMIT_MILLIS);
+        }
+    }
+
+    @Override
+    public GameNight planNight(Collection<String> names, int players, int minutes,
+            GameNightPlanner.Objective objective) {
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            GameCatalog catalog = pinned.getCatalog();
+            List<BoardGame> candidates = new ArrayList<>();
+            for (String name : names) {
+                int row = catalog.rowOfName(name);
+                if (row >= 0) {
+                    candidates.add(catalog.game(row));
+                }
+            }
+            return GameNightPlanner.plan(candidates, players, minutes, objective,
+                    GameNightPlanner.DEFAULT_TIME_LIMIT_MILLIS);
+        }
+    }
+
+    @Override
+    public List<BoardGame> top(String filter, ScoreSpec score, int k) {
+        TopK best = new TopK(k);
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            State current = current(pinned);
+            List<FilterHandler.FilterComponents> clauses =
+                    parseClauses(filter, new TreeSet<>(current.step.getChain()));
+            BitSet rows = clauses.isEmpty() ? current.step.getRows()
+                    : filterRows(current.catalog, current.step.getRows(), clauses, parallel);
+            double[] scores = score.score(current.catalog);
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                best.offer(row, scores[row]);
+            }
+            List<BoardGame> top = new ArrayList<>();
+            for (int row : best.result()) {
+                top.add(current.catalog.game(row));
+            }
+            return top;
+        }
+    }
+
+    @Override
+    public List<BoardGame> sample(String filter, int n) {
+        return sample(filter, n, random.nextLong());
+    }
 
-        // Update the current filtered games
-        currentFilteredGames = result.collect(Collectors.toList());
+    @Override
+    public List<BoardGame> sample(String filter, int n, long seed) {
+        return sample(filter, n, null, seed);
+    }
+
+    @Override
+    public List<BoardGame> sample(String filter, int n, GameData weightOn, long seed) {
+        ReservoirSampler sampler = new ReservoirSampler(n, seed);
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            State current = current(pinned);
+            List<FilterHandler.FilterComponents> clauses =
+                    parseClauses(filter, new TreeSet<>(current.step.getChain()));
+            IntPredicate matches = clauses.isEmpty() ? row -> true
+                    : compile(current.catalog, clauses);
+            IntToDoubleFunction weights = weightOn == null ? null
+                    : current.catalog.numeric(weightOn);
+
+            // One pass over the rows, keeping only the n picks so far
+            BitSet rows = current.step.getRows();
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                if (matches.test(row)) {
+                    sampler.offer(row, weights == null ? 1.0 : weights.applyAsDouble(row));
+                }
+            }
 
-        // Sort and return the filtered games
-        return sortGames(currentFilteredGames.stream(), sortOn, ascending);
+            List<BoardGame> sample = new ArrayList<>(sampler.size());
+            for (int row : sampler.result()) {
+                sample.add(current.catalog.game(row));
+            }
+            return sample;
+        }
     }
 
     @Override
     public void reset() {
-        // Reset to the original set of games
-        currentFilteredGames = new ArrayList<>(allGames);
+        // Reset to the original set of games. Cached results stay valid, as they are keyed by
+        // the full filter chain rather than by the previous state.
+        state.updateAndGet(current -> new State(current.catalog, current.version));
+    }
+
+    @Override
+    public void undo() {
+        state.updateAndGet(current -> current.previous != null ? current.previous : current);
+    }
+
+    @Override
+    public void revertTo(int step) {
+        state.updateAndGet(current -> {
+            if (step < 0 || step > current.depth) {
+                throw new IllegalArgumentException("No filter step " + step);
+            }
+            return step == current.depth ? current : current.ancestors[step];
+        });
+    }
+
+    @Override
+    public int currentStep() {
+        return state.get().depth;
+    }
+
+    @Override
+    public List<String> filterHistory() {
+        return history(state.get());
     }
 
     /**
-     * Applies a single filter to the stream of board games.
+     * Publishes a new catalog of games and resets the filters of this session. Other sessions
+     * over the same versioned catalog replay their filters on the new games on their next query,
+     * while queries already running finish on the old games.
      *
-     * @param games The stream of board games to filter
-     * @param filterExpression The filter expression to apply
-     * @return A filtered stream of board games
+     * @param games The new complete set of board games, ordered by the collation of the old ones
      */
-    private Stream<BoardGame> applyFilter(Stream<BoardGame> games, String filterExpression) {
-        // Get the operator from the filter expression
-        Operations operator = Operations.getOperatorFromStr(filterExpression);
-        if (operator == null) {
-            return games; // No valid operator found
+    public void reload(Set<BoardGame> games) {
+        versions.publish(new GameCatalog(games, state.get().catalog.collation()));
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            state.set(new State(pinned.getCatalog(), pinned.getVersion()));
         }
+        cache.invalidateAll();
+    }
 
-        // Split the filter expression by the operator
-        String[] parts = filterExpression.split(operator.getOperator());
-        if (parts.length != 2) {
-            return games; // Invalid filter format
+    /**
+     * Gets the current catalog this session filters.
+     *
+     * @return the current catalog
+     */
+    public GameCatalog getCatalog() {
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            return current(pinned).catalog;
         }
+    }
 
-        try {
-            // Get the column to filter on
-            GameData column = GameData.fromString(parts[0].trim());
-            String value = parts[1].trim();
+    /**
+     * Gets the versions of the catalog, so further sessions can share them.
+     *
+     * @return the versioned catalog
+     */
+    public VersionedCatalog getVersions() {
+        return versions;
+    }
+
+    /**
+     * Estimates the bytes held by this session: the computed rows and sorted views of its filter
+     * steps, and its result cache. Rows shared by a step and the cache are counted twice, so the
+     * estimate errs on the high side.
+     *
+     * @return the estimated size in bytes
+     */
+    public long estimateBytes() {
+        long bytes = cache.getBytes();
+        for (State s = state.get(); s != null; s = s.previous) {
+            bytes += s.step.estimateBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the rows of the current filter step, if they have been computed.
+     *
+     * @return the rows, which must not be modified, or null if they are not computed yet
+     */
+    BitSet currentRows() {
+        FilterStep step = state.get().step;
+        return step.isComputed() ? step.getRows() : null;
+    }
 
-            // Apply the filter based on the column type
-            return games.filter(game -> matchesFilter(game, column, operator, value));
-        } catch (IllegalArgumentException e) {
-            // Invalid column name or value
-            return games;
+    /**
+     * Gets the catalog version the current filter steps were filtered on.
+     *
+     * @return the version number
+     */
+    long stateVersion() {
+        return state.get().version;
+    }
+
+    /**
+     * Rebuilds the filter steps of this session from their history. Each step is applied again
+     * lazily, and the rows of the last step can be given so they are not filtered again.
+     *
+     * @param history the clauses added by each step, as from {@link #filterHistory()}
+     * @param version the catalog version the rows were filtered on
+     * @param rows the rows of the last step, or null to filter them
+     */
+    void restore(List<String> history, long version, BitSet rows) {
+        reset();
+        history.forEach(this::view);
+        State current = state.get();
+        if (rows != null && current.version == version && current.previous != null
+                && current.depth == history.size()) {
+            state.compareAndSet(current, current.previous.push(new FilterStep(
+                    current.step.getChain(), current.step.getAdded(), rows)));
         }
     }
 
     /**
-     * Determines if a board game matches a filter condition.
+     * Gets the result cache, mostly to read its hit, miss and eviction counters.
+     *
+     * @return the result cache
+     */
+    public ResultCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Sets when and how large filters and sorts run in parallel. Results are the same for any
+     * setting.
      *
-     * @param game The board game to check
-     * @param column The column to filter on
-     * @param operator The operator to use
-     * @param value The value to compare against
-     * @return True if the game matches the filter, false otherwise
+     * @param parallel The parallel settings, ParallelConfig.SEQUENTIAL to never run in parallel
      */
-    private boolean matchesFilter(BoardGame game, GameData column, Operations operator, String value) {
-        switch (column) {
-            case NAME:
-                return matchesStringFilter(game.getName(), operator, value);
-            case RATING:
-                return matchesNumericFilter(game.getRating(), operator, value);
-            case DIFFICULTY:
-                return matchesNumericFilter(game.getDifficulty(), operator, value);
-            case RANK:
-                return matchesNumericFilter(game.getRank(), operator, value);
-            case MIN_PLAYERS:
-                return matchesNumericFilter(game.getMinPlayers(), operator, value);
-            case MAX_PLAYERS:
-                return matchesNumericFilter(game.getMaxPlayers(), operator, value);
-            case MIN_TIME:
-                return matchesNumericFilter(game.getMinPlayTime(), operator, value);
-            case MAX_TIME:
-                return matchesNumericFilter(game.getMaxPlayTime(), operator, value);
-            case YEAR:
-                return matchesNumericFilter(game.getYearPublished(), operator, value);
-            default:
-                return false;
+    public void setParallelConfig(ParallelConfig parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Gets the state of the session for a pinned version, replaying the filter history on the
+     * pinned catalog if the steps were filtered on an older one.
+     *
+     * @param pinned The pinned version
+     * @return The current state, filtered on the pinned version or a newer one
+     */
+    private State current(VersionedCatalog.Snapshot pinned) {
+        while (true) {
+            State current = state.get();
+            if (current.version >= pinned.getVersion()) {
+                return current;
+            }
+            State replayed = new State(pinned.getCatalog(), pinned.getVersion());
+            for (String added : history(current)) {
+                replayed = apply(replayed, added, DEFAULT_SORT).next;
+            }
+            if (state.compareAndSet(current, replayed)) {
+                // results of older versions can never be hit again
+                cache.invalidateAll();
+                return replayed;
+            }
         }
     }
 
     /**
-     * Checks if a string value matches a filter condition.
+     * Applies a filter to a state. The state is left unchanged, and nothing is filtered until
+     * the result is read.
      *
-     * @param actual The actual string value
-     * @param operator The operator to use
-     * @param expected The expected string value
-     * @return True if the actual value matches the condition, false otherwise
+     * @param current The state to filter from
+     * @param filter The filter text
+     * @param sortOn The sort keys of the result
+     * @return The pending result, holding the state after the filter
      */
-    private boolean matchesStringFilter(String actual, Operations operator, String expected) {
-        // Case-insensitive comparison
-        String actualLower = actual.toLowerCase();
-        String expectedLower = expected.toLowerCase();
-
-        return switch (operator) {
-            case EQUALS -> actualLower.equals(expectedLower);
-            case NOT_EQUALS -> !actualLower.equals(expectedLower);
-            case CONTAINS -> actualLower.contains(expectedLower);
-            case GREATER_THAN -> actualLower.compareTo(expectedLower) > 0;
-            case LESS_THAN -> actualLower.compareTo(expectedLower) < 0;
-            case GREATER_THAN_EQUALS -> actualLower.compareTo(expectedLower) >= 0;
-            case LESS_THAN_EQUALS -> actualLower.compareTo(expectedLower) <= 0;
-        };
+    private PendingResult apply(State current, String filter, SortSpec sortOn) {
+        // Clauses are ANDed, so the chain is kept as a sorted set: order and repeats don't matter
+        SortedSet<String> chain = new TreeSet<>(current.step.getChain());
+        List<FilterHandler.FilterComponents> newClauses = parseClauses(filter, chain);
+        PendingResult result = new PendingResult(current.catalog, current.step, newClauses,
+                sortOn, ResultCache.key(current.version, chain, sortOn));
+
+        // Push a step for the new clauses, dropping any steps that were undone. Its rows are
+        // only computed once they are needed, by the result or by a later filter.
+        result.next = current;
+        if (!newClauses.isEmpty()) {
+            List<String> added = new ArrayList<>();
+            newClauses.forEach(clause -> added.add(clause.normalized()));
+            result.next = current.push(new FilterStep(chain,
+                    String.join(FILTER_SEPARATOR, added), result::rows));
+        }
+        return result;
     }
 
     /**
-     * Checks if a numeric value matches a filter condition.
+     * Gets the clauses each step of a state added, the first step first.
      *
-     * @param actual The actual numeric value
-     * @param operator The operator to use
-     * @param expected The expected numeric value as a string
-     * @return True if the actual value matches the condition, false otherwise
+     * @param current The state
+     * @return The clauses added by each step
      */
-    private boolean matchesNumericFilter(double actual, Operations operator, String expected) {
-        try {
-            double expectedValue = Double.parseDouble(expected);
+    private static List<String> history(State current) {
+        String[] history = new String[current.depth];
+        for (State s = current; s.previous != null; s = s.previous) {
+            history[s.depth - 1] = s.step.getAdded();
+        }
+        return List.of(history);
+    }
 
-            return switch (operator) {
-                case EQUALS -> actual == expectedValue;
-                case NOT_EQUALS -> actual != expectedValue;
-                case GREATER_THAN -> actual > expectedValue;
-                case LESS_THAN -> actual < expectedValue;
-                case GREATER_THAN_EQUALS -> actual >= expectedValue;
-                case LESS_THAN_EQUALS -> actual <= expectedValue;
-                default -> false;
-            };
-        } catch (NumberFormatException e) {
-            return false; // Invalid numeric value
+    /**
+     * Gets the facet counts of the current step of a state, computing them on first use. When
+     * the previous step was counted already, only the rows the current step removed are taken
+     * off its counts.
+     *
+     * @param current The state
+     * @return The facet counts of its current step
+     */
+    private static FacetCounts facetsOf(State current) {
+        FacetCounts facets = current.step.getFacets();
+        if (facets != null) {
+            return facets;
         }
+        BitSet rows = current.step.getRows();
+        FacetCounts parent = current.previous == null ? null : current.previous.step.getFacets();
+        if (parent != null) {
+            BitSet removed = (BitSet) current.previous.step.getRows().clone();
+            removed.andNot(rows);
+            // counting the survivors afresh is cheaper when most rows were removed
+            facets = removed.cardinality() <= rows.cardinality() ? parent.without(removed)
+                    : FacetCounts.count(current.catalog, rows);
+        } else {
+            facets = FacetCounts.count(current.catalog, rows);
+        }
+        current.step.setFacets(facets);
+        return facets;
     }
 
     /**
-     * Checks if an integer value matches a filter condition.
+     * Parses the clauses of a filter that are not yet part of a chain, adding them to it.
+     * Clauses are split as {@link FilterHandler#splitClauses(String)} does, so the added clauses
+     * joined by commas, as steps keep them, parse back to the same clauses.
      *
-     * @param actual The actual integer value
-     * @param operator The operator to use
-     * @param expected The expected integer value as a string
-     * @return True if the actual value matches the condition, false otherwise
+     * @param filter The filter text, clauses separated by commas
+     * @param chain The normalized clauses applied so far, updated with the new ones
+     * @return The new clauses, invalid and repeated clauses left out
      */
-    private boolean matchesNumericFilter(int actual, Operations operator, String expected) {
-        try {
-            int expectedValue = Integer.parseInt(expected);
+    private static List<FilterHandler.FilterComponents> parseClauses(String filter,
+            SortedSet<String> chain) {
+        List<FilterHandler.FilterComponents> clauses = new ArrayList<>();
+        if (filter != null && !filter.trim().isEmpty()) {
+            for (String part : FilterHandler.splitClauses(filter.trim())) {
+                FilterHandler.FilterComponents clause =
+                        FilterHandler.parseFilterExpression(part.trim());
+                // invalid clauses are ignored, clauses already applied are no-ops
+                if (clause != null && chain.add(clause.normalized())) {
+                    clauses.add(clause);
+                }
+            }
+        }
+        return clauses;
+    }
 
-            return switch (operator) {
-                case EQUALS -> actual == expectedValue;
-                case NOT_EQUALS -> actual != expectedValue;
-                case GREATER_THAN -> actual > expectedValue;
-                case LESS_THAN -> actual < expectedValue;
-                case GREATER_THAN_EQUALS -> actual >= expectedValue;
-                case LESS_THAN_EQUALS -> actual <= expectedValue;
-                default -> false;
-            };
-        } catch (NumberFormatException e) {
-            return false; // Invalid integer value
+    /**
+     * Combines filter clauses into a single predicate over row ids.
+     *
+     * @param catalog The catalog the row ids belong to
+     * @param clauses The clauses, all of which must match, at least one
+     * @return A predicate that is safe to call from several threads
+     */
+    private static IntPredicate compile(GameCatalog catalog,
+            List<FilterHandler.FilterComponents> clauses) {
+        IntPredicate matches = FilterHandler.createRowFilter(catalog, clauses.get(0));
+        for (int i = 1; i < clauses.size(); i++) {
+            matches = matches.and(FilterHandler.createRowFilter(catalog, clauses.get(i)));
         }
+        return matches;
     }
 
     /**
-     * Sorts a stream of board games based on a column and direction.
+     * Filters rows by clauses. Clauses answered by an index of the catalog are intersected with
+     * the rows as bitsets, and only the other clauses are tested row by row.
      *
-     * @param games The stream of board games to sort
-     * @param sortOn The column to sort on
-     * @param ascending Whether to sort in ascending order
-     * @return A sorted stream of board games
+     * @param catalog The catalog the row ids belong to
+     * @param rows The rows to filter, not modified
+     * @param clauses The clauses, all of which must match, at least one
+     * @param parallel How to split the scan
+     * @return The surviving rows
      */
-    private Stream<BoardGame> sortGames(Stream<BoardGame> games, GameData sortOn, boolean ascending) {
-        Comparator<BoardGame> comparator = createComparator(sortOn, ascending);
-        return games.sorted(comparator);
+    private static BitSet filterRows(GameCatalog catalog, BitSet rows,
+            List<FilterHandler.FilterComponents> clauses, ParallelConfig parallel) {
+        BitSet filtered = null;
+        List<FilterHandler.FilterComponents> scanned = new ArrayList<>();
+        for (FilterHandler.FilterComponents clause : clauses) {
+            BitSet indexed = FilterHandler.indexedRows(catalog, clause);
+            if (indexed == null) {
+                scanned.add(clause);
+            } else {
+                if (filtered == null) {
+                    filtered = (BitSet) rows.clone();
+                }
+                filtered.and(indexed);
+            }
+        }
+        if (filtered == null) {
+            return RowScanner.filter(rows, compile(catalog, clauses), parallel);
+        }
+        return scanned.isEmpty() ? filtered
+                : RowScanner.filter(filtered, compile(catalog, scanned), parallel);
     }
 
     /**
-     * Creates a comparator for sorting board games.
+     * The result of a filter call, computed the first time it is needed.
      *
-     * @param sortOn The column to sort on
-     * @param ascending Whether to sort in ascending order
-     * @return A comparator for board games
+     * The rows are computed first, without sorting, so that counting a filtered step never sorts
+     * it. They are sorted once the view of the call is read. If the step filtered from still
+     * has its rows in sorted order, the new clauses drop rows from that order instead of
+     * filtering the bitset, and the survivors only need sorting if the sort keys changed.
+     *
+     * The result keeps the catalog it was created for, so a view read after a reload still
+     * returns the games it was filtered from.
+     */
+    private final class PendingResult {
+        /** The catalog the rows belong to. */
+        private final GameCatalog snapshot;
+        /** The step to filter from. */
+        private final FilterStep parent;
+        /** The new clauses, all of which must match. */
+        private final List<FilterHandler.FilterComponents> clauses;
+        /** The sort keys of the result. */
+        private final SortSpec sortOn;
+        /** The cache key of the result. */
+        private final String key;
+        /** The state after the filter, whose step records the sorted view. */
+        private State next;
+        /** Rows that survive the clauses, null until computed. */
+        private BitSet rows;
+        /** The surviving rows in a known order, or null. */
+        private int[] ordered;
+        /** The sort keys of the known order, or null. */
+        private SortSpec orderedBy;
+        /** The surviving rows sorted on the sort keys, null until computed. */
+        private int[] sorted;
+        /** Whether the result came from the cache. */
+        private boolean cached;
+
+        /**
+         * Constructor for a pending result.
+         *
+         * @param snapshot the catalog the rows belong to
+         * @param parent the step to filter from
+         * @param clauses the new clauses
+         * @param sortOn the sort keys
+         * @param key the cache key
+         */
+        private PendingResult(GameCatalog snapshot, FilterStep parent,
+                List<FilterHandler.FilterComponents> clauses, SortSpec sortOn, String key) {
+            this.snapshot = snapshot;
+            this.parent = parent;
+            this.clauses = clauses;
+            this.sortOn = sortOn;
+            this.key = key;
+        }
+
+        /**
+         * Gets the rows that survive the clauses, filtering them if needed.
+         *
+         * @return the surviving rows, must not be modified
+         */
+        private synchronized BitSet rows() {
+            if (rows != null) {
+                return rows;
+            }
+            ResultCache.Entry entry = cache.get(key);
+            if (entry != null) {
+                cached = true;
+                rows = entry.getFiltered();
+                ordered = entry.getSorted();
+                orderedBy = sortOn;
+                return rows;
+            }
+
+            FilterStep.SortedView view = parent.getView();
+            if (clauses.isEmpty()) {
+                rows = parent.getRows();
+            } else if (view == null) {
+                rows = filterRows(snapshot, parent.getRows(), clauses, parallel);
+            } else {
+                ordered = RowScanner.compact(view.getSorted(), compile(snapshot, clauses),
+                        parallel);
+                rows = new BitSet(snapshot.size());
+                for (int row : ordered) {
+                    rows.set(row);
+                }
+            }
+            if (view != null) {
+                ordered = ordered == null ? view.getSorted() : ordered;
+                orderedBy = view.getSortOn();
+            }
+            return rows;
+        }
+
+        /**
+         * Gets the surviving rows in sorted order, sorting and caching them if needed.
+         *
+         * @return the sorted row ids, must not be modified
+         */
+        private synchronized int[] sorted() {
+            if (sorted != null) {
+                return sorted;
+            }
+            rows();
+            sorted = sortOn.equals(orderedBy) ? ordered
+                    : RowSorter.sort(snapshot, rows, sortOn, parallel);
+            if (!cached) {
+                cache.put(key, rows, sorted);
+            }
+            next.step.setView(sortOn, sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * Immutable state of a session: the catalog and the current filter step, linked to the
+     * steps before it. Undoing a step returns the previous state, so no step is ever copied.
+     * Each state also keeps the states before it in an array indexed by depth, so reverting to
+     * any step is a single lookup. Pushing a step copies that array, one reference per step,
+     * which is small next to filtering the rows of the new step.
      */
-    private Comparator<BoardGame> createComparator(GameData sortOn, boolean ascending) {
-        Comparator<BoardGame> comparator = switch (sortOn) {
-            case NAME -> Comparator.comparing(game -> game.getName().toLowerCase());
-            case RATING -> Comparator.comparing(BoardGame::getRating);
-            case DIFFICULTY -> Comparator.comparing(BoardGame::getDifficulty);
-            case RANK -> Comparator.comparing(BoardGame::getRank);
-            case MIN_PLAYERS -> Comparator.comparing(BoardGame::getMinPlayers);
-            case MAX_PLAYERS -> Comparator.comparing(BoardGame::getMaxPlayers);
-            case MIN_TIME -> Comparator.comparing(BoardGame::getMinPlayTime);
-            case MAX_TIME -> Comparator.comparing(BoardGame::getMaxPlayTime);
-            case YEAR -> Comparator.comparing(BoardGame::getYearPublished);
-            default -> Comparator.comparing(game -> game.getName().toLowerCase());
-        };
-
-        return ascending ? comparator : comparator.reversed();
+    private static final class State {
+        /** The catalog the steps filter. */
+        private final GameCatalog catalog;
+        /** The version number of the catalog. */
+        private final long version;
+        /** The current filter step. */
+        private final FilterStep step;
+        /** Number of steps before the current one. */
+        private final int depth;
+        /** The state before the current step, null for the unfiltered step. */
+        private final State previous;
+        /** The states before this one, by depth, never modified. */
+        private final State[] ancestors;
+
+        /**
+         * Constructor for the unfiltered state of a catalog.
+         *
+         * @param catalog the catalog
+         * @param version the version number of the catalog
+         */
+        private State(GameCatalog catalog, long version) {
+            this(catalog, version, FilterStep.unfiltered(catalog), 0, null);
+        }
+
+        /**
+         * Constructor for a state.
+         *
+         * @param catalog the catalog
+         * @param version the version number of the catalog
+         * @param step the current step
+         * @param depth the number of steps before it
+         * @param previous the previous state
+         */
+        private State(GameCatalog catalog, long version, FilterStep step, int depth,
+                State previous) {
+            this.catalog = catalog;
+            this.version = version;
+            this.step = step;
+            this.depth = depth;
+            this.previous = previous;
+            if (previous == null) {
+                this.ancestors = new State[0];
+            } else {
+                this.ancestors = Arrays.copyOf(previous.ancestors, depth);
+                ancestors[depth - 1] = previous;
+            }
+        }
+
+        /**
+         * Creates the state with a step added on top of this one.
+         *
+         * @param next the new step
+         * @return the new state
+         */
+        private State push(FilterStep next) {
+            return new State(catalog, version, next, depth + 1, this);
+        }
     }
 }
-
@@ -0,0 +1,56 @@
+package student;
+
+/**
+ * A filter and the sort keys of its results, one query of a batch.
+ *
+ * Instances are immutable.
+ */
+public final class QuerySpec {
+    /** The filter text, clauses separated by commas. */
+    private final String filter;
+    /** The sort keys of the results. */
+    private final SortSpec sortOn;
+
+    /**
+     * Creates a query sorted by name in ascending order.
+     *
+     * @param filter the filter text
+     */
+    public QuerySpec(String filter) {
+        this(filter, SortSpec.of(GameData.NAME, true));
+    }
+
+    /**
+     * Creates a query.
+     *
+     * @param filter the filter text
+     * @param sortOn the sort keys of the results
+     */
+    public QuerySpec(String filter, SortSpec sortOn) {
+        this.filter = filter;
+        this.sortOn = sortOn;
+    }
+
+    /**
+     * Gets the filter text.
+     *
+     * @return the filter, clauses separated by commas
+     */
+    public String getFilter() {
+        return filter;
+    }
+
+    /**
+     * Gets the sort keys of the results.
+     *
+     * @return the sort keys
+     */
+    public SortSpec getSortOn() {
+        return sortOn;
+    }
+
+    @Override
+    public String toString() {
+        return filter + " sort " + sortOn;
+    }
+}
@@ -0,0 +1,153 @@
+package student;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Picks a random sample of rows from a stream of rows of unknown length, in one pass and O(n)
+ * memory.
+ *
+ * Sampling uses algorithm A-Res (Efraimidis and Spirakis): every row offered gets the key
+ * u^(1/w), for a uniform random u and the weight w of the row, and the n rows with the largest
+ * keys are kept in a min heap. With equal weights every row is equally likely to be picked. With
+ * weights, the chance of a row being picked first is proportional to its weight. Rows with a
+ * weight of zero or less are never picked.
+ *
+ * A sampler with a given seed always picks the same rows from the same offers.
+ */
+public final class ReservoirSampler {
+    /** Number of rows to keep. */
+    private final int capacity;
+    /** Source of the random keys. */
+    private final Random random;
+    /** Keys of the kept rows, as a min heap. */
+    private final double[] keys;
+    /** Kept rows, in the same heap order as their keys. */
+    private final int[] rows;
+    /** Number of rows kept so far. */
+    private int size;
+
+    /**
+     * Creates a sampler.
+     *
+     * @param capacity the number of rows to keep
+     * @param seed the seed of the random keys
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public ReservoirSampler(int capacity, long seed) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Sample size must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        this.random = new Random(seed);
+        this.keys = new double[capacity];
+        this.rows = new int[capacity];
+    }
+
+    /**
+     * Offers a row with a weight of 1.
+     *
+     * @param row the row id
+     */
+    public void offer(int row) {
+        offer(row, 1.0);
+    }
+
+    /**
+     * Offers a weighted row.
+     *
+     * @param row the row id
+     * @param weight the weight of the row, rows weighing zero or less are skipped
+     */
+    public void offer(int row, double weight) {
+        if (capacity == 0 || !(weight > 0)) {
+            return;
+        }
+        double key = weight == 1.0 ? random.nextDouble()
+                : Math.pow(random.nextDouble(), 1.0 / weight);
+        if (size < capacity) {
+            keys[size] = key;
+            rows[size] = row;
+            siftUp(size++);
+        } else if (key > keys[0]) {
+            keys[0] = key;
+            rows[0] = row;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Gets the number of rows kept so far.
+     *
+     * @return the number of rows, at most the capacity
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the rows kept so far, in ascending row order.
+     *
+     * @return a new array of row ids
+     */
+    public int[] result() {
+        int[] picked = Arrays.copyOf(rows, size);
+        Arrays.sort(picked);
+        return picked;
+    }
+
+    /**
+     * Moves a heap entry up until its parent has a smaller key.
+     *
+     * @param i the index of the entry
+     */
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= keys[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     * Moves a heap entry down until its children have larger keys.
+     *
+     * @param i the index of the entry
+     */
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && keys[left] < keys[smallest]) {
+                smallest = left;
+            }
+            if (right < size && keys[right] < keys[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    /**
+     * Swaps two heap entries.
+     *
+     * @param a the index of one entry
+     * @param b the index of the other entry
+     */
+    private void swap(int a, int b) {
+        double key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        int row = rows[a];
+        rows[a] = rows[b];
+        rows[b] = row;
+    }
+}
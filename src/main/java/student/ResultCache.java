@@ -0,0 +1,239 @@
+package student;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache of planner results.
+ *
+ * Entries are keyed by the catalog version, the normalized filter chain and the sort keys (columns
+ * and directions). The cache is bounded both by number of entries and by an estimated byte budget,
+ * and whichever limit is hit first evicts the least recently used entries.
+ *
+ * The cache is safe to use from several threads. Each planner session normally has its own cache,
+ * so threads working on different sessions never wait for each other.
+ */
+public class ResultCache {
+    /** Default maximum number of cached results. */
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+    /** Default estimated byte budget for all cached results. */
+    public static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+
+    /** Estimated fixed cost of an entry (map node, arrays, key object). */
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    /** Maximum number of entries. */
+    private final int maxEntries;
+    /** Maximum estimated bytes. */
+    private final long maxBytes;
+    /** Access ordered map, eldest entry first. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Estimated bytes currently held. */
+    private long bytes;
+    /** Number of lookups that found an entry. */
+    private long hits;
+    /** Number of lookups that did not find an entry. */
+    private long misses;
+    /** Number of entries removed to stay within the limits. */
+    private long evictions;
+
+    /**
+     * Creates a cache with the default limits.
+     */
+    public ResultCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates a cache with the given limits.
+     *
+     * @param maxEntries the maximum number of cached results, 0 disables caching
+     * @param maxBytes the estimated byte budget for all cached results
+     */
+    public ResultCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("Cache limits must not be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Builds the cache key for a filter chain and sort on a catalog version. The key also holds
+     * the generation of the computed column definitions, as clauses name those columns only.
+     *
+     * @param version the catalog version the result is filtered from
+     * @param chain the normalized filter clauses, in a canonical order
+     * @param sortOn the sort keys of the result
+     * @return the cache key
+     */
+    public static String key(long version, Collection<String> chain, SortSpec sortOn) {
+        return version + "." + ComputedColumn.generation() + "|" + String.join(",", chain) + "|"
+                + sortOn;
+    }
+
+    /**
+     * Looks up a cached result, marking it as most recently used.
+     *
+     * @param key the cache key
+     * @return the cached result, or null if not present
+     */
+    public synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Adds a result to the cache, evicting old entries if the limits are exceeded.
+     *
+     * Results larger than the whole byte budget are not cached.
+     *
+     * @param key the cache key
+     * @param filtered the filtered row ids, must not be modified afterwards
+     * @param sorted the filtered row ids in sorted order, must not be modified afterwards
+     * @return the cached entry
+     */
+    public synchronized Entry put(String key, BitSet filtered, int[] sorted) {
+        Entry entry = new Entry(filtered, sorted, estimateBytes(key, filtered, sorted));
+        if (maxEntries == 0 || entry.bytes > maxBytes) {
+            return entry;
+        }
+        Entry old = entries.put(key, entry);
+        if (old != null) {
+            bytes -= old.bytes;
+        }
+        bytes += entry.bytes;
+        evict();
+        return entry;
+    }
+
+    /**
+     * Removes every entry. Used when the catalog the results were computed from changes.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Gets the number of cached results.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the estimated bytes held by the cache.
+     *
+     * @return estimated bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets the number of lookups that found a cached result.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that did not find a cached result.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of entries evicted because of the size or byte limit.
+     *
+     * @return the eviction count
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Removes least recently used entries until the cache is within its limits.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+            bytes -= it.next().getValue().bytes;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Estimates the memory held by an entry.
+     *
+     * @param key the cache key
+     * @param filtered the filtered row ids
+     * @param sorted the sorted row ids
+     * @return estimated bytes
+     */
+    private static long estimateBytes(String key, BitSet filtered, int[] sorted) {
+        return ENTRY_OVERHEAD_BYTES + 2L * key.length() + filtered.size() / Byte.SIZE
+                + (long) Integer.BYTES * sorted.length;
+    }
+
+    /**
+     * A cached planner result.
+     */
+    public static final class Entry {
+        /** The filtered row ids. */
+        private final BitSet filtered;
+        /** The filtered row ids in sorted order. */
+        private final int[] sorted;
+        /** Estimated bytes of this entry. */
+        private final long bytes;
+
+        /**
+         * Constructor for a cache entry.
+         *
+         * @param filtered the filtered row ids
+         * @param sorted the sorted row ids
+         * @param bytes estimated bytes of the entry
+         */
+        private Entry(BitSet filtered, int[] sorted, long bytes) {
+            this.filtered = filtered;
+            this.sorted = sorted;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Gets the filtered row ids. The bitset must not be modified.
+         *
+         * @return the filtered row ids
+         */
+        public BitSet getFiltered() {
+            return filtered;
+        }
+
+        /**
+         * Gets the filtered row ids in sorted order. The array must not be modified.
+         *
+         * @return the sorted row ids
+         */
+        public int[] getSorted() {
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package student;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How the results of a subscription changed with a new catalog version.
+ *
+ * Games that now match are added, games that no longer match or were removed from the catalog
+ * are removed, and games that still match but whose sort values changed are reordered. Added and
+ * reordered games are given as in the new catalog, removed games as they were before.
+ */
+public final class ResultDelta {
+    /** The catalog version the delta leads to. */
+    private final long version;
+    /** Games that joined the results. */
+    private final List<BoardGame> added;
+    /** Games that left the results. */
+    private final List<BoardGame> removed;
+    /** Games that stayed in the results but may have moved. */
+    private final List<BoardGame> reordered;
+
+    /**
+     * Constructor for a result delta.
+     *
+     * @param version the catalog version the delta leads to
+     * @param added games that joined the results
+     * @param removed games that left the results
+     * @param reordered games that may have moved
+     */
+    ResultDelta(long version, List<BoardGame> added, List<BoardGame> removed,
+            List<BoardGame> reordered) {
+        this.version = version;
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.reordered = Collections.unmodifiableList(reordered);
+    }
+
+    /**
+     * Gets the catalog version the delta leads to.
+     *
+     * @return the version number
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the games that joined the results.
+     *
+     * @return an unmodifiable list of games
+     */
+    public List<BoardGame> getAdded() {
+        return added;
+    }
+
+    /**
+     * Gets the games that left the results.
+     *
+     * @return an unmodifiable list of games
+     */
+    public List<BoardGame> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Gets the games that stayed in the results but whose sort values changed.
+     *
+     * @return an unmodifiable list of games
+     */
+    public List<BoardGame> getReordered() {
+        return reordered;
+    }
+
+    /**
+     * Checks whether the results did not change at all.
+     *
+     * @return true if nothing was added, removed or reordered
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && reordered.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "v" + version + " +" + added.size() + " -" + removed.size() + " ~"
+                + reordered.size();
+    }
+}
@@ -0,0 +1,179 @@
+package student;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Read only, index addressable window over the sorted row ids of a filter result.
+ *
+ * A view shares the sorted row ids of the result instead of copying them, and looks games up in
+ * the catalog only when they are read. Slices share the same ids as well. The ids are sorted the
+ * first time a view is read, so a view that is never read costs nothing.
+ */
+public final class ResultView {
+    /** The catalog the row ids belong to. */
+    private final GameCatalog catalog;
+    /** Supplies the sorted row ids, called until they are known. */
+    private final Supplier<int[]> source;
+    /** First index of the window into the sorted row ids. */
+    private final int from;
+    /** One past the last index of the window, -1 for the end of the row ids. */
+    private final int to;
+    /** The sorted row ids, null until first read. */
+    private volatile int[] sorted;
+
+    /**
+     * Constructor for a view over every row of a result.
+     *
+     * @param catalog the catalog the row ids belong to
+     * @param sorted supplies the sorted row ids, which must not be modified, and must return the
+     *     same array on every call
+     */
+    public ResultView(GameCatalog catalog, Supplier<int[]> sorted) {
+        this(catalog, sorted, 0, -1);
+    }
+
+    /**
+     * Constructor for a window over part of a result.
+     *
+     * @param catalog the catalog the row ids belong to
+     * @param source supplies the sorted row ids
+     * @param from the first index of the window
+     * @param to one past the last index of the window, -1 for the end
+     */
+    private ResultView(GameCatalog catalog, Supplier<int[]> source, int from, int to) {
+        this.catalog = catalog;
+        this.source = source;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Gets the number of games in the view.
+     *
+     * @return the number of games
+     */
+    public int size() {
+        return end() - from;
+    }
+
+    /**
+     * Checks whether the view has no games.
+     *
+     * @return true if the view is empty
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Gets a game of the view.
+     *
+     * @param i the index in the view, from 0
+     * @return the game at that index
+     * @throws IndexOutOfBoundsException if the index is outside the view
+     */
+    public BoardGame get(int i) {
+        return catalog.game(rowId(i));
+    }
+
+    /**
+     * Gets the catalog row id of a game of the view.
+     *
+     * @param i the index in the view, from 0
+     * @return the row id at that index
+     * @throws IndexOutOfBoundsException if the index is outside the view
+     */
+    public int rowId(int i) {
+        Objects.checkIndex(i, size());
+        return rows()[from + i];
+    }
+
+    /**
+     * Gets a window over part of this view, sharing its row ids.
+     *
+     * @param fromIndex the first index of the slice, inclusive
+     * @param toIndex the last index of the slice, exclusive
+     * @return the slice
+     * @throws IndexOutOfBoundsException if the range is outside the view
+     */
+    public ResultView slice(int fromIndex, int toIndex) {
+        Objects.checkFromToIndex(fromIndex, toIndex, size());
+        return new ResultView(catalog, source, from + fromIndex, from + toIndex);
+    }
+
+    /**
+     * Gets the games of the view as an unmodifiable list backed by the view.
+     *
+     * @return a list view of the games
+     */
+    public List<BoardGame> asList() {
+        return new GameListView();
+    }
+
+    /**
+     * Gets the row ids of the view, in order. Nothing is sorted until a terminal operation runs.
+     *
+     * @return a stream of row ids
+     */
+    public IntStream rowIds() {
+        return StreamSupport.intStream(() -> Arrays.spliterator(rows(), from, end()),
+                Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED
+                        | Spliterator.IMMUTABLE, false);
+    }
+
+    /**
+     * Gets the games of the view, in order. Nothing is sorted until a terminal operation runs.
+     *
+     * @return a stream of games
+     */
+    public Stream<BoardGame> stream() {
+        return rowIds().mapToObj(catalog::game);
+    }
+
+    /**
+     * Gets the sorted row ids, asking the source the first time.
+     *
+     * @return the sorted row ids of the whole result
+     */
+    private int[] rows() {
+        int[] rows = sorted;
+        if (rows == null) {
+            rows = source.get();
+            sorted = rows;
+        }
+        return rows;
+    }
+
+    /**
+     * Gets the end of the window.
+     *
+     * @return one past the last index of the window
+     */
+    private int end() {
+        return to < 0 ? rows().length : to;
+    }
+
+    /**
+     * Unmodifiable list of the games of the view.
+     */
+    private final class GameListView extends AbstractList<BoardGame> implements RandomAccess {
+        @Override
+        public BoardGame get(int index) {
+            return ResultView.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return ResultView.this.size();
+        }
+    }
+}
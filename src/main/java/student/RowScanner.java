@@ -0,0 +1,274 @@
+package student;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
+
+/**
+ * Utility class that scans sets or sequences of catalog rows.
+ *
+ * Small scans run on the calling thread. Scans over at least the parallel threshold split the
+ * row range into fixed chunks and test them on the fork join pool of the {@link ParallelConfig}.
+ * Chunks start on multiples of 64 rows, so every chunk writes its own words of the result and
+ * the result is the same as a sequential scan.
+ */
+public final class RowScanner {
+
+    // Private constructor to prevent instantiation
+    private RowScanner() {
+        // Utility class should not be instantiated
+    }
+
+    /**
+     * Keeps the rows that match a predicate.
+     *
+     * @param rows The rows to test, left unchanged
+     * @param matches The predicate, which must be safe to call from several threads
+     * @param config When and how to run in parallel
+     * @return A new bitset of the matching rows
+     */
+    public static BitSet filter(BitSet rows, IntPredicate matches, ParallelConfig config) {
+        return filterAll(rows, new IntPredicate[] {matches}, config)[0];
+    }
+
+    /**
+     * Keeps the rows that match each of several predicates, in a single pass over the rows.
+     * Every row is tested against every predicate while it is at hand, so the rows are only read
+     * once however many predicates there are.
+     *
+     * @param rows The rows to test, left unchanged
+     * @param predicates The predicates, which must be safe to call from several threads
+     * @param config When and how to run in parallel
+     * @return A new bitset of the matching rows for each predicate, in the same order
+     */
+    public static BitSet[] filterAll(BitSet rows, IntPredicate[] predicates,
+            ParallelConfig config) {
+        int end = rows.length();
+        long[][] words = new long[predicates.length][(end + Long.SIZE - 1) / Long.SIZE];
+        if (!config.isParallel(rows.cardinality())) {
+            scanRange(rows, predicates, words, 0, end);
+        } else {
+            int chunks = (end + config.getChunkRows() - 1) / config.getChunkRows();
+            config.invoke(new FilterTask(rows, predicates, words, config.getChunkRows(), 0,
+                    chunks));
+        }
+        BitSet[] filtered = new BitSet[predicates.length];
+        for (int i = 0; i < predicates.length; i++) {
+            filtered[i] = BitSet.valueOf(words[i]);
+        }
+        return filtered;
+    }
+
+    /**
+     * Counts the rows that match a predicate, without allocating.
+     *
+     * @param rows The rows to test, left unchanged
+     * @param matches The predicate
+     * @return The number of matching rows
+     */
+    public static int count(BitSet rows, IntPredicate matches) {
+        int count = 0;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (matches.test(row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds the first row that matches a predicate, stopping at the first match.
+     *
+     * @param rows The rows to test, left unchanged
+     * @param matches The predicate
+     * @return The lowest matching row id, or -1 if no row matches
+     */
+    public static int first(BitSet rows, IntPredicate matches) {
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (matches.test(row)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Keeps the rows of a sequence that match a predicate, in their original order.
+     *
+     * @param rows The row ids to test, left unchanged
+     * @param matches The predicate, which must be safe to call from several threads
+     * @param config When and how to run in parallel
+     * @return A new array of the matching row ids, in the same relative order
+     */
+    public static int[] compact(int[] rows, IntPredicate matches, ParallelConfig config) {
+        if (rows.length == 0 || !config.isParallel(rows.length)) {
+            return compactRange(rows, matches, 0, rows.length);
+        }
+
+        int chunks = (rows.length + config.getChunkRows() - 1) / config.getChunkRows();
+        int[][] parts = new int[chunks][];
+        config.invoke(new CompactTask(rows, matches, parts, config.getChunkRows(), 0, chunks));
+        int total = 0;
+        for (int[] part : parts) {
+            total += part.length;
+        }
+        int[] compacted = new int[total];
+        int next = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, compacted, next, part.length);
+            next += part.length;
+        }
+        return compacted;
+    }
+
+    /**
+     * Tests the rows of a range against every predicate, setting the bits of the matches.
+     *
+     * @param rows The rows to test
+     * @param predicates The predicates
+     * @param words The result words, one array per predicate
+     * @param from The first row of the range
+     * @param to One past the last row of the range
+     */
+    private static void scanRange(BitSet rows, IntPredicate[] predicates, long[][] words,
+            int from, int to) {
+        for (int row = rows.nextSetBit(from); row >= 0 && row < to;
+                row = rows.nextSetBit(row + 1)) {
+            for (int i = 0; i < predicates.length; i++) {
+                if (predicates[i].test(row)) {
+                    words[i][row / Long.SIZE] |= 1L << row;
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps the rows of part of a sequence that match a predicate.
+     *
+     * @param rows The row ids to test
+     * @param matches The predicate
+     * @param from The first index to test
+     * @param to One past the last index to test
+     * @return A new array of the matching row ids, in the same relative order
+     */
+    private static int[] compactRange(int[] rows, IntPredicate matches, int from, int to) {
+        int[] kept = new int[to - from];
+        int next = 0;
+        for (int i = from; i < to; i++) {
+            if (matches.test(rows[i])) {
+                kept[next++] = rows[i];
+            }
+        }
+        return Arrays.copyOf(kept, next);
+    }
+
+    /**
+     * Fork join task that compacts a range of chunks of a row sequence, splitting it in half
+     * until one chunk is left.
+     */
+    private static final class CompactTask extends RecursiveAction {
+        /** Serialization version, tasks are never serialized. */
+        private static final long serialVersionUID = 1L;
+
+        /** The row ids to test. */
+        private final int[] rows;
+        /** The predicate to test rows with. */
+        private final transient IntPredicate matches;
+        /** Compacted rows per chunk. */
+        private final int[][] parts;
+        /** Number of rows per chunk. */
+        private final int chunkRows;
+        /** First chunk of this task. */
+        private final int fromChunk;
+        /** One past the last chunk of this task. */
+        private final int toChunk;
+
+        /**
+         * Constructor for a compact task.
+         *
+         * @param rows the row ids to test
+         * @param matches the predicate
+         * @param parts compacted rows per chunk
+         * @param chunkRows rows per chunk
+         * @param fromChunk first chunk
+         * @param toChunk one past the last chunk
+         */
+        private CompactTask(int[] rows, IntPredicate matches, int[][] parts, int chunkRows,
+                int fromChunk, int toChunk) {
+            this.rows = rows;
+            this.matches = matches;
+            this.parts = parts;
+            this.chunkRows = chunkRows;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new CompactTask(rows, matches, parts, chunkRows, fromChunk, middle),
+                        new CompactTask(rows, matches, parts, chunkRows, middle, toChunk));
+                return;
+            }
+            int from = fromChunk * chunkRows;
+            parts[fromChunk] = compactRange(rows, matches, from,
+                    Math.min(rows.length, from + chunkRows));
+        }
+    }
+
+    /**
+     * Fork join task that filters a range of chunks against several predicates, splitting it in
+     * half until one chunk is left.
+     */
+    private static final class FilterTask extends RecursiveAction {
+        /** Serialization version, tasks are never serialized. */
+        private static final long serialVersionUID = 1L;
+
+        /** The rows to test. */
+        private final transient BitSet rows;
+        /** The predicates to test rows with. */
+        private final transient IntPredicate[] predicates;
+        /** Result words per predicate, each chunk only writes its own. */
+        private final long[][] words;
+        /** Number of rows per chunk. */
+        private final int chunkRows;
+        /** First chunk of this task. */
+        private final int fromChunk;
+        /** One past the last chunk of this task. */
+        private final int toChunk;
+
+        /**
+         * Constructor for a filter task.
+         *
+         * @param rows the rows to test
+         * @param predicates the predicates
+         * @param words the result words per predicate
+         * @param chunkRows rows per chunk
+         * @param fromChunk first chunk
+         * @param toChunk one past the last chunk
+         */
+        private FilterTask(BitSet rows, IntPredicate[] predicates, long[][] words, int chunkRows,
+                int fromChunk, int toChunk) {
+            this.rows = rows;
+            this.predicates = predicates;
+            this.words = words;
+            this.chunkRows = chunkRows;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new FilterTask(rows, predicates, words, chunkRows, fromChunk, middle),
+                        new FilterTask(rows, predicates, words, chunkRows, middle, toChunk));
+                return;
+            }
+            int end = (int) Math.min((long) toChunk * chunkRows, Integer.MAX_VALUE);
+            scanRange(rows, predicates, words, fromChunk * chunkRows, end);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package student;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Utility class that sorts sets of catalog rows.
+ *
+ * Sorting never compares game objects. Every column has precomputed dense ranks in the
+ * {@link GameCatalog}, so a sort key is a small non negative int, and keys are packed together
+ * with the row id into primitive longs. Packed keys are narrow, so large inputs are radix sorted
+ * in a few passes instead of comparison sorted.
+ */
+public final class RowSorter {
+    /** Default size from which packed keys are radix sorted, see RadixSortBenchmark. */
+    public static final int DEFAULT_RADIX_THRESHOLD = 2048;
+
+    /** Bits per radix digit. */
+    private static final int DIGIT_BITS = 11;
+    /** Number of buckets per radix digit. */
+    private static final int RADIX = 1 << DIGIT_BITS;
+    /** Mask for a single radix digit. */
+    private static final int DIGIT_MASK = RADIX - 1;
+
+    /** Size from which packed keys are radix sorted instead of comparison sorted. */
+    private static volatile int radixThreshold = DEFAULT_RADIX_THRESHOLD;
+
+    // Private constructor to prevent instantiation
+    private RowSorter() {
+        // Utility class should not be instantiated
+    }
+
+    /**
+     * Sorts a set of rows.
+     *
+     * Rows with equal keys are always returned in row id order, whichever strategy is used.
+     *
+     * @param catalog The catalog the rows belong to
+     * @param rows The rows to sort
+     * @param sortOn The sort keys
+     * @param config When and how to sort in parallel
+     * @return The row ids in sorted order
+     */
+    public static int[] sort(GameCatalog catalog, BitSet rows, SortSpec sortOn,
+            ParallelConfig config) {
+        List<SortSpec.Key> keys = sortOn.getKeys();
+        int count = rows.cardinality();
+        // large sets on one column are cheaper to walk than to sort
+        if (keys.size() == 1 && (long) count * bitsFor(count) >= catalog.size()) {
+            return walk(catalog, rows, count, keys.get(0));
+        }
+
+        int rowBits = bitsFor(catalog.size());
+        int keyBits = 0;
+        for (SortSpec.Key key : keys) {
+            keyBits += bitsFor(cardinality(catalog, key));
+        }
+        if (keyBits + rowBits < Long.SIZE) {
+            return sortPacked(catalog, rows, count, keys, rowBits, keyBits, config);
+        }
+        return sortByKeys(catalog, rows, keys, config);
+    }
+
+    /**
+     * Gets the size from which packed keys are radix sorted.
+     *
+     * @return the radix sort threshold
+     */
+    public static int getRadixThreshold() {
+        return radixThreshold;
+    }
+
+    /**
+     * Sets the size from which packed keys are radix sorted. Smaller inputs use a comparison sort.
+     *
+     * @param threshold the radix sort threshold
+     */
+    public static void setRadixThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative");
+        }
+        radixThreshold = threshold;
+    }
+
+    /**
+     * Sorts non negative longs in place, with an LSD radix sort when the array is large enough
+     * and a comparison sort otherwise. Arrays over the parallel threshold use
+     * Arrays.parallelSort on the configured pool.
+     *
+     * Packed keys always end with a unique row id or position, so every strategy gives the same
+     * order.
+     *
+     * @param values The values to sort, all below 2 to the power of bits
+     * @param bits The number of low bits that hold the values
+     * @param config When and how to sort in parallel
+     */
+    public static void sortLongs(long[] values, int bits, ParallelConfig config) {
+        if (config.isParallel(values.length)) {
+            config.invoke(ForkJoinTask.adapt(() -> Arrays.parallelSort(values)));
+        } else if (values.length >= radixThreshold) {
+            radixSort(values, bits);
+        } else {
+            Arrays.sort(values);
+        }
+    }
+
+    /**
+     * Sorts non negative longs in place with a least significant digit radix sort.
+     *
+     * Only the given number of low bits are looked at, so narrow keys take few passes. Passes
+     * where every value falls in the same bucket are skipped.
+     *
+     * @param values The values to sort, all below 2 to the power of bits
+     * @param bits The number of low bits that hold the values
+     */
+    public static void radixSort(long[] values, int bits) {
+        if (values.length < 2) {
+            return;
+        }
+        long[] source = values;
+        long[] target = new long[values.length];
+        int[] offsets = new int[RADIX + 1];
+        for (int shift = 0; shift < bits; shift += DIGIT_BITS) {
+            Arrays.fill(offsets, 0);
+            for (long value : source) {
+                offsets[(int) ((value >>> shift) & DIGIT_MASK) + 1]++;
+            }
+            if (offsets[(int) ((source[0] >>> shift) & DIGIT_MASK) + 1] == source.length) {
+                continue; // every value has the same digit
+            }
+            for (int i = 0; i < RADIX; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            for (long value : source) {
+                target[offsets[(int) ((value >>> shift) & DIGIT_MASK)]++] = value;
+            }
+            long[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != values) {
+            System.arraycopy(source, 0, values, 0, values.length);
+        }
+    }
+
+    /**
+     * Sorts a set of rows on a single column by walking its presorted permutation, keeping the
+     * rows in the set. This is linear in the size of the catalog.
+     *
+     * Descending walks go backward over groups of equal values, but forward within a group, so
+     * ties stay in row id order.
+     *
+     * @param catalog The catalog the rows belong to
+     * @param rows The rows to sort
+     * @param count The number of rows in the set
+     * @param key The sort key
+     * @return The row ids in sorted order
+     */
+    private static int[] walk(GameCatalog catalog, BitSet rows, int count, SortSpec.Key key) {
+        boolean ascending = key.isAscending();
+        int[] order = key.getComputed() != null ? catalog.ascending(key.getComputed())
+                : key.getExtra() != null ? catalog.ascending(key.getExtra())
+                : catalog.ascending(column(key));
+        int[] sorted = new int[count];
+        int next = 0;
+        if (ascending) {
+            for (int row : order) {
+                if (rows.get(row)) {
+                    sorted[next++] = row;
+                }
+            }
+            return sorted;
+        }
+        int[] rank = ranks(catalog, key);
+        int end = order.length;
+        while (end > 0) {
+            int start = end - 1;
+            while (start > 0 && rank[order[start - 1]] == rank[order[end - 1]]) {
+                start--;
+            }
+            for (int i = start; i < end; i++) {
+                if (rows.get(order[i])) {
+                    sorted[next++] = order[i];
+                }
+            }
+            end = start;
+        }
+        return sorted;
+    }
+
+    /**
+     * Sorts rows on one or more keys packed into a single long per row.
+     *
+     * The ranks of every key, flipped for descending keys, are concatenated most significant
+     * first, followed by the row id, so one primitive sort orders by all keys at once. Only
+     * used when the keys and row id fit in 63 bits.
+     *
+     * @param catalog The catalog the rows belong to
+     * @param rows The rows to sort
+     * @param count The number of rows in the set
+     * @param keys The sort keys, most significant first
+     * @param rowBits The number of bits needed for a row id
+     * @param keyBits The number of bits needed for all the keys
+     * @param config When and how to sort in parallel
+     * @return The row ids in sorted order
+     */
+    private static int[] sortPacked(GameCatalog catalog, BitSet rows, int count,
+            List<SortSpec.Key> keys, int rowBits, int keyBits, ParallelConfig config) {
+        int[][] ranks = new int[keys.size()][];
+        int[] bits = new int[keys.size()];
+        int[] flip = new int[keys.size()];
+        for (int k = 0; k < keys.size(); k++) {
+            ranks[k] = ranks(catalog, keys.get(k));
+            bits[k] = bitsFor(cardinality(catalog, keys.get(k)));
+            // flipping every bit of the rank reverses its order for descending keys
+            flip[k] = keys.get(k).isAscending() ? 0 : (1 << bits[k]) - 1;
+        }
+
+        long[] packed = new long[count];
+        int next = 0;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            long key = 0;
+            for (int k = 0; k < ranks.length; k++) {
+                key = (key << bits[k]) | (ranks[k][row] ^ flip[k]);
+            }
+            packed[next++] = (key << rowBits) | row;
+        }
+        sortLongs(packed, keyBits + rowBits, config);
+
+        long rowMask = (1L << rowBits) - 1;
+        int[] sorted = new int[packed.length];
+        for (int i = 0; i < packed.length; i++) {
+            sorted[i] = (int) (packed[i] & rowMask);
+        }
+        return sorted;
+    }
+
+    /**
+     * Sorts rows on several keys, one key at a time from least to most significant.
+     *
+     * Each pass packs (rank, position in the previous pass) into longs, so it is stable and the
+     * earlier passes break the ties of the later ones. Used when the keys are too wide to pack
+     * into one long.
+     *
+     * @param catalog The catalog the rows belong to
+     * @param rows The rows to sort
+     * @param keys The sort keys, most significant first
+     * @param config When and how to sort in parallel
+     * @return The row ids in sorted order
+     */
+    private static int[] sortByKeys(GameCatalog catalog, BitSet rows, List<SortSpec.Key> keys,
+            ParallelConfig config) {
+        int[] sorted = rows.stream().toArray();
+        long[] packed = new long[sorted.length];
+        int[] next = new int[sorted.length];
+        int positionBits = bitsFor(sorted.length);
+        long positionMask = (1L << positionBits) - 1;
+        for (int k = keys.size() - 1; k >= 0; k--) {
+            int[] rank = ranks(catalog, keys.get(k));
+            int highest = cardinality(catalog, keys.get(k)) - 1;
+            boolean ascending = keys.get(k).isAscending();
+            for (int i = 0; i < sorted.length; i++) {
+                int key = ascending ? rank[sorted[i]] : highest - rank[sorted[i]];
+                packed[i] = ((long) key << positionBits) | i;
+            }
+            sortLongs(packed, bitsFor(highest + 1) + positionBits, config);
+            for (int i = 0; i < packed.length; i++) {
+                next[i] = sorted[(int) (packed[i] & positionMask)];
+            }
+            int[] swap = sorted;
+            sorted = next;
+            next = swap;
+        }
+        return sorted;
+    }
+
+    /**
+     * Gets the column a key sorts on. The id column is not sortable, so it sorts by name.
+     *
+     * @param key The sort key
+     * @return The column to use
+     */
+    private static GameData column(SortSpec.Key key) {
+        return key.getColumn() == GameData.ID ? GameData.NAME : key.getColumn();
+    }
+
+    /**
+     * Gets the dense ranks of the column a key sorts on.
+     *
+     * @param catalog The catalog the rows belong to
+     * @param key The sort key
+     * @return The ranks by row id
+     */
+    private static int[] ranks(GameCatalog catalog, SortSpec.Key key) {
+        return key.getComputed() != null ? catalog.ranks(key.getComputed())
+                : key.getExtra() != null ? catalog.ranks(key.getExtra())
+                : catalog.ranks(column(key));
+    }
+
+    /**
+     * Gets the number of distinct values of the column a key sorts on.
+     *
+     * @param catalog The catalog the rows belong to
+     * @param key The sort key
+     * @return The number of distinct values
+     */
+    private static int cardinality(GameCatalog catalog, SortSpec.Key key) {
+        return key.getComputed() != null ? catalog.cardinality(key.getComputed())
+                : key.getExtra() != null ? catalog.cardinality(key.getExtra())
+                : catalog.cardinality(column(key));
+    }
+
+    /**
+     * Gets the number of bits needed to store values from 0 to count - 1.
+     *
+     * @param count The number of distinct values
+     * @return The number of bits, at least 1
+     */
+    static int bitsFor(int count) {
+        return count <= 1 ? 1 : Integer.SIZE - Integer.numberOfLeadingZeros(count - 1);
+    }
+}
@@ -0,0 +1,331 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * A blended score over numeric columns: a weighted sum of normalized column values, such as
+ * {@code 0.6*rating - 0.3*difficulty + 0.1*year}.
+ *
+ * Each term normalizes its column over the whole catalog before weighting, so columns with
+ * different units can be mixed. Normalized columns are cached by the catalog, so repeated scores
+ * only pay for the weighted sum.
+ *
+ * Instances are immutable.
+ */
+public final class ScoreSpec {
+    /** The terms, in the order given. */
+    private final List<Term> terms;
+
+    /**
+     * How a column is scaled before it is weighted.
+     */
+    public enum Normalization {
+        /** The values as they are. */
+        RAW,
+        /** Scaled to 0 for the smallest value and 1 for the largest. */
+        MIN_MAX,
+        /** Shifted by the mean and divided by the standard deviation. */
+        Z_SCORE,
+        /** The dense rank of the value, scaled to 0 for the smallest and 1 for the largest. */
+        RANK;
+
+        /**
+         * Normalizes a column of a catalog.
+         *
+         * @param catalog the catalog
+         * @param column a numeric column
+         * @return the normalized value of each row
+         */
+        double[] apply(GameCatalog catalog, GameData column) {
+            int n = catalog.size();
+            double[] values = new double[n];
+            if (this == RANK) {
+                int[] ranks = catalog.ranks(column);
+                double top = Math.max(catalog.cardinality(column) - 1, 1);
+                for (int row = 0; row < n; row++) {
+                    values[row] = ranks[row] / top;
+                }
+                return values;
+            }
+            IntToDoubleFunction raw = catalog.numeric(column);
+            ColumnStats stats = catalog.stats(column);
+            double shift = 0;
+            double scale = 1;
+            if (n > 0 && this == MIN_MAX) {
+                shift = stats.getMin();
+                double range = stats.getMax() - stats.getMin();
+                scale = range > 0 ? 1 / range : 0;
+            } else if (n > 0 && this == Z_SCORE) {
+                shift = stats.getMean();
+                double variance = 0;
+                for (int row = 0; row < n; row++) {
+                    double delta = raw.applyAsDouble(row) - shift;
+                    variance += delta * delta;
+                }
+                double deviation = Math.sqrt(variance / n);
+                scale = deviation > 0 ? 1 / deviation : 0;
+            }
+            for (int row = 0; row < n; row++) {
+                values[row] = (raw.applyAsDouble(row) - shift) * scale;
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Constructor for a score spec.
+     *
+     * @param terms the terms
+     */
+    private ScoreSpec(List<Term> terms) {
+        this.terms = Collections.unmodifiableList(terms);
+    }
+
+    /**
+     * Creates a score with a single term.
+     *
+     * @param column the numeric column
+     * @param weight the weight, negative to favour small values
+     * @param normalization how to scale the column
+     * @return the score spec
+     * @throws IllegalArgumentException if the column is not numeric or the weight is not finite
+     */
+    public static ScoreSpec of(GameData column, double weight, Normalization normalization) {
+        return new ScoreSpec(new ArrayList<>()).plus(column, weight, normalization);
+    }
+
+    /**
+     * Creates a score spec with another term added.
+     *
+     * @param column the numeric column
+     * @param weight the weight, negative to favour small values
+     * @param normalization how to scale the column
+     * @return a new score spec
+     * @throws IllegalArgumentException if the column is not numeric or the weight is not finite
+     */
+    public ScoreSpec plus(GameData column, double weight, Normalization normalization) {
+        if (!GameCatalog.isIntColumn(column) && !GameCatalog.isDoubleColumn(column)) {
+            throw new IllegalArgumentException("Not a numeric column: " + column);
+        }
+        if (!Double.isFinite(weight)) {
+            throw new IllegalArgumentException("Invalid weight for " + column + ": " + weight);
+        }
+        List<Term> more = new ArrayList<>(terms);
+        more.add(new Term(column, weight, normalization));
+        return new ScoreSpec(more);
+    }
+
+    /**
+     * Parses a score such as {@code 0.6*rating - 0.3*difficulty + 0.1*year}.
+     *
+     * Terms are separated by + or -, except the sign of an exponent such as 1e-3. Each term is
+     * an optional weight and *, then a column name, optionally wrapped in a normalization:
+     * raw(...), minmax(...), z(...) or rank(...). Columns that are not wrapped are scaled with
+     * min-max.
+     *
+     * @param spec the text to parse
+     * @return the score spec
+     * @throws IllegalArgumentException if the text has no terms or a term is not valid
+     */
+    public static ScoreSpec parse(String spec) {
+        ScoreSpec score = new ScoreSpec(new ArrayList<>());
+        String text = spec.replace(" ", "");
+        int start = 0;
+        while (start < text.length()) {
+            int end = start + 1;
+            while (end < text.length() && !isTermSign(text, end)) {
+                end++;
+            }
+            score = score.parseTerm(text.substring(start, end));
+            start = end;
+        }
+        if (score.terms.isEmpty()) {
+            throw new IllegalArgumentException("Score has no terms: " + spec);
+        }
+        return score;
+    }
+
+    /**
+     * Checks whether a character starts a new term: a + or - that is not the sign of the
+     * exponent of a weight, which follows an e right after a digit.
+     *
+     * @param text the score without spaces
+     * @param at the position of the character
+     * @return true if a new term starts there
+     */
+    private static boolean isTermSign(String text, int at) {
+        char c = text.charAt(at);
+        if (c != '+' && c != '-') {
+            return false;
+        }
+        return at < 2 || Character.toLowerCase(text.charAt(at - 1)) != 'e'
+                || !Character.isDigit(text.charAt(at - 2));
+    }
+
+    /**
+     * Parses one term and adds it.
+     *
+     * @param term the term text, with its sign and without spaces
+     * @return a new score spec
+     */
+    private ScoreSpec parseTerm(String term) {
+        double sign = 1;
+        String rest = term;
+        if (rest.startsWith("+") || rest.startsWith("-")) {
+            sign = rest.startsWith("-") ? -1 : 1;
+            rest = rest.substring(1);
+        }
+        double weight = 1;
+        int times = rest.indexOf('*');
+        try {
+            if (times >= 0) {
+                weight = Double.parseDouble(rest.substring(0, times));
+                rest = rest.substring(times + 1);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid weight in " + term);
+        }
+        Normalization normalization = Normalization.MIN_MAX;
+        int open = rest.indexOf('(');
+        if (open >= 0 && rest.endsWith(")")) {
+            normalization = switch (rest.substring(0, open).toLowerCase(Locale.ROOT)) {
+                case "raw" -> Normalization.RAW;
+                case "minmax" -> Normalization.MIN_MAX;
+                case "z" -> Normalization.Z_SCORE;
+                case "rank" -> Normalization.RANK;
+                default -> throw new IllegalArgumentException("Unknown normalization in " + term);
+            };
+            rest = rest.substring(open + 1, rest.length() - 1);
+        }
+        return plus(GameData.fromString(rest), sign * weight, normalization);
+    }
+
+    /**
+     * Gets the terms.
+     *
+     * @return the terms, in the order given
+     */
+    public List<Term> getTerms() {
+        return terms;
+    }
+
+    /**
+     * Computes the score of every row of a catalog. Each term is one pass over a normalized
+     * column array.
+     *
+     * @param catalog the catalog
+     * @return the score of each row
+     */
+    double[] score(GameCatalog catalog) {
+        double[] scores = new double[catalog.size()];
+        for (Term term : terms) {
+            double[] values = catalog.normalized(term.column, term.normalization);
+            double weight = term.weight;
+            for (int row = 0; row < scores.length; row++) {
+                scores[row] += weight * values[row];
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Gets the spec in the same format {@link #parse(String)} accepts.
+     *
+     * @return the spec as text
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Term term : terms) {
+            if (text.length() > 0 || term.weight < 0) {
+                text.append(term.weight < 0 ? " - " : " + ");
+            }
+            String name = switch (term.normalization) {
+                case RAW -> "raw";
+                case MIN_MAX -> "minmax";
+                case Z_SCORE -> "z";
+                case RANK -> "rank";
+            };
+            text.append(Math.abs(term.weight)).append('*').append(name).append('(')
+                    .append(term.column.name()).append(')');
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * Check if two score specs are equal, meaning they have the same terms in the same order.
+     *
+     * @param obj object to compare
+     * @return true if the specs are equal
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ScoreSpec && toString().equals(obj.toString());
+    }
+
+    /**
+     * Get the hash code of the score spec.
+     *
+     * @return hash code based on the terms
+     */
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    /**
+     * A single weighted term.
+     */
+    public static final class Term {
+        /** The numeric column. */
+        private final GameData column;
+        /** The weight. */
+        private final double weight;
+        /** How the column is scaled. */
+        private final Normalization normalization;
+
+        /**
+         * Constructor for a term.
+         *
+         * @param column the numeric column
+         * @param weight the weight
+         * @param normalization how the column is scaled
+         */
+        private Term(GameData column, double weight, Normalization normalization) {
+            this.column = column;
+            this.weight = weight;
+            this.normalization = normalization;
+        }
+
+        /**
+         * Gets the column.
+         *
+         * @return the column
+         */
+        public GameData getColumn() {
+            return column;
+        }
+
+        /**
+         * Gets the weight.
+         *
+         * @return the weight
+         */
+        public double getWeight() {
+            return weight;
+        }
+
+        /**
+         * Gets how the column is scaled.
+         *
+         * @return the normalization
+         */
+        public Normalization getNormalization() {
+            return normalization;
+        }
+    }
+}
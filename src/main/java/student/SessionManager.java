@@ -0,0 +1,393 @@
+package student;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the planner sessions of many users within a memory budget.
+ *
+ * Sessions are looked up by id and share one versioned catalog. After every lookup, if the
+ * estimated bytes of all resident sessions exceed the budget, the least recently used sessions
+ * are spilled to files in the spill directory until they fit again. A spilled session is written
+ * in a compact form: the clauses added by each filter step, and the rows of the current step as
+ * bitset words.
+ * The next lookup of a spilled session rebuilds it from its file, without filtering the catalog
+ * again unless a new catalog version was published since. Its result cache starts empty.
+ *
+ * Callers should look a session up for every request rather than keep it, as a spilled session is
+ * rebuilt as a new object. Lookups are synchronized, queries on a session are not. Spill files
+ * are written and read outside the lock, so a lookup only waits for the disk when its own
+ * session is being spilled or rebuilt.
+ */
+public class SessionManager {
+    /** Default memory budget for all resident sessions. */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    /** Marks the start of a spill file. */
+    private static final int SPILL_MAGIC = 0x53455353;
+    /** Word count written when the rows of the current step were never computed. */
+    private static final int NO_ROWS = -1;
+
+    /** The versions of the catalog shared by every session. */
+    private final VersionedCatalog versions;
+    /** Memory budget for all resident sessions, in estimated bytes. */
+    private final long maxBytes;
+    /** Directory spilled sessions are written to. */
+    private final Path spillDir;
+    /** Resident sessions by id, least recently used first. */
+    private final LinkedHashMap<String, Planner> resident = new LinkedHashMap<>(16, 0.75f, true);
+    /** Spill files of spilled sessions, by id. */
+    private final Map<String, Path> spilled = new HashMap<>();
+    /** Ids of sessions being written to or read from disk, which lookups wait for. */
+    private final Set<String> moving = new HashSet<>();
+
+    /** Number of sessions spilled to disk. */
+    private long evictions;
+    /** Number of sessions rebuilt from disk. */
+    private long rehydrations;
+    /** Total time spent rebuilding sessions, in nanoseconds. */
+    private long rehydrationNanos;
+    /** Longest time spent rebuilding a session, in nanoseconds. */
+    private long maxRehydrationNanos;
+
+    /**
+     * Creates a session manager over a single catalog.
+     *
+     * @param catalog the catalog shared by every session
+     * @param maxBytes the memory budget for all resident sessions, in estimated bytes
+     * @param spillDir an existing directory to spill sessions to
+     */
+    public SessionManager(GameCatalog catalog, long maxBytes, Path spillDir) {
+        this(new VersionedCatalog(catalog), maxBytes, spillDir);
+    }
+
+    /**
+     * Creates a session manager over a versioned catalog.
+     *
+     * @param versions the versions of the catalog shared by every session
+     * @param maxBytes the memory budget for all resident sessions, in estimated bytes
+     * @param spillDir an existing directory to spill sessions to
+     */
+    public SessionManager(VersionedCatalog versions, long maxBytes, Path spillDir) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Memory budget must not be negative");
+        }
+        if (!Files.isDirectory(spillDir)) {
+            throw new IllegalArgumentException("Not a directory: " + spillDir);
+        }
+        this.versions = versions;
+        this.maxBytes = maxBytes;
+        this.spillDir = spillDir;
+    }
+
+    /**
+     * Gets the session for an id, creating it or rebuilding it from disk if needed. Other idle
+     * sessions may be spilled to keep within the memory budget, but never the one returned.
+     *
+     * @param id the session id
+     * @return the session
+     * @throws UncheckedIOException if a spilled session cannot be read back, in which case it is
+     *         dropped and the next lookup creates a new session
+     */
+    public Planner session(String id) {
+        Planner session;
+        Path file = null;
+        List<Map.Entry<String, Planner>> victims = List.of();
+        synchronized (this) {
+            awaitMove(id);
+            session = resident.get(id);
+            if (session == null) {
+                file = spilled.remove(id);
+            }
+            if (file != null) {
+                moving.add(id);
+            } else {
+                if (session == null) {
+                    session = new Planner(versions);
+                    resident.put(id, session);
+                }
+                victims = evict(id);
+            }
+        }
+
+        if (file != null) {
+            Planner restored = null;
+            long start = System.nanoTime();
+            try {
+                restored = rehydrate(file); // the file is deleted whether or not it could be read
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                synchronized (this) {
+                    moving.remove(id);
+                    if (restored != null) {
+                        resident.put(id, restored);
+                        rehydrations++;
+                        rehydrationNanos += elapsed;
+                        maxRehydrationNanos = Math.max(maxRehydrationNanos, elapsed);
+                        victims = evict(id);
+                    }
+                    notifyAll();
+                }
+            }
+            session = restored;
+        }
+        spillAll(victims);
+        return session;
+    }
+
+    /**
+     * Drops a session, resident or spilled.
+     *
+     * @param id the session id
+     */
+    public void remove(String id) {
+        Path file;
+        synchronized (this) {
+            awaitMove(id);
+            resident.remove(id);
+            file = spilled.remove(id);
+        }
+        if (file != null) {
+            deleteSpillFile(file);
+        }
+    }
+
+    /**
+     * Estimates the bytes held by all resident sessions.
+     *
+     * @return the estimated size in bytes
+     */
+    public synchronized long residentBytes() {
+        long bytes = 0;
+        for (Planner session : resident.values()) {
+            bytes += session.estimateBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the number of sessions held in memory.
+     *
+     * @return the number of resident sessions
+     */
+    public synchronized int getResidentSessions() {
+        return resident.size();
+    }
+
+    /**
+     * Gets the number of sessions spilled to disk.
+     *
+     * @return the number of spilled sessions
+     */
+    public synchronized int getSpilledSessions() {
+        return spilled.size();
+    }
+
+    /**
+     * Gets the number of times a session was spilled to keep within the budget.
+     *
+     * @return the eviction count
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the number of sessions rebuilt from disk.
+     *
+     * @return the rehydration count
+     */
+    public synchronized long getRehydrations() {
+        return rehydrations;
+    }
+
+    /**
+     * Gets the total time spent rebuilding sessions from disk.
+     *
+     * @return the total rehydration time in nanoseconds
+     */
+    public synchronized long getRehydrationNanos() {
+        return rehydrationNanos;
+    }
+
+    /**
+     * Gets the longest time spent rebuilding a single session from disk.
+     *
+     * @return the maximum rehydration time in nanoseconds
+     */
+    public synchronized long getMaxRehydrationNanos() {
+        return maxRehydrationNanos;
+    }
+
+    /**
+     * Waits, with the lock released, until a session is no longer being spilled or rebuilt.
+     *
+     * @param id the session id
+     */
+    private void awaitMove(String id) {
+        boolean interrupted = false;
+        while (moving.contains(id)) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true; // moves are short, so finish waiting and keep the flag
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes the least recently used sessions out of memory until the resident sessions fit in
+     * the budget, marking them as moving until {@link #spillAll(List)} has written them.
+     *
+     * @param keep the id of the session being returned, which is never spilled
+     * @return the sessions to spill, by id
+     */
+    private List<Map.Entry<String, Planner>> evict(String keep) {
+        List<Map.Entry<String, Planner>> victims = new ArrayList<>();
+        long total = residentBytes();
+        Iterator<Map.Entry<String, Planner>> it = resident.entrySet().iterator();
+        while (total > maxBytes && it.hasNext()) {
+            Map.Entry<String, Planner> entry = it.next();
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+            total -= entry.getValue().estimateBytes();
+            victims.add(Map.entry(entry.getKey(), entry.getValue()));
+            moving.add(entry.getKey());
+            it.remove();
+        }
+        return victims;
+    }
+
+    /**
+     * Writes evicted sessions to disk, outside the lock. A session that cannot be written goes
+     * back to memory.
+     *
+     * @param victims the sessions to spill, by id
+     */
+    private void spillAll(List<Map.Entry<String, Planner>> victims) {
+        for (Map.Entry<String, Planner> victim : victims) {
+            Path file = null;
+            try {
+                file = spill(victim.getValue());
+            } catch (IOException e) {
+                System.err.println("Error spilling session: " + e.getMessage());
+            }
+            synchronized (this) {
+                moving.remove(victim.getKey());
+                if (file != null) {
+                    spilled.put(victim.getKey(), file);
+                    evictions++;
+                } else {
+                    resident.put(victim.getKey(), victim.getValue());
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes the filter state of a session to a new spill file.
+     *
+     * @param session the session
+     * @return the spill file
+     * @throws IOException if the file cannot be written
+     */
+    private Path spill(Planner session) throws IOException {
+        long version = session.stateVersion();
+        List<String> history = session.filterHistory();
+        BitSet rows = history.isEmpty() ? null : session.currentRows();
+        Path file = Files.createTempFile(spillDir, "session", ".bin");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(SPILL_MAGIC);
+            out.writeLong(version);
+            out.writeInt(history.size());
+            for (String added : history) {
+                out.writeUTF(added);
+            }
+            long[] words = rows == null ? null : rows.toLongArray();
+            out.writeInt(words == null ? NO_ROWS : words.length);
+            if (words != null) {
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Rebuilds a session from its spill file, and deletes the file, also when it cannot be read.
+     *
+     * @param file the spill file
+     * @return the rebuilt session
+     * @throws UncheckedIOException if the file cannot be read
+     */
+    private Planner rehydrate(Path file) {
+        Planner session = new Planner(versions);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SPILL_MAGIC) {
+                throw new IOException("Not a session file: " + file);
+            }
+            long version = in.readLong();
+            int depth = in.readInt();
+            List<String> history = new ArrayList<>(depth);
+            for (int i = 0; i < depth; i++) {
+                history.add(in.readUTF());
+            }
+            int length = in.readInt();
+            BitSet rows = null;
+            if (length != NO_ROWS) {
+                long[] words = new long[length];
+                for (int i = 0; i < length; i++) {
+                    words[i] = in.readLong();
+                }
+                rows = BitSet.valueOf(words);
+            }
+            // the rows are dropped if they were filtered on an older catalog version
+            session.restore(history, version, rows);
+        } catch (IOException e) {
+            deleteSpillFile(file);
+            throw new UncheckedIOException(e);
+        }
+
+        deleteSpillFile(file);
+        return session;
+    }
+
+    /**
+     * Deletes a spill file, reporting rather than failing if it cannot be deleted.
+     *
+     * @param file the spill file
+     */
+    private static void deleteSpillFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Error removing session file: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package student;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Finds the games most similar to a given game, by weighted Euclidean distance over their
+ * numeric features.
+ *
+ * At build time each feature is normalized to zero mean and unit deviation, so a point of rating
+ * weighs the same as an hour of play time only if the collection spreads them alike. The points
+ * are stored in a KD-tree laid out over one permutation of the rows: each node splits its range
+ * of the permutation at the median of its widest feature. Weights are applied at query time, so
+ * one tree serves every weighting. A brute-force scan with the same tie-breaking is kept to
+ * verify the tree.
+ */
+public final class SimilarityIndex {
+    /** The features compared, in the order of a weight array. */
+    public static final List<GameData> FEATURES = List.of(GameData.RATING, GameData.DIFFICULTY,
+            GameData.MIN_PLAYERS, GameData.MAX_PLAYERS, GameData.MIN_TIME, GameData.MAX_TIME);
+    /** Largest range of the permutation kept as a leaf and scanned. */
+    private static final int LEAF_SIZE = 8;
+
+    /** Number of features. */
+    private final int dims;
+    /** Normalized features, dims values per row. */
+    private final double[] points;
+    /** Rows in tree order. */
+    private final int[] order;
+    /** Split feature of each internal node, by the position of its median in order. */
+    private final byte[] axes;
+
+    /**
+     * Builds the index over every game of a catalog.
+     *
+     * @param catalog the catalog
+     */
+    public SimilarityIndex(GameCatalog catalog) {
+        int n = catalog.size();
+        dims = FEATURES.size();
+        points = new double[n * dims];
+        for (int d = 0; d < dims; d++) {
+            ColumnStats stats = catalog.stats(FEATURES.get(d));
+            IntToDoubleFunction values = catalog.numeric(FEATURES.get(d));
+            double mean = n == 0 ? 0 : stats.getMean();
+            double variance = 0;
+            for (int row = 0; row < n; row++) {
+                double delta = values.applyAsDouble(row) - mean;
+                variance += delta * delta;
+            }
+            double deviation = n == 0 ? 0 : Math.sqrt(variance / n);
+            double scale = deviation > 0 ? 1 / deviation : 1;
+            for (int row = 0; row < n; row++) {
+                points[row * dims + d] = (values.applyAsDouble(row) - mean) * scale;
+            }
+        }
+        order = new int[n];
+        for (int row = 0; row < n; row++) {
+            order[row] = row;
+        }
+        axes = new byte[n];
+        build(0, n);
+    }
+
+    /**
+     * Converts feature weights to a weight array.
+     *
+     * @param weights the weight of each feature, null for equal weights; missing features weigh 0
+     * @return the weights in the order of {@link #FEATURES}
+     * @throws IllegalArgumentException if a column is not a feature or a weight is negative
+     */
+    public static double[] weights(Map<GameData, Double> weights) {
+        double[] array = new double[FEATURES.size()];
+        if (weights == null) {
+            Arrays.fill(array, 1.0);
+            return array;
+        }
+        weights.forEach((column, weight) -> {
+            int d = FEATURES.indexOf(column);
+            if (d < 0) {
+                throw new IllegalArgumentException("Not a similarity feature: " + column);
+            }
+            if (!(weight >= 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Invalid weight for " + column + ": " + weight);
+            }
+            array[d] = weight;
+        });
+        return array;
+    }
+
+    /**
+     * Finds the rows nearest to a row through the tree.
+     *
+     * @param target the row to compare with, never part of the result
+     * @param k the number of rows to find
+     * @param weights the weight of each feature, see {@link #weights(Map)}
+     * @param matches the rows that may be returned
+     * @return up to k rows, nearest first, ties by row id
+     */
+    public int[] nearest(int target, int k, double[] weights, IntPredicate matches) {
+        Neighbours found = new Neighbours(target, k, weights, matches);
+        if (k > 0) {
+            search(0, order.length, found);
+        }
+        return found.sorted();
+    }
+
+    /**
+     * Finds the rows nearest to a row by comparing it with every row. Gives the same result as
+     * {@link #nearest}, and is kept to verify it.
+     *
+     * @param target the row to compare with, never part of the result
+     * @param k the number of rows to find
+     * @param weights the weight of each feature, see {@link #weights(Map)}
+     * @param matches the rows that may be returned
+     * @return up to k rows, nearest first, ties by row id
+     */
+    public int[] nearestByScan(int target, int k, double[] weights, IntPredicate matches) {
+        Neighbours found = new Neighbours(target, k, weights, matches);
+        if (k > 0) {
+            for (int row = 0; row < order.length; row++) {
+                found.consider(row);
+            }
+        }
+        return found.sorted();
+    }
+
+    /**
+     * Builds the subtree over a range of the permutation.
+     *
+     * @param lo the first position, inclusive
+     * @param hi the last position, exclusive
+     */
+    private void build(int lo, int hi) {
+        if (hi - lo <= LEAF_SIZE) {
+            return;
+        }
+        int axis = widestFeature(lo, hi);
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi, mid, axis);
+        axes[mid] = (byte) axis;
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    /**
+     * Finds the feature whose values spread the most over a range of the permutation.
+     *
+     * @param lo the first position, inclusive
+     * @param hi the last position, exclusive
+     * @return the feature index
+     */
+    private int widestFeature(int lo, int hi) {
+        int widest = 0;
+        double widestSpread = -1;
+        for (int d = 0; d < dims; d++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = lo; i < hi; i++) {
+                double value = points[order[i] * dims + d];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (max - min > widestSpread) {
+                widestSpread = max - min;
+                widest = d;
+            }
+        }
+        return widest;
+    }
+
+    /**
+     * Reorders a range of the permutation so the row at a position has the value it would have
+     * if the range were sorted on a feature, with smaller values before it and larger after.
+     *
+     * @param lo the first position, inclusive
+     * @param hi the last position, exclusive
+     * @param nth the position to settle
+     * @param axis the feature
+     */
+    private void select(int lo, int hi, int nth, int axis) {
+        int left = lo;
+        int right = hi - 1;
+        while (left < right) {
+            double pivot = points[order[(left + right) >>> 1] * dims + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (points[order[i] * dims + axis] < pivot) {
+                    i++;
+                }
+                while (points[order[j] * dims + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swap;
+                }
+            }
+            if (nth <= j) {
+                right = j;
+            } else if (nth >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Searches a subtree, visiting the side of each split that holds the target first and the
+     * other side only if it could hold a nearer row.
+     *
+     * @param lo the first position, inclusive
+     * @param hi the last position, exclusive
+     * @param found the nearest rows so far
+     */
+    private void search(int lo, int hi, Neighbours found) {
+        if (hi - lo <= LEAF_SIZE) {
+            for (int i = lo; i < hi; i++) {
+                found.consider(order[i]);
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int axis = axes[mid];
+        found.consider(order[mid]);
+        double delta = points[found.target * dims + axis] - points[order[mid] * dims + axis];
+        double bound = found.weights[axis] * delta * delta;
+        if (delta < 0) {
+            search(lo, mid, found);
+            if (found.reaches(bound)) {
+                search(mid + 1, hi, found);
+            }
+        } else {
+            search(mid + 1, hi, found);
+            if (found.reaches(bound)) {
+                search(lo, mid, found);
+            }
+        }
+    }
+
+    /**
+     * The k nearest rows found so far, as a max heap on distance, then row id.
+     */
+    private final class Neighbours {
+        /** The row compared with. */
+        private final int target;
+        /** Number of rows to find. */
+        private final int k;
+        /** Weight of each feature. */
+        private final double[] weights;
+        /** The rows that may be returned. */
+        private final IntPredicate matches;
+        /** Squared distances of the kept rows, as a max heap. */
+        private final double[] distances;
+        /** Kept rows, in the same heap order. */
+        private final int[] rows;
+        /** Number of rows kept. */
+        private int size;
+
+        /**
+         * Constructor for an empty set of neighbours.
+         *
+         * @param target the row compared with
+         * @param k the number of rows to find
+         * @param weights the weight of each feature
+         * @param matches the rows that may be returned
+         */
+        private Neighbours(int target, int k, double[] weights, IntPredicate matches) {
+            if (k < 0) {
+                throw new IllegalArgumentException("Number of neighbours must not be negative: "
+                        + k);
+            }
+            this.target = target;
+            this.k = k;
+            this.weights = weights;
+            this.matches = matches;
+            this.distances = new double[k];
+            this.rows = new int[k];
+        }
+
+        /**
+         * Checks whether a row at a distance could still be kept.
+         *
+         * @param distance a squared distance
+         * @return true if fewer than k rows are kept or the distance is no larger than the
+         *         farthest kept
+         */
+        private boolean reaches(double distance) {
+            return size < k || distance <= distances[0];
+        }
+
+        /**
+         * Keeps a row if it is among the nearest so far.
+         *
+         * @param row the row
+         */
+        private void consider(int row) {
+            if (row == target || !matches.test(row)) {
+                return;
+            }
+            double distance = 0;
+            for (int d = 0; d < dims; d++) {
+                double delta = points[target * dims + d] - points[row * dims + d];
+                distance += weights[d] * delta * delta;
+            }
+            if (size < k) {
+                distances[size] = distance;
+                rows[size] = row;
+                siftUp(size++);
+            } else if (farther(distances[0], rows[0], distance, row)) {
+                distances[0] = distance;
+                rows[0] = row;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Gets the kept rows, nearest first, ties by row id. The heap is emptied.
+         *
+         * @return a new array of row ids
+         */
+        private int[] sorted() {
+            int[] result = new int[size];
+            // take the farthest off the heap until it is empty
+            while (size > 0) {
+                result[--size] = rows[0];
+                swap(0, size);
+                siftDown(0);
+            }
+            return result;
+        }
+
+        /**
+         * Compares two kept rows by distance, then row id.
+         *
+         * @param distanceA the squared distance of one row
+         * @param rowA that row
+         * @param distanceB the squared distance of another row
+         * @param rowB that row
+         * @return true if the first row ranks after the second
+         */
+        private boolean farther(double distanceA, int rowA, double distanceB, int rowB) {
+            int byDistance = Double.compare(distanceA, distanceB);
+            return byDistance > 0 || byDistance == 0 && rowA > rowB;
+        }
+
+        /**
+         * Moves a heap entry up until its parent ranks after it.
+         *
+         * @param i the index of the entry
+         */
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!farther(distances[i], rows[i], distances[parent], rows[parent])) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        /**
+         * Moves a heap entry down until its children rank before it.
+         *
+         * @param i the index of the entry
+         */
+        private void siftDown(int i) {
+            while (true) {
+                int largest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && farther(distances[left], rows[left], distances[largest],
+                        rows[largest])) {
+                    largest = left;
+                }
+                if (right < size && farther(distances[right], rows[right], distances[largest],
+                        rows[largest])) {
+                    largest = right;
+                }
+                if (largest == i) {
+                    return;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        /**
+         * Swaps two heap entries.
+         *
+         * @param a the index of one entry
+         * @param b the index of the other entry
+         */
+        private void swap(int a, int b) {
+            double distance = distances[a];
+            distances[a] = distances[b];
+            distances[b] = distance;
+            int row = rows[a];
+            rows[a] = rows[b];
+            rows[b] = row;
+        }
+    }
+}
@@ -29,6 +29,37 @@ public final class SortComparator {
         return ascending ? baseComparator : baseComparator.reversed();
     }
 
+    /**
+     * Creates a single comparator for BoardGame objects from a multi-column sort spec.
+     *
+     * Each key compares a primitive value, and later keys only break ties of earlier ones.
+     *
+     * @param sortOn The columns and directions to sort by
+     * @return A comparator that can be used to sort BoardGame objects
+     */
+    public static Comparator<BoardGame> createComparator(SortSpec sortOn) {
+        Comparator<BoardGame> comparator = null;
+        for (SortSpec.Key key : sortOn.getKeys()) {
+            Comparator<BoardGame> next;
+            if (key.getComputed() != null) {
+                Expression expression = key.getComputed().getExpression();
+                next = Comparator.comparingDouble(expression::evaluate);
+                next = key.isAscending() ? next : next.reversed();
+            } else if (key.getExtra() != null) {
+                ExtraColumn extra = key.getExtra();
+                next = extra.getKind() == ExtraColumn.Kind.NUMBER
+                        ? Comparator.comparingDouble(
+                                game -> ExtraColumn.parseNumber(game.getExtra(extra)))
+                        : Comparator.comparing(game -> game.getExtra(extra));
+                next = key.isAscending() ? next : next.reversed();
+            } else {
+                next = createComparator(key.getColumn(), key.isAscending());
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
     /**
      * Gets a comparator for a specific column of BoardGame data.
      *
@@ -37,27 +68,28 @@ public final class SortComparator {
      */
     private static Comparator<BoardGame> getColumnComparator(GameData column) {
         return switch (column) {
-            case NAME -> Comparator.comparing(game -> game.getName().toLowerCase());
-            case RATING -> Comparator.comparing(BoardGame::getRating);
-            case DIFFICULTY -> Comparator.comparing(BoardGame::getDifficulty);
-            case RANK -> Comparator.comparing(BoardGame::getRank);
-            case MIN_PLAYERS -> Comparator.comparing(BoardGame::getMinPlayers);
-            case MAX_PLAYERS -> Comparator.comparing(BoardGame::getMaxPlayers);
-            case MIN_TIME -> Comparator.comparing(BoardGame::getMinPlayTime);
-            case MAX_TIME -> Comparator.comparing(BoardGame::getMaxPlayTime);
-            case YEAR -> Comparator.comparing(BoardGame::getYearPublished);
+            case NAME -> Comparator.comparing(BoardGame::getName, nameComparator());
+            case RATING -> Comparator.comparingDouble(BoardGame::getRating);
+            case DIFFICULTY -> Comparator.comparingDouble(BoardGame::getDifficulty);
+            case RANK -> Comparator.comparingInt(BoardGame::getRank);
+            case MIN_PLAYERS -> Comparator.comparingInt(BoardGame::getMinPlayers);
+            case MAX_PLAYERS -> Comparator.comparingInt(BoardGame::getMaxPlayers);
+            case MIN_TIME -> Comparator.comparingInt(BoardGame::getMinPlayTime);
+            case MAX_TIME -> Comparator.comparingInt(BoardGame::getMaxPlayTime);
+            case YEAR -> Comparator.comparingInt(BoardGame::getYearPublished);
             // For any other column, default to sorting by name
-            default -> Comparator.comparing(game -> game.getName().toLowerCase());
+            default -> Comparator.comparing(BoardGame::getName, nameComparator());
         };
     }
 
     /**
-     * Creates a name-based comparator that ignores case.
+     * Creates a name-based comparator that ignores case, ordering names like the catalog does
+     * with the default {@link NameCollation}.
      *
      * @return A case-insensitive comparator for game names
      */
     public static Comparator<String> nameComparator() {
-        return String.CASE_INSENSITIVE_ORDER;
+        return NameCollation.getDefault().comparator();
     }
 }
 
@@ -0,0 +1,304 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An ordered list of sort keys, each a column and a direction.
+ *
+ * The first key decides the order, and each following key only breaks ties left by the keys
+ * before it. For example, {@code rating desc, difficulty asc, name asc}.
+ *
+ * Instances are immutable.
+ */
+public final class SortSpec {
+    /** Separator between keys. */
+    private static final String KEY_SEPARATOR = ",";
+    /** Suffix for ascending keys. */
+    private static final String ASC = "asc";
+    /** Suffix for descending keys. */
+    private static final String DESC = "desc";
+
+    /** The sort keys, most significant first. */
+    private final List<Key> keys;
+
+    /**
+     * Constructor for a sort spec.
+     *
+     * @param keys the sort keys, most significant first
+     */
+    private SortSpec(List<Key> keys) {
+        this.keys = Collections.unmodifiableList(keys);
+    }
+
+    /**
+     * Creates a sort spec with a single key.
+     *
+     * @param column the column to sort on
+     * @param ascending whether to sort in ascending order
+     * @return the sort spec
+     */
+    public static SortSpec of(GameData column, boolean ascending) {
+        List<Key> keys = new ArrayList<>();
+        keys.add(new Key(column, ascending));
+        return new SortSpec(keys);
+    }
+
+    /**
+     * Creates a sort spec with another key added as the least significant.
+     *
+     * @param column the column to break ties on
+     * @param ascending whether to sort the column in ascending order
+     * @return a new sort spec
+     */
+    public SortSpec then(GameData column, boolean ascending) {
+        List<Key> more = new ArrayList<>(keys);
+        more.add(new Key(column, ascending));
+        return new SortSpec(more);
+    }
+
+    /**
+     * Creates a sort spec with a single key on a computed column.
+     *
+     * @param column the computed column to sort on
+     * @param ascending whether to sort in ascending order
+     * @return the sort spec
+     */
+    public static SortSpec of(ComputedColumn column, boolean ascending) {
+        List<Key> keys = new ArrayList<>();
+        keys.add(new Key(column, ascending));
+        return new SortSpec(keys);
+    }
+
+    /**
+     * Creates a sort spec with a key on a computed column added as the least significant.
+     *
+     * @param column the computed column to break ties on
+     * @param ascending whether to sort the column in ascending order
+     * @return a new sort spec
+     */
+    public SortSpec then(ComputedColumn column, boolean ascending) {
+        List<Key> more = new ArrayList<>(keys);
+        more.add(new Key(column, ascending));
+        return new SortSpec(more);
+    }
+
+    /**
+     * Creates a sort spec with a single key on an extra column.
+     *
+     * @param column the extra column to sort on
+     * @param ascending whether to sort in ascending order
+     * @return the sort spec
+     */
+    public static SortSpec of(ExtraColumn column, boolean ascending) {
+        List<Key> keys = new ArrayList<>();
+        keys.add(new Key(column, ascending));
+        return new SortSpec(keys);
+    }
+
+    /**
+     * Creates a sort spec with a key on an extra column added as the least significant.
+     *
+     * @param column the extra column to break ties on
+     * @param ascending whether to sort the column in ascending order
+     * @return a new sort spec
+     */
+    public SortSpec then(ExtraColumn column, boolean ascending) {
+        List<Key> more = new ArrayList<>(keys);
+        more.add(new Key(column, ascending));
+        return new SortSpec(more);
+    }
+
+    /**
+     * Parses a sort spec such as {@code rating desc, difficulty asc, name}.
+     *
+     * Keys are separated by commas. Each key is a column name, optionally followed by asc or desc,
+     * with or without a space in between. Keys default to ascending. Computed and extra columns
+     * are named like built-in ones.
+     *
+     * @param spec the text to parse
+     * @return the sort spec
+     * @throws IllegalArgumentException if the text is empty or names an unknown column
+     */
+    public static SortSpec parse(String spec) {
+        List<Key> keys = new ArrayList<>();
+        for (String part : spec.split(KEY_SEPARATOR)) {
+            String key = part.trim();
+            String lower = key.toLowerCase();
+            boolean ascending = true;
+            if (lower.endsWith(DESC)) {
+                ascending = false;
+                key = key.substring(0, key.length() - DESC.length());
+            } else if (lower.endsWith(ASC)) {
+                key = key.substring(0, key.length() - ASC.length());
+            }
+            ComputedColumn computed = ComputedColumn.lookup(key);
+            ExtraColumn extra = ExtraColumn.lookup(key);
+            if (computed != null) {
+                keys.add(new Key(computed, ascending));
+            } else if (extra != null) {
+                keys.add(new Key(extra, ascending));
+            } else {
+                keys.add(new Key(GameData.fromString(key.trim()), ascending));
+            }
+        }
+        return new SortSpec(keys);
+    }
+
+    /**
+     * Gets the sort keys.
+     *
+     * @return the sort keys, most significant first
+     */
+    public List<Key> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Gets the most significant column.
+     *
+     * @return the first column sorted on, null if it is a computed or extra column
+     */
+    public GameData getPrimaryColumn() {
+        return keys.get(0).getColumn();
+    }
+
+    /**
+     * Gets the spec in the same format {@link #parse(String)} accepts.
+     *
+     * @return the spec as text
+     */
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        for (Key key : keys) {
+            String column = key.getColumn() != null ? key.getColumn().name()
+                    : key.getComputed() != null ? key.getComputed().getName().toUpperCase()
+                    : key.getExtra().getName().toUpperCase();
+            parts.add(column + " " + (key.isAscending() ? ASC : DESC));
+        }
+        return String.join(KEY_SEPARATOR + " ", parts);
+    }
+
+    /**
+     * Check if two sort specs are equal, meaning they have the same keys in the same order.
+     * Computed columns must be the same definition, not only the same name, as a removed column
+     * can be defined again with another expression.
+     *
+     * @param obj object to compare
+     * @return true if the specs are equal
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof SortSpec) || !toString().equals(obj.toString())) {
+            return false;
+        }
+        List<Key> others = ((SortSpec) obj).keys;
+        for (int i = 0; i < keys.size(); i++) {
+            if (keys.get(i).computed != others.get(i).computed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the hash code of the sort spec.
+     *
+     * @return hash code based on the keys
+     */
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    /**
+     * A single sort key.
+     */
+    public static final class Key {
+        /** The column to sort on, null for a computed or extra column. */
+        private final GameData column;
+        /** The computed column to sort on, null for other columns. */
+        private final ComputedColumn computed;
+        /** The extra column to sort on, null for other columns. */
+        private final ExtraColumn extra;
+        /** Whether to sort in ascending order. */
+        private final boolean ascending;
+
+        /**
+         * Constructor for a sort key.
+         *
+         * @param column the column to sort on
+         * @param ascending whether to sort in ascending order
+         */
+        private Key(GameData column, boolean ascending) {
+            this.column = column;
+            this.computed = null;
+            this.extra = null;
+            this.ascending = ascending;
+        }
+
+        /**
+         * Constructor for a sort key on a computed column.
+         *
+         * @param computed the computed column to sort on
+         * @param ascending whether to sort in ascending order
+         */
+        private Key(ComputedColumn computed, boolean ascending) {
+            this.column = null;
+            this.computed = computed;
+            this.extra = null;
+            this.ascending = ascending;
+        }
+
+        /**
+         * Constructor for a sort key on an extra column.
+         *
+         * @param extra the extra column to sort on
+         * @param ascending whether to sort in ascending order
+         */
+        private Key(ExtraColumn extra, boolean ascending) {
+            this.column = null;
+            this.computed = null;
+            this.extra = extra;
+            this.ascending = ascending;
+        }
+
+        /**
+         * Gets the column to sort on.
+         *
+         * @return the column, null for a computed or extra column
+         */
+        public GameData getColumn() {
+            return column;
+        }
+
+        /**
+         * Gets the computed column to sort on.
+         *
+         * @return the computed column, null for other columns
+         */
+        public ComputedColumn getComputed() {
+            return computed;
+        }
+
+        /**
+         * Gets the extra column to sort on.
+         *
+         * @return the extra column, null for other columns
+         */
+        public ExtraColumn getExtra() {
+            return extra;
+        }
+
+        /**
+         * Gets the sort direction.
+         *
+         * @return true for ascending
+         */
+        public boolean isAscending() {
+            return ascending;
+        }
+    }
+}
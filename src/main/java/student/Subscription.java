@@ -0,0 +1,228 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * A continuous query: a filter whose results are kept up to date as new catalog versions are
+ * published.
+ *
+ * The subscription remembers the games in its results by id. When a version is published it
+ * only tests the games that changed against its filter, and tells its listener which games were
+ * added, removed or reordered. If it ever misses a version, it compares its results with a full
+ * filter of the new catalog instead.
+ */
+public final class Subscription implements AutoCloseable {
+    /** The catalog versions the subscription follows. */
+    private final VersionedCatalog versions;
+    /** The clauses of the filter, all of which must match. */
+    private final List<FilterHandler.FilterComponents> clauses;
+    /** The sort keys of the results. */
+    private final SortSpec sortOn;
+    /** Orders games by the sort keys, to tell whether a game moved. */
+    private final Comparator<BoardGame> order;
+    /** Receives the delta of each version that changed the results. */
+    private final Consumer<ResultDelta> listener;
+    /** The hook registered with the versioned catalog. */
+    private final Consumer<CatalogChange> hook = this::catalogChanged;
+
+    /** The catalog the results are filtered from. */
+    private GameCatalog catalog;
+    /** The version number of that catalog. */
+    private long version;
+    /** The games in the results, by id. */
+    private Map<Integer, BoardGame> members = new HashMap<>();
+
+    /**
+     * Constructor for a subscription, not registered yet.
+     *
+     * @param versions the catalog versions to follow
+     * @param clauses the clauses of the filter
+     * @param sortOn the sort keys of the results
+     * @param listener receives the deltas
+     */
+    private Subscription(VersionedCatalog versions, List<FilterHandler.FilterComponents> clauses,
+            SortSpec sortOn, Consumer<ResultDelta> listener) {
+        this.versions = versions;
+        this.clauses = clauses;
+        this.sortOn = sortOn;
+        this.order = SortComparator.createComparator(sortOn);
+        this.listener = listener;
+    }
+
+    /**
+     * Registers a subscription and computes its first results from the current version.
+     *
+     * @param versions the catalog versions to follow
+     * @param clauses the normalized clauses of the filter
+     * @param sortOn the sort keys of the results
+     * @param listener receives the deltas of later versions
+     * @return the subscription, to close when no longer needed
+     * @throws IllegalArgumentException if a clause no longer parses, such as one on a computed
+     *         column that was removed since it was applied
+     */
+    static Subscription register(VersionedCatalog versions, Collection<String> clauses,
+            SortSpec sortOn, Consumer<ResultDelta> listener) {
+        List<FilterHandler.FilterComponents> parsed = new ArrayList<>();
+        for (String clause : clauses) {
+            FilterHandler.FilterComponents components = FilterHandler.parseFilterExpression(clause);
+            if (components == null) {
+                throw new IllegalArgumentException("Invalid filter clause: " + clause);
+            }
+            parsed.add(components);
+        }
+        Subscription subscription = new Subscription(versions, parsed, sortOn, listener);
+        synchronized (subscription) {
+            // register first, so no version published after the first results is missed
+            versions.addListener(subscription.hook);
+            try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+                subscription.catalog = pinned.getCatalog();
+                subscription.version = pinned.getVersion();
+                subscription.members = subscription.matching(pinned.getCatalog());
+            }
+        }
+        return subscription;
+    }
+
+    /**
+     * Gets the current results, sorted on the sort keys of the subscription.
+     *
+     * @return a view of the current results
+     */
+    public synchronized ResultView getResult() {
+        BitSet rows = new BitSet(catalog.size());
+        for (int id : members.keySet()) {
+            rows.set(catalog.rowOf(id));
+        }
+        int[] sorted = RowSorter.sort(catalog, rows, sortOn, ParallelConfig.SEQUENTIAL);
+        return new ResultView(catalog, () -> sorted);
+    }
+
+    /**
+     * Gets the catalog version the current results are filtered from.
+     *
+     * @return the version number
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Stops following new versions. The listener is not called again.
+     */
+    @Override
+    public void close() {
+        versions.removeListener(hook);
+    }
+
+    /**
+     * Updates the results for a published version and tells the listener how they changed.
+     *
+     * @param change the games that changed
+     */
+    private synchronized void catalogChanged(CatalogChange change) {
+        if (change.getVersion() <= version) {
+            return; // the first results were already filtered from this version
+        }
+        GameCatalog next = change.getCatalog();
+        List<BoardGame> added = new ArrayList<>();
+        List<BoardGame> removed = new ArrayList<>();
+        List<BoardGame> reordered = new ArrayList<>();
+
+        if (change.getPreviousCatalog() == catalog) {
+            for (int id : change.getRemovedIds()) {
+                BoardGame old = members.remove(id);
+                if (old != null) {
+                    removed.add(old);
+                }
+            }
+            IntPredicate matches = compile(next);
+            for (BoardGame game : change.getUpserted()) {
+                BoardGame old = members.get(game.getId());
+                boolean match = matches.test(next.rowOf(game.getId()));
+                track(game, old, match, added, removed, reordered);
+            }
+        } else {
+            // a version was missed, so compare with the full results
+            Map<Integer, BoardGame> matching = matching(next);
+            for (BoardGame old : new ArrayList<>(members.values())) {
+                if (!matching.containsKey(old.getId())) {
+                    members.remove(old.getId());
+                    removed.add(old);
+                }
+            }
+            for (BoardGame game : matching.values()) {
+                track(game, members.get(game.getId()), true, added, removed, reordered);
+            }
+        }
+
+        catalog = next;
+        version = change.getVersion();
+        ResultDelta delta = new ResultDelta(version, added, removed, reordered);
+        if (!delta.isEmpty()) {
+            listener.accept(delta);
+        }
+    }
+
+    /**
+     * Updates the membership of one changed game and records how it changed.
+     *
+     * @param game the game as in the new catalog
+     * @param old the game as in the results, null if it was not in them
+     * @param match whether the game matches the filter now
+     * @param added games that joined the results
+     * @param removed games that left the results
+     * @param reordered games whose sort values changed
+     */
+    private void track(BoardGame game, BoardGame old, boolean match, List<BoardGame> added,
+            List<BoardGame> removed, List<BoardGame> reordered) {
+        if (match) {
+            members.put(game.getId(), game);
+            if (old == null) {
+                added.add(game);
+            } else if (order.compare(old, game) != 0) {
+                reordered.add(game);
+            }
+        } else if (old != null) {
+            members.remove(game.getId());
+            removed.add(old);
+        }
+    }
+
+    /**
+     * Filters a whole catalog.
+     *
+     * @param source the catalog
+     * @return the matching games, by id
+     */
+    private Map<Integer, BoardGame> matching(GameCatalog source) {
+        BitSet rows = RowScanner.filter(source.allRows(), compile(source),
+                ParallelConfig.SEQUENTIAL);
+        Map<Integer, BoardGame> games = new HashMap<>();
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            games.put(source.game(row).getId(), source.game(row));
+        }
+        return games;
+    }
+
+    /**
+     * Combines the clauses into a predicate over the rows of a catalog.
+     *
+     * @param source the catalog
+     * @return the predicate, matching every row if there are no clauses
+     */
+    private IntPredicate compile(GameCatalog source) {
+        IntPredicate matches = row -> true;
+        for (FilterHandler.FilterComponents clause : clauses) {
+            matches = matches.and(FilterHandler.createRowFilter(source, clause));
+        }
+        return matches;
+    }
+}
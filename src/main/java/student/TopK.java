@@ -0,0 +1,136 @@
+package student;
+
+/**
+ * Keeps the k rows with the highest scores from a stream of scored rows, in a bounded min heap.
+ * Offering a row costs O(log k), and memory is O(k) however many rows are offered.
+ *
+ * Equal scores rank the smaller row id first, so the result does not depend on the order the
+ * rows were offered in.
+ */
+final class TopK {
+    /** Number of rows to keep. */
+    private final int k;
+    /** Scores of the kept rows, as a min heap with the lowest ranked at the root. */
+    private final double[] scores;
+    /** Kept rows, in the same heap order as their scores. */
+    private final int[] rows;
+    /** Number of rows kept so far. */
+    private int size;
+
+    /**
+     * Creates an empty selection.
+     *
+     * @param k the number of rows to keep
+     * @throws IllegalArgumentException if k is negative
+     */
+    TopK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Number of results must not be negative: " + k);
+        }
+        this.k = k;
+        this.scores = new double[k];
+        this.rows = new int[k];
+    }
+
+    /**
+     * Offers a scored row, keeping it if it ranks among the best k so far.
+     *
+     * @param row the row id
+     * @param score the score of the row
+     */
+    void offer(int row, double score) {
+        if (size < k) {
+            scores[size] = score;
+            rows[size] = row;
+            siftUp(size++);
+        } else if (k > 0 && below(scores[0], rows[0], score, row)) {
+            scores[0] = score;
+            rows[0] = row;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Gets the kept rows, best first. The selection is emptied.
+     *
+     * @return a new array of row ids
+     */
+    int[] result() {
+        int[] result = new int[size];
+        while (size > 0) {
+            result[--size] = rows[0];
+            swap(0, size);
+            siftDown(0);
+        }
+        return result;
+    }
+
+    /**
+     * Compares two scored rows.
+     *
+     * @param scoreA the score of one row
+     * @param rowA that row
+     * @param scoreB the score of another row
+     * @param rowB that row
+     * @return true if the first row ranks below the second
+     */
+    private static boolean below(double scoreA, int rowA, double scoreB, int rowB) {
+        int byScore = Double.compare(scoreA, scoreB);
+        return byScore < 0 || byScore == 0 && rowA > rowB;
+    }
+
+    /**
+     * Moves a heap entry up until its parent ranks below it.
+     *
+     * @param i the index of the entry
+     */
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!below(scores[i], rows[i], scores[parent], rows[parent])) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     * Moves a heap entry down until its children rank above it.
+     *
+     * @param i the index of the entry
+     */
+    private void siftDown(int i) {
+        while (true) {
+            int lowest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && below(scores[left], rows[left], scores[lowest], rows[lowest])) {
+                lowest = left;
+            }
+            if (right < size && below(scores[right], rows[right], scores[lowest], rows[lowest])) {
+                lowest = right;
+            }
+            if (lowest == i) {
+                return;
+            }
+            swap(i, lowest);
+            i = lowest;
+        }
+    }
+
+    /**
+     * Swaps two heap entries.
+     *
+     * @param a the index of one entry
+     * @param b the index of the other entry
+     */
+    private void swap(int a, int b) {
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+        int row = rows[a];
+        rows[a] = rows[b];
+        rows[b] = row;
+    }
+}
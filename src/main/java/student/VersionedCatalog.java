@@ -0,0 +1,234 @@
+package student;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Publishes versions of the game catalog, so a reload never blocks the queries running on it.
+ *
+ * Each query pins the current version and reads that immutable catalog. Publishing a new catalog
+ * swaps the current version atomically and retires the old one. A retired version is reclaimed
+ * by the garbage collector once nothing references its catalog: not only pins, but also sessions
+ * not yet replayed, result views and subscriptions keep it alive. Pinning is lock-free, a single
+ * atomic read, and only publishers wait for each other.
+ *
+ * Versions are numbered from 1, and every publish adds one.
+ *
+ * Listeners are told about every published version, with the games that changed, right after it
+ * becomes current. They are called one version at a time, on the publishing thread.
+ */
+public final class VersionedCatalog {
+    /** The current version. */
+    private final AtomicReference<Snapshot> current;
+    /** Catalogs of retired versions not known to be reclaimed yet, guarded by this. */
+    private final List<WeakReference<GameCatalog>> retired = new ArrayList<>();
+    /** Number of retired versions reclaimed, guarded by this. */
+    private long reclaimed;
+    /** Listeners told about each published version. */
+    private final List<Consumer<CatalogChange>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a versioned catalog, with the given catalog as version 1.
+     *
+     * @param catalog the first catalog
+     */
+    public VersionedCatalog(GameCatalog catalog) {
+        this.current = new AtomicReference<>(new Snapshot(catalog, 1));
+    }
+
+    /**
+     * Pins the current version. The pinned catalog stays valid for as long as it is referenced.
+     *
+     * @return a snapshot of the current version
+     */
+    public Snapshot pin() {
+        return current.get();
+    }
+
+    /**
+     * Gets the number of the current version, without pinning it.
+     *
+     * @return the current version number
+     */
+    public long version() {
+        return current.get().number;
+    }
+
+    /**
+     * Publishes a new catalog as the current version and retires the previous one. Queries
+     * that pinned the previous version keep reading it.
+     *
+     * @param catalog the new catalog
+     * @return the new version number
+     */
+    public synchronized long publish(GameCatalog catalog) {
+        GameCatalog previous = current.get().catalog;
+        long number = current.get().number + 1;
+        return publish(catalog, listeners.isEmpty() ? null
+                : CatalogChange.diff(previous, catalog, number));
+    }
+
+    /**
+     * Publishes a new version with some games added, modified or removed. Listeners are told
+     * about the given games only, without comparing the whole catalog.
+     *
+     * @param upserted games to add, or to replace the game with the same id
+     * @param removedIds ids of the games to remove
+     * @return the new version number
+     */
+    public synchronized long update(Collection<BoardGame> upserted,
+            Collection<Integer> removedIds) {
+        GameCatalog previous = current.get().catalog;
+        Map<Integer, BoardGame> games = new HashMap<>();
+        for (int row = 0; row < previous.size(); row++) {
+            games.put(previous.game(row).getId(), previous.game(row));
+        }
+
+        Set<Integer> removed = new HashSet<>();
+        for (int id : removedIds) {
+            if (games.remove(id) != null) {
+                removed.add(id);
+            }
+        }
+        List<BoardGame> changed = new ArrayList<>();
+        for (BoardGame game : upserted) {
+            BoardGame old = games.put(game.getId(), game);
+            if (old == null || !CatalogChange.sameValues(old, game)) {
+                changed.add(game);
+            }
+            removed.remove(game.getId());
+        }
+
+        GameCatalog catalog = new GameCatalog(new HashSet<>(games.values()),
+                previous.collation());
+        long number = current.get().number + 1;
+        return publish(catalog, new CatalogChange(previous, catalog, number, changed, removed));
+    }
+
+    /**
+     * Registers a listener for published versions.
+     *
+     * @param listener called with the change of each version published from now on
+     */
+    public void addListener(Consumer<CatalogChange> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(Consumer<CatalogChange> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Makes a catalog the current version, retires the previous one and tells the listeners.
+     *
+     * @param catalog the new catalog
+     * @param change the change to tell the listeners, null if there are none
+     * @return the new version number
+     */
+    private long publish(GameCatalog catalog, CatalogChange change) {
+        Snapshot old = current.get();
+        Snapshot next = new Snapshot(catalog, old.number + 1);
+        current.set(next);
+        retired.add(new WeakReference<>(old.catalog));
+        expunge();
+        if (change != null) {
+            for (Consumer<CatalogChange> listener : listeners) {
+                try {
+                    listener.accept(change);
+                } catch (RuntimeException e) {
+                    System.err.println("Error in catalog listener: " + e.getMessage());
+                }
+            }
+        }
+        return next.number;
+    }
+
+    /**
+     * Gets the number of versions not reclaimed yet, the current one included. A retired version
+     * counts until the garbage collector has reclaimed its catalog.
+     *
+     * @return the number of live versions
+     */
+    public synchronized int getLiveVersions() {
+        expunge();
+        return 1 + retired.size();
+    }
+
+    /**
+     * Gets the number of retired versions whose catalog was reclaimed.
+     *
+     * @return the number of reclaimed versions
+     */
+    public synchronized long getReclaimed() {
+        expunge();
+        return reclaimed;
+    }
+
+    /**
+     * Drops the retired versions whose catalog was reclaimed, counting them.
+     */
+    private void expunge() {
+        int before = retired.size();
+        retired.removeIf(ref -> ref.get() == null);
+        reclaimed += before - retired.size();
+    }
+
+    /**
+     * A version of the catalog. Snapshots are immutable and pinning returns the same one for a
+     * version, so closing does nothing; it only lets reads be scoped in a try block.
+     */
+    public static final class Snapshot implements AutoCloseable {
+        /** The version number. */
+        private final long number;
+        /** The catalog. */
+        private final GameCatalog catalog;
+
+        /**
+         * Constructor for a version.
+         *
+         * @param catalog the catalog
+         * @param number the version number
+         */
+        private Snapshot(GameCatalog catalog, long number) {
+            this.catalog = catalog;
+            this.number = number;
+        }
+
+        /**
+         * Gets the pinned catalog.
+         *
+         * @return the catalog
+         */
+        public GameCatalog getCatalog() {
+            return catalog;
+        }
+
+        /**
+         * Gets the pinned version number.
+         *
+         * @return the version number
+         */
+        public long getVersion() {
+            return number;
+        }
+
+        @Override
+        public void close() {
+            // nothing to release, the catalog is reclaimed once unreachable
+        }
+    }
+}
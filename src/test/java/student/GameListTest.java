@@ -53,6 +53,17 @@ class GameListTest {
         assertEquals(sorted.get(2).getName(), gameList.getGameNames().get(0));
     }
 
+    @Test
+    void testGameNamesSortAccentsWithTheirLetter() {
+        Set<BoardGame> accented = new HashSet<>();
+        accented.add(new BoardGame("Zoo", 11, 2, 4, 30, 30, 2.0, 1, 7.0, 2010));
+        accented.add(new BoardGame("\u00c9clipse", 12, 2, 4, 30, 30, 2.0, 2, 7.0, 2010));
+        accented.add(new BoardGame("apple", 13, 2, 4, 30, 30, 2.0, 3, 7.0, 2010));
+        accented.add(new BoardGame("Eclipse", 14, 2, 4, 30, 30, 2.0, 4, 7.0, 2010));
+        gameList.addToList("all", accented.stream());
+        assertEquals(List.of("apple", "Eclipse", "\u00c9clipse", "Zoo"), gameList.getGameNames());
+    }
+
     @Test
     void testAddAllGames() {
         gameList.addToList("all", games.stream());
@@ -190,5 +201,16 @@ class GameListTest {
         gameList.addToList("Go", games.stream());
         assertEquals(1, gameList.count(), "Game should not be added twice");
     }
-}
 
+    @Test
+    void testAddRangeFromView() {
+        IPlanner planner = new Planner(games);
+        ResultView view = planner.view("", SortSpec.of(GameData.RATING, false));
+
+        gameList.addToList("2-3", view);
+        assertEquals(2, gameList.count());
+        assertTrue(gameList.getGameNames().contains(view.get(1).getName()));
+        assertTrue(gameList.getGameNames().contains(view.get(2).getName()));
+        assertThrows(IllegalArgumentException.class, () -> gameList.addToList("9", view));
+    }
+}
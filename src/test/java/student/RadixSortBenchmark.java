@@ -0,0 +1,66 @@
+package student;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Crossover benchmark between the radix sort and the comparison sort used by RowSorter.
+ *
+ * Not a unit test, run it by hand to pick RowSorter.DEFAULT_RADIX_THRESHOLD for a machine. For
+ * each input size it sorts random packed (rank, row) keys both ways and prints the time per
+ * sort. The threshold should sit at the first size where the radix sort wins consistently.
+ */
+public final class RadixSortBenchmark {
+    /** Bits in a typical packed key: a 10 bit rank and a 20 bit row id. */
+    private static final int KEY_BITS = 30;
+    /** Total number of keys sorted per measurement, split into repeated sorts. */
+    private static final int WORK = 1 << 22;
+
+    /** private constructor as static class. */
+    private RadixSortBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional key width in bits
+     */
+    public static void main(String[] args) {
+        int bits = args.length > 0 ? Integer.parseInt(args[0]) : KEY_BITS;
+        Random random = new Random(42);
+        System.out.printf("%10s %14s %14s%n", "size", "compare ns", "radix ns");
+        for (int size = 16; size <= 1 << 20; size <<= 1) {
+            long[] input = random.longs(size, 0, 1L << bits).toArray();
+            // first round warms up the JIT
+            measure(input, bits, false);
+            measure(input, bits, true);
+            long compare = measure(input, bits, false);
+            long radix = measure(input, bits, true);
+            System.out.printf("%10d %14d %14d%s%n", size, compare, radix,
+                    radix < compare ? "  radix" : "");
+        }
+    }
+
+    /**
+     * Measures the average time of one sort.
+     *
+     * @param input the keys to sort, left unchanged
+     * @param bits the number of bits in a key
+     * @param radix whether to use the radix sort
+     * @return nanoseconds per sort
+     */
+    private static long measure(long[] input, int bits, boolean radix) {
+        int repeats = Math.max(1, WORK / input.length);
+        long[] values = new long[input.length];
+        long start = System.nanoTime();
+        for (int i = 0; i < repeats; i++) {
+            System.arraycopy(input, 0, values, 0, input.length);
+            if (radix) {
+                RowSorter.radixSort(values, bits);
+            } else {
+                Arrays.sort(values);
+            }
+        }
+        return (System.nanoTime() - start) / repeats;
+    }
+}
@@ -4,9 +4,21 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import student.BoardGame;
 import static org.junit.jupiter.api.Assertions.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import student.Planner;
 import student.IPlanner;
 import student.GameData;
@@ -151,5 +163,1219 @@ public class TestPlanner {
         assertTrue(foundGoFish && foundMonopoly,
                 "Results should include Go Fish and Monopoly");
     }
-}
 
+    @Test
+    public void testRepeatedFilterHitsCache() {
+        // The same chain and sort, in any spelling, should come from the cache
+        Planner planner = new Planner(games);
+        List<BoardGame> first = planner.filter("minPlayers >= 6", GameData.RATING, false).toList();
+        planner.reset();
+        List<BoardGame> second = planner.filter("MINPLAYERS>=6", GameData.RATING, false).toList();
+
+        assertEquals(first, second);
+        assertEquals(1, planner.getCache().getHits());
+        assertEquals(1, planner.getCache().getMisses());
+    }
+
+    @Test
+    public void testCacheKeepsProgressiveState() {
+        // A cache hit must still update the current filter for the next call
+        Planner planner = new Planner(games);
+        planner.filter("name ~= go");
+        planner.reset();
+        planner.filter("name ~= go");
+        List<BoardGame> filtered = planner.filter("maxPlayers <= 7").toList();
+        assertEquals(3, filtered.size());
+    }
+
+    @Test
+    public void testCacheEvictsOnSize() {
+        Planner planner = new Planner(games, new ResultCache(2, ResultCache.DEFAULT_MAX_BYTES));
+        planner.filter("", GameData.NAME, true).count();
+        planner.filter("", GameData.RATING, true).count();
+        planner.filter("", GameData.YEAR, true).count();
+
+        assertEquals(2, planner.getCache().size());
+        assertEquals(1, planner.getCache().getEvictions());
+    }
+
+    @Test
+    public void testReloadInvalidatesCache() {
+        Planner planner = new Planner(games);
+        assertEquals(8, planner.filter("").count());
+
+        Set<BoardGame> smaller = new HashSet<>(games);
+        smaller.removeIf(game -> game.getMinPlayers() >= 6);
+        planner.reload(smaller);
+
+        assertEquals(0, planner.getCache().size());
+        assertEquals(5, planner.filter("").count());
+    }
+
+    @Test
+    public void testSortedWalkMatchesComparator() {
+        // Large results walk the presorted permutation, small ones are sorted directly;
+        // both have to agree with a plain comparator sort
+        for (String filter : List.of("", "maxPlayers >= 10")) {
+            for (GameData column : List.of(GameData.RATING, GameData.MAX_TIME, GameData.NAME)) {
+                IPlanner planner = new Planner(games);
+                List<BoardGame> filtered = planner.filter(filter, column, false).toList();
+                List<BoardGame> expected = filtered.stream()
+                        .sorted(SortComparator.createComparator(column, false)).toList();
+                assertEquals(expected, filtered, filter + " sorted on " + column);
+            }
+        }
+    }
+
+    @Test
+    public void testMultiKeySort() {
+        // Ties on minPlayers are broken by maxPlayers descending
+        IPlanner planner = new Planner(games);
+        List<String> names = planner.filter("", SortSpec.parse("minPlayers asc, maxPlayers desc"))
+                .map(BoardGame::getName).toList();
+        assertEquals(List.of("17 days", "Go Fish", "golang", "Go", "Chess", "Monopoly", "GoRami",
+                "Tucano"), names);
+    }
+
+    @Test
+    public void testSortSpecParse() {
+        SortSpec spec = SortSpec.parse("ratingdesc, difficulty asc,name");
+        assertEquals(SortSpec.of(GameData.RATING, false).then(GameData.DIFFICULTY, true)
+                .then(GameData.NAME, true), spec);
+        assertEquals(GameData.RATING, spec.getPrimaryColumn());
+        assertThrows(IllegalArgumentException.class, () -> SortSpec.parse("rating, bogus desc"));
+    }
+
+    @Test
+    public void testRadixSortMatchesComparisonSort() {
+        java.util.Random random = new java.util.Random(7);
+        long[] values = random.longs(5000, 0, 1L << 40).toArray();
+        long[] expected = values.clone();
+        java.util.Arrays.sort(expected);
+        RowSorter.radixSort(values, 40);
+        assertArrayEquals(expected, values);
+    }
+
+    @Test
+    public void testRadixPathGivesSameOrder() {
+        // Forcing the radix path must not change results, including the order of ties
+        List<BoardGame> compared = new Planner(games)
+                .filter("", SortSpec.parse("year, rating desc")).toList();
+        int threshold = RowSorter.getRadixThreshold();
+        RowSorter.setRadixThreshold(0);
+        try {
+            List<BoardGame> radix = new Planner(games)
+                    .filter("", SortSpec.parse("year, rating desc")).toList();
+            assertEquals(compared, radix);
+        } finally {
+            RowSorter.setRadixThreshold(threshold);
+        }
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        // Parallel filters and sorts must give exactly the sequential results
+        Set<BoardGame> many = new HashSet<>();
+        java.util.Random random = new java.util.Random(11);
+        for (int i = 0; i < 3000; i++) {
+            many.add(new BoardGame("Game " + i, i, 1 + random.nextInt(4), 2 + random.nextInt(8),
+                    10 * random.nextInt(12), 60 + 10 * random.nextInt(12),
+                    random.nextInt(50) / 10.0, i + 1, random.nextInt(100) / 10.0,
+                    1990 + random.nextInt(35)));
+        }
+        Planner sequential = new Planner(many);
+        sequential.setParallelConfig(ParallelConfig.SEQUENTIAL);
+        Planner parallel = new Planner(many);
+        parallel.setParallelConfig(new ParallelConfig(0, 4, 64));
+
+        for (String sort : List.of("rating desc", "year, rating desc", "difficulty desc, name")) {
+            for (String filter : List.of("", "minPlayers <= 2", "rating > 5")) {
+                assertEquals(sequential.filter(filter, SortSpec.parse(sort)).toList(),
+                        parallel.filter(filter, SortSpec.parse(sort)).toList(),
+                        filter + " " + sort);
+            }
+            sequential.reset();
+            parallel.reset();
+        }
+    }
+
+    @Test
+    public void testUndoReturnsToPreviousStep() {
+        IPlanner planner = new Planner(games);
+        planner.filter("name ~= go");
+        planner.filter("maxPlayers <= 7");
+        assertEquals(2, planner.currentStep());
+        assertEquals(List.of("NAME~=go", "MAX_PLAYERS<=7"), planner.filterHistory());
+
+        planner.undo();
+        assertEquals(1, planner.currentStep());
+        assertEquals(4, planner.filter("").count());
+
+        planner.undo();
+        planner.undo(); // nothing left to undo
+        assertEquals(0, planner.currentStep());
+        assertEquals(8, planner.filter("").count());
+    }
+
+    @Test
+    public void testRevertToDropsLaterSteps() {
+        IPlanner planner = new Planner(games);
+        planner.filter("minPlayers >= 2");
+        planner.filter("maxPlayers <= 7");
+        planner.filter("rating >= 9");
+        planner.filter(""); // sorting only, not a step
+        assertEquals(3, planner.currentStep());
+
+        planner.revertTo(1);
+        assertEquals(7, planner.filter("").count());
+        planner.filter("year >= 2005");
+        assertEquals(List.of("MIN_PLAYERS>=2", "YEAR>=2005"), planner.filterHistory());
+        assertThrows(IllegalArgumentException.class, () -> planner.revertTo(3));
+
+        // any step of a deep stack can be reached directly, and keeps its history
+        planner.reset();
+        List<String> clauses = new ArrayList<>();
+        for (int year = 1990; year < 2010; year++) {
+            planner.filter("year >= " + year);
+            clauses.add("YEAR>=" + year);
+        }
+        for (int step : new int[] {20, 13, 13, 4, 0}) {
+            planner.revertTo(step);
+            assertEquals(step, planner.currentStep());
+            assertEquals(clauses.subList(0, step), planner.filterHistory());
+        }
+    }
+
+    @Test
+    public void testNarrowingKeepsSortedView() {
+        // A narrowing filter on the same sort drops rows from the sorted view
+        IPlanner planner = new Planner(games, new ResultCache(0, 0));
+        planner.filter("", GameData.RATING, false);
+        List<String> names = planner.filter("minPlayers >= 2", GameData.RATING, false)
+                .map(BoardGame::getName).toList();
+        assertEquals(List.of("Chess", "golang", "GoRami", "Tucano", "Go", "Go Fish", "Monopoly"),
+                names);
+
+        // A different sort only sorts the survivors
+        names = planner.filter("maxPlayers <= 7", GameData.YEAR, true)
+                .map(BoardGame::getName).toList();
+        assertEquals(List.of("Go", "GoRami", "golang", "Chess"), names);
+    }
+
+    @Test
+    public void testFilterIsLazy() {
+        // Nothing is sorted or cached until the stream is read, but the step is pushed
+        Planner planner = new Planner(games);
+        Stream<BoardGame> stream = planner.filter("minPlayers >= 2");
+        assertEquals(1, planner.currentStep());
+        assertEquals(0, planner.getCache().size());
+
+        // counting the new step filters it without sorting it
+        assertEquals(7, planner.count(""));
+        assertEquals(0, planner.getCache().size());
+
+        assertEquals(7, stream.count());
+        assertEquals(1, planner.getCache().size());
+    }
+
+    @Test
+    public void testCountAndExistsKeepFilter() {
+        Planner planner = new Planner(games);
+        planner.filter("minPlayers >= 2").count();
+
+        assertEquals(7, planner.count(""));
+        assertEquals(planner.filter("maxPlayers <= 7").count(), planner.count("maxPlayers <= 7"));
+        planner.undo();
+        assertEquals(7, planner.count("minPlayers >= 2"));
+        assertTrue(planner.exists("name ~= go"));
+        assertFalse(planner.exists("name ~= zzz"));
+
+        // the current filter is unchanged
+        assertEquals(1, planner.currentStep());
+        assertEquals(7, planner.filter("").count());
+    }
+
+    @Test
+    public void testSamplePicksMatches() {
+        Planner planner = new Planner(games);
+        Set<BoardGame> matches = planner.filter("maxPlayers <= 7").collect(Collectors.toSet());
+        planner.reset();
+
+        List<BoardGame> sample = planner.sample("maxPlayers <= 7", 2);
+        assertEquals(2, sample.size());
+        assertEquals(2, new HashSet<>(sample).size());
+        assertTrue(matches.containsAll(sample));
+
+        // asking for more than matches returns every match
+        assertEquals(matches, new HashSet<>(planner.sample("maxPlayers <= 7", 10)));
+        assertEquals(0, planner.sample("", 0).size());
+        assertThrows(IllegalArgumentException.class, () -> planner.sample("", -1));
+    }
+
+    @Test
+    public void testAggregateMatchesStream() {
+        Planner planner = new Planner(games);
+        List<BoardGame> matches = planner.filter("minPlayers >= 2").toList();
+        planner.reset();
+
+        ColumnStats rating = planner.aggregate("minPlayers >= 2", GameData.RATING);
+        assertEquals(matches.size(), rating.getCount());
+        assertEquals(matches.stream().mapToDouble(BoardGame::getRating).min().getAsDouble(),
+                rating.getMin());
+        assertEquals(matches.stream().mapToDouble(BoardGame::getRating).max().getAsDouble(),
+                rating.getMax());
+        assertEquals(matches.stream().mapToDouble(BoardGame::getRating).average().getAsDouble(),
+                rating.getMean(), 1e-9);
+        assertEquals(matches.size(), Arrays.stream(rating.getHistogram()).sum());
+
+        // the whole collection comes from the statistics computed at load
+        ColumnStats years = planner.aggregate("", GameData.YEAR);
+        assertEquals(games.size(), years.getCount());
+        assertEquals(2000, years.getMin());
+        assertEquals(2007, years.getMax());
+        assertEquals(1, years.getHistogram()[0]);
+        assertEquals(1, years.getHistogram()[ColumnStats.DEFAULT_BINS - 1]);
+    }
+
+    @Test
+    public void testAggregateSeveralColumns() {
+        Planner planner = new Planner(games);
+        planner.filter("name ~= go");
+        Map<GameData, ColumnStats> stats = planner.aggregate("",
+                List.of(GameData.MIN_PLAYERS, GameData.DIFFICULTY), 4);
+        assertEquals(List.of(GameData.MIN_PLAYERS, GameData.DIFFICULTY),
+                new ArrayList<>(stats.keySet()));
+        ColumnStats players = stats.get(GameData.MIN_PLAYERS);
+        assertEquals(4, players.getCount());
+        assertEquals(12, players.getSum());
+        assertEquals(4, players.getHistogram().length);
+
+        ColumnStats none = planner.aggregate("name ~= zzz", GameData.RATING);
+        assertEquals(0, none.getCount());
+        assertTrue(Double.isNaN(none.getMean()));
+        assertThrows(IllegalArgumentException.class,
+                () -> planner.aggregate("", GameData.NAME));
+        assertThrows(IllegalArgumentException.class,
+                () -> planner.aggregate("", List.of(GameData.RATING), 0));
+    }
+
+    @Test
+    public void testFacetsFollowFilter() {
+        Planner planner = new Planner(games);
+        assertEquals(Map.of("2000s", 8), planner.facets(Facet.DECADE));
+        Map<String, Integer> players = planner.facets(Facet.PLAYERS);
+        assertEquals(List.of("1", "2", "3", "4", "5", "6", "7", "8", "9", "10+"),
+                new ArrayList<>(players.keySet()));
+        assertEquals(1, (int) players.get("1"));
+        assertEquals(5, (int) players.get("2"));
+        assertEquals(3, (int) players.get("10+"));
+
+        planner.filter("name ~= go");
+        players = planner.facets(Facet.PLAYERS);
+        assertEquals(0, (int) players.get("1"));
+        assertEquals(3, (int) players.get("2"));
+        assertEquals(3, (int) players.get("5"));
+        assertEquals(1, (int) players.get("10+"));
+        Map<String, Integer> difficulty = planner.facets(Facet.DIFFICULTY);
+        assertEquals(1, (int) difficulty.get("3-4"));
+        assertEquals(3, (int) difficulty.get("5+"));
+
+        planner.filter("difficulty < 6");
+        assertEquals(2, planner.facets(Facet.DIFFICULTY).values().stream()
+                .mapToInt(Integer::intValue).sum());
+        planner.undo();
+        assertEquals(difficulty, planner.facets(Facet.DIFFICULTY));
+    }
+
+    @Test
+    public void testFacetsCountLargeGroupGames() {
+        // a game for 12 to 20 players is counted in the last bucket, also when filtered away
+        Set<BoardGame> withParty = new HashSet<>(games);
+        withParty.add(new BoardGame("Party", 40, 12, 20, 30, 60, 1.5, 40, 6.0, 2008));
+        Planner planner = new Planner(withParty);
+        assertEquals(4, (int) planner.facets(Facet.PLAYERS).get("10+"));
+        planner.filter("minPlayers >= 12");
+        Map<String, Integer> players = planner.facets(Facet.PLAYERS);
+        assertEquals(1, (int) players.get("10+"));
+        assertEquals(0, (int) players.get("9"));
+        planner.undo();
+        planner.filter("minPlayers < 12");
+        assertEquals(3, (int) planner.facets(Facet.PLAYERS).get("10+"));
+    }
+
+    @Test
+    public void testPlayersRangeFilter() {
+        Planner planner = new Planner(games);
+        List<BoardGame> expected = planner.filter("minplayers<=6,maxplayers>=6").toList();
+        planner.reset();
+        assertEquals(expected, planner.filter("players:6").toList());
+        assertEquals(List.of("PLAYERS:6"), planner.filterHistory());
+
+        planner.reset();
+        assertEquals(0, planner.count("players:0"));
+        assertEquals(0, planner.count("players:abc"));
+        assertEquals(planner.count("minplayers<=7,maxplayers>=2"), planner.count("players:2-7"));
+    }
+
+    @Test
+    public void testTimeRangeMatchesScan() {
+        Set<BoardGame> many = new HashSet<>();
+        java.util.Random random = new java.util.Random(7);
+        for (int i = 0; i < 500; i++) {
+            int minTime = random.nextInt(200);
+            // some games have a broken range, which no range matches
+            int maxTime = minTime + random.nextInt(100) - 10;
+            many.add(new BoardGame("Game " + i, i, 1, 4, minTime, maxTime, 2.0, i, 7.0, 2000));
+        }
+        Planner planner = new Planner(many);
+        for (int from = 0; from < 320; from += 13) {
+            for (int to = from; to < from + 80; to += 17) {
+                String filter = "time:" + from + "-" + to;
+                long expected = 0;
+                for (BoardGame game : many) {
+                    if (game.getMinPlayTime() <= game.getMaxPlayTime()
+                            && game.getMinPlayTime() <= to && game.getMaxPlayTime() >= from) {
+                        expected++;
+                    }
+                }
+                assertEquals(expected, planner.count(filter), filter);
+            }
+        }
+    }
+
+    @Test
+    public void testSimilarGames() {
+        Planner planner = new Planner(games);
+        List<BoardGame> similar = planner.similar("go", 3);
+        assertEquals(3, similar.size());
+        assertFalse(similar.stream().anyMatch(game -> game.getName().equals("Go")));
+
+        // rating alone ranks by rating distance
+        List<BoardGame> byRating = planner.similar("Go", 2, Map.of(GameData.RATING, 1.0));
+        assertEquals("Tucano", byRating.get(0).getName());
+
+        planner.filter("name ~= go");
+        assertTrue(planner.similar("Chess", 10).stream()
+                .allMatch(game -> game.getName().toLowerCase().contains("go")));
+        assertThrows(IllegalArgumentException.class, () -> planner.similar("nothing", 3));
+        assertThrows(IllegalArgumentException.class,
+                () -> planner.similar("Go", 3, Map.of(GameData.YEAR, 1.0)));
+    }
+
+    @Test
+    public void testSimilarityTreeMatchesScan() {
+        Set<BoardGame> many = new HashSet<>();
+        java.util.Random random = new java.util.Random(5);
+        for (int i = 0; i < 3000; i++) {
+            int minPlayers = 1 + random.nextInt(4);
+            int minTime = 10 * (1 + random.nextInt(12));
+            many.add(new BoardGame("Game " + i, i, minPlayers, minPlayers + random.nextInt(6),
+                    minTime, minTime + 10 * random.nextInt(6), 1 + random.nextInt(40) / 10.0, i,
+                    4 + random.nextInt(60) / 10.0, 2000));
+        }
+        GameCatalog catalog = new GameCatalog(many);
+        SimilarityIndex index = catalog.similarity();
+        for (int query = 0; query < 50; query++) {
+            int target = random.nextInt(catalog.size());
+            double[] weights = new double[SimilarityIndex.FEATURES.size()];
+            for (int d = 0; d < weights.length; d++) {
+                weights[d] = random.nextInt(3);
+            }
+            int k = 1 + random.nextInt(20);
+            boolean everyRow = query % 2 == 0;
+            java.util.function.IntPredicate even = row -> everyRow || row % 2 == 0;
+            assertArrayEquals(index.nearestByScan(target, k, weights, even),
+                    index.nearest(target, k, weights, even));
+        }
+    }
+
+    @Test
+    public void testPlanNight() {
+        Planner planner = new Planner(games);
+        GameNight night = planner.planNight("", 4, 120, GameNightPlanner.Objective.RATING);
+        assertEquals(List.of("Go", "golang"),
+                night.getGames().stream().map(BoardGame::getName).toList());
+        assertEquals(85, night.getMinutes());
+        assertEquals(17.0, night.getTotalRating(), 1e-9);
+        assertTrue(night.isOptimal());
+
+        GameNight listed = planner.planNight(List.of("go fish", "17 days", "Unknown"), 4, 200,
+                GameNightPlanner.Objective.VARIETY);
+        assertEquals(2, listed.getGames().size());
+        assertEquals(0, planner.planNight("", 30, 600, GameNightPlanner.Objective.RATING)
+                .getGames().size());
+        assertThrows(IllegalArgumentException.class,
+                () -> planner.planNight("", 0, 60, GameNightPlanner.Objective.RATING));
+    }
+
+    @Test
+    public void testPlanNightMatchesExhaustiveSearch() {
+        java.util.Random random = new java.util.Random(3);
+        for (int round = 0; round < 30; round++) {
+            List<BoardGame> candidates = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                candidates.add(new BoardGame("Game " + i, i, 1 + random.nextInt(3),
+                        3 + random.nextInt(3), 5, 10 * (1 + random.nextInt(9)), 2.0, i,
+                        random.nextInt(100) / 10.0, 2000));
+            }
+            int players = 1 + random.nextInt(5);
+            int minutes = 30 + random.nextInt(150);
+            double best = 0;
+            for (int mask = 0; mask < 1 << candidates.size(); mask++) {
+                int time = 0;
+                double rating = 0;
+                for (int i = 0; i < candidates.size(); i++) {
+                    BoardGame game = candidates.get(i);
+                    if ((mask >> i & 1) == 1 && game.getMinPlayers() <= players
+                            && game.getMaxPlayers() >= players) {
+                        time += game.getMaxPlayTime();
+                        rating += game.getRating();
+                    }
+                }
+                if (time <= minutes) {
+                    best = Math.max(best, rating);
+                }
+            }
+            GameNight night = GameNightPlanner.plan(candidates, players, minutes,
+                    GameNightPlanner.Objective.RATING, 1000);
+            assertEquals(best, night.getTotalRating(), 1e-9);
+            assertTrue(night.getMinutes() <= minutes);
+        }
+    }
+
+    @Test
+    public void testTopByScore() {
+        Planner planner = new Planner(games);
+        assertEquals(List.of("Chess", "golang", "17 days"), planner.top("",
+                ScoreSpec.parse("rating"), 3).stream().map(BoardGame::getName).toList());
+
+        // blended scores rank like a full sort on the same formula
+        ScoreSpec blend = ScoreSpec.parse("0.6*rating - 0.3*difficulty + 0.1*year");
+        double[] scores = new double[games.size()];
+        List<BoardGame> all = new ArrayList<>(games);
+        for (int i = 0; i < all.size(); i++) {
+            BoardGame game = all.get(i);
+            scores[i] = 0.6 * (game.getRating() - 5.0) / 5.0
+                    - 0.3 * (game.getDifficulty() - 1.0) / 9.0
+                    + 0.1 * (game.getYearPublished() - 2000) / 7.0;
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < all.size(); i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> Double.compare(scores[b], scores[a]));
+        List<BoardGame> expected = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            expected.add(all.get(order.get(i)));
+        }
+        assertEquals(expected, planner.top("", blend, 4));
+        assertEquals(blend, ScoreSpec.parse(blend.toString()));
+
+        // only the games of the filter are ranked
+        assertTrue(planner.top("name ~= go", blend, 10).stream()
+                .allMatch(game -> game.getName().toLowerCase().contains("go")));
+        // the sign of an exponent does not start a new term
+        assertEquals(ScoreSpec.parse("0.001*rating + 25*z(year) - 100*difficulty"),
+                ScoreSpec.parse("1e-3*rating + 2.5E+1*z(year) - 1e2*difficulty"));
+        ScoreSpec tiny = ScoreSpec.parse("1e-5*rating-1E-5*year");
+        assertEquals(tiny, ScoreSpec.parse(tiny.toString()));
+        assertThrows(IllegalArgumentException.class, () -> ScoreSpec.parse("2*name"));
+        assertThrows(IllegalArgumentException.class, () -> planner.top("", blend, -1));
+    }
+
+    @Test
+    public void testComputedColumns() {
+        Planner planner = new Planner(games);
+        try {
+            ComputedColumn.define("avgtime", "(minplaytime + maxplaytime) / 2", false);
+            assertEquals(List.of("Chess", "Go", "GoRami"),
+                    planner.filter("avgtime<45").map(BoardGame::getName).toList());
+            planner.reset();
+
+            // sorting by the computed column matches a sort on the same formula
+            for (boolean materialize : new boolean[] {false, true}) {
+                String name = materialize ? "weight_stored" : "weight";
+                ComputedColumn.define(name, "rating / difficulty - 0.5 * -minplayers",
+                        materialize);
+                SortSpec spec = SortSpec.parse(name + " desc");
+                Comparator<BoardGame> manual = Comparator.comparingDouble((BoardGame game) ->
+                        -(game.getRating() / game.getDifficulty() + 0.5 * game.getMinPlayers()));
+                List<BoardGame> expected = games.stream().sorted(manual).toList();
+                assertEquals(expected, planner.view("", spec).asList());
+                assertEquals(expected, games.stream()
+                        .sorted(SortComparator.createComparator(spec)).toList());
+                assertEquals(expected.subList(0, 2), planner.filter(name + ">=6", spec).toList());
+                planner.reset();
+            }
+
+            assertSame(ComputedColumn.lookup("AVGTIME"),
+                    ComputedColumn.define("avgTime", " (minplaytime + maxplaytime) / 2 ", false));
+            assertThrows(IllegalArgumentException.class,
+                    () -> ComputedColumn.define("avgtime", "maxplaytime", false));
+            assertThrows(IllegalArgumentException.class,
+                    () -> ComputedColumn.define("rating", "rating * 2", false));
+            assertThrows(IllegalArgumentException.class,
+                    () -> ComputedColumn.define("bad", "rating * (2", false));
+            assertThrows(IllegalArgumentException.class,
+                    () -> ComputedColumn.define("bad", "name + 1", false));
+
+            // a removed name can be defined again, and cached results of the old one are not used
+            assertEquals(3, planner.count("avgtime<45"));
+            assertTrue(ComputedColumn.remove("AvgTime"));
+            assertNull(ComputedColumn.lookup("avgtime"));
+            assertThrows(IllegalArgumentException.class, () -> SortSpec.parse("avgtime"));
+            ComputedColumn.define("avgtime", "maxplaytime", false);
+            assertEquals(planner.count("maxplaytime<45"), planner.count("avgtime<45"));
+            assertFalse(ComputedColumn.remove("nothing"));
+            assertThrows(IllegalArgumentException.class,
+                    () -> ComputedColumn.define("bad", "1 2", false));
+            assertThrows(IllegalArgumentException.class,
+                    () -> ComputedColumn.define("bad", "min players", false));
+            assertEquals(2.5, ComputedColumn.define("spaced", " ( 1 + 4 ) /\t2 ", false)
+                    .getExpression().bind(new GameCatalog(games)).applyAsDouble(0));
+            ComputedColumn.remove("spaced");
+
+            // a step sorted on the old definition does not lend its order to the new one
+            ComputedColumn.define("score", "rating", false);
+            Planner sorted = new Planner(games, new ResultCache(0, 0));
+            List<BoardGame> byRating = sorted.filter("minPlayers >= 2",
+                    SortSpec.parse("score desc")).toList();
+            ComputedColumn.remove("score");
+            ComputedColumn.define("score", "-rating", false);
+            Planner fresh = new Planner(games, new ResultCache(0, 0));
+            List<BoardGame> byNegated = fresh.filter("minPlayers >= 2",
+                    SortSpec.parse("score desc")).toList();
+            assertNotEquals(byRating, byNegated);
+            assertEquals(byNegated, sorted.filter("", SortSpec.parse("score desc")).toList());
+            assertEquals(fresh.filter("maxPlayers <= 7", SortSpec.parse("score desc")).toList(),
+                    sorted.filter("maxPlayers <= 7", SortSpec.parse("score desc")).toList());
+        } finally {
+            for (String name : List.of("avgtime", "weight", "weight_stored", "score")) {
+                ComputedColumn.remove(name);
+            }
+        }
+    }
+
+    @Test
+    public void testCatalogDropsRemovedComputedColumns() throws InterruptedException {
+        GameCatalog catalog = new GameCatalog(games);
+        try {
+            ComputedColumn first = ComputedColumn.define("stored", "rating * 2", true);
+            assertEquals(catalog.computed(first).applyAsDouble(0),
+                    2 * catalog.game(0).getRating());
+            java.lang.ref.WeakReference<ComputedColumn> old =
+                    new java.lang.ref.WeakReference<>(first);
+            first = null;
+            ComputedColumn.remove("stored");
+            ComputedColumn second = ComputedColumn.define("stored", "rating * 3", true);
+            assertEquals(catalog.computed(second).applyAsDouble(0),
+                    3 * catalog.game(0).getRating());
+            for (int i = 0; i < 100 && old.get() != null; i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            assertNull(old.get());
+        } finally {
+            ComputedColumn.remove("stored");
+        }
+    }
+
+    @Test
+    public void testExtraColumns() {
+        String[][] extras = {{"1200", "10+", "No necessary in-game text"},
+            {"", "8+", "Moderate in-game text - needs crib sheet or paste ups"},
+            {"35", "10+", ""}, {"980", "12+", "No necessary in-game text"}};
+        Set<BoardGame> extended = new HashSet<>();
+        for (int i = 0; i < extras.length; i++) {
+            extended.add(new BoardGame("Extra " + i, 100 + i, 2, 4, 30, 60, 2.0, i, 7.0, 2010,
+                    Map.of(ExtraColumn.NUM_OWNED, extras[i][0], ExtraColumn.AGE_RANGE,
+                            extras[i][1], ExtraColumn.LANGUAGE_DEPENDENCE, extras[i][2])));
+        }
+        GameCatalog catalog = new GameCatalog(extended);
+        assertEquals(List.of("10+", "12+", "8+"), catalog.dictionary(ExtraColumn.AGE_RANGE));
+        int row = catalog.rowOfName("Extra 1");
+        assertEquals(2, catalog.codes(ExtraColumn.AGE_RANGE).applyAsInt(row));
+        assertEquals(List.of(""), catalog.dictionary(ExtraColumn.OBJECT_TYPE));
+        assertTrue(Double.isNaN(catalog.numeric(ExtraColumn.NUM_OWNED).applyAsDouble(row)));
+        assertThrows(IllegalArgumentException.class, () -> catalog.codes(ExtraColumn.NUM_OWNED));
+
+        Planner planner = new Planner(extended);
+        assertEquals(List.of("Extra 0", "Extra 2"), planner.filter("bggrecagerange == 10+")
+                .map(BoardGame::getName).toList());
+        planner.reset();
+        assertEquals(List.of("Extra 1"), planner.filter("bgglanguagedependence~=cribsheet")
+                .map(BoardGame::getName).toList());
+        planner.reset();
+        assertEquals(List.of("Extra 0", "Extra 3"), planner.filter("numowned>500")
+                .map(BoardGame::getName).toList());
+        planner.reset();
+
+        // sorted views match the comparator, numbers missing a value sort last
+        for (String spec : List.of("numowned desc", "numowned", "bggrecagerange desc, numowned")) {
+            SortSpec sortOn = SortSpec.parse(spec);
+            List<BoardGame> expected = extended.stream()
+                    .sorted(SortComparator.createComparator(sortOn)).toList();
+            assertEquals(expected, planner.view("", sortOn).asList());
+        }
+        assertEquals("Extra 1", planner.view("", SortSpec.parse("numowned")).get(3).getName());
+        assertThrows(IllegalArgumentException.class,
+                () -> ExtraColumn.register("numowned", ExtraColumn.Kind.CATEGORY));
+        assertThrows(IllegalArgumentException.class,
+                () -> ExtraColumn.register("rating", ExtraColumn.Kind.NUMBER));
+    }
+
+    @Test
+    public void testExtraColumnsLoadFromCsv() {
+        Set<BoardGame> loaded = GamesLoader.loadGamesFile("/collection.csv");
+        Planner planner = new Planner(loaded);
+        long owned = loaded.stream().filter(game ->
+                ExtraColumn.parseNumber(game.getExtra(ExtraColumn.NUM_OWNED)) > 1000).count();
+        assertTrue(owned > 0);
+        assertEquals(owned, planner.filter("numowned>1000").count());
+        planner.reset();
+        assertEquals(loaded.size(), planner.filter("objecttype==thing").count());
+        planner.reset();
+        assertTrue(planner.filter("bgglanguagedependence==No necessary in-game text").count() > 0);
+    }
+
+    @Test
+    public void testNamesSortByCollation() {
+        Set<BoardGame> accented = new HashSet<>(games);
+        accented.add(new BoardGame("\u00c9clipse", 20, 2, 4, 60, 60, 3.0, 900, 7.0, 2011));
+        accented.add(new BoardGame("\u00d6rebro", 21, 2, 4, 60, 60, 3.0, 901, 7.0, 2012));
+        accented.add(new BoardGame("Eclipse", 22, 2, 4, 60, 60, 3.0, 902, 7.0, 2013));
+        Planner planner = new Planner(accented);
+        List<String> names = planner.filter("", GameData.NAME, true).map(BoardGame::getName)
+                .toList();
+        assertEquals(List.of("17 days", "Chess", "Eclipse", "\u00c9clipse", "Go", "Go Fish",
+                "golang", "GoRami", "Monopoly", "\u00d6rebro", "Tucano"), names);
+        assertEquals(names, accented.stream()
+                .sorted(SortComparator.createComparator(GameData.NAME, true))
+                .map(BoardGame::getName).toList());
+        List<String> shuffled = new ArrayList<>(names);
+        java.util.Collections.shuffle(shuffled, new java.util.Random(7));
+        assertEquals(names, NameCollation.getDefault().sort(shuffled));
+
+        // the collation is per catalog, and kept by later versions
+        GameCatalog swedish = new GameCatalog(accented,
+                NameCollation.forLocale(Locale.forLanguageTag("sv")));
+        assertEquals("\u00d6rebro", swedish.game(swedish.size() - 1).getName());
+        VersionedCatalog versions = new VersionedCatalog(swedish);
+        versions.update(List.of(new BoardGame("Zoo", 23, 2, 4, 60, 60, 3.0, 903, 7.0, 2014)),
+                List.of());
+        try (VersionedCatalog.Snapshot pinned = versions.pin()) {
+            GameCatalog updated = pinned.getCatalog();
+            assertEquals("\u00d6rebro", updated.game(updated.size() - 1).getName());
+            assertEquals(updated.size() - 2, updated.rowOfName("zoo"));
+        }
+
+        GameCatalog catalog = new GameCatalog(accented);
+        assertEquals("Eclipse", catalog.game(catalog.rowOfName("ECLIPSE")).getName());
+        assertEquals("\u00c9clipse", catalog.game(catalog.rowOfName("\u00e9clipse")).getName());
+        assertEquals(-1, catalog.rowOfName("Eclipses"));
+    }
+
+    @Test
+    public void testRegexAndGlobNameFilters() {
+        Planner planner = new Planner(games);
+        assertEquals(List.of("Go", "Go Fish", "golang", "GoRami"),
+                planner.filter("name~/^go/").map(BoardGame::getName).toList());
+        planner.reset();
+        assertEquals(List.of("Go"), planner.filter("name~/^GO$/").map(BoardGame::getName).toList());
+        planner.reset();
+        assertEquals(List.of("17 days"),
+                planner.filter("name~/\\d+ days/").map(BoardGame::getName).toList());
+        planner.reset();
+        assertEquals(List.of("Go", "Tucano"),
+                planner.filter("name=*O").map(BoardGame::getName).toList());
+        planner.reset();
+        assertEquals(List.of("Go Fish", "GoRami"),
+                planner.filter("name=go?*, name=*?i*").map(BoardGame::getName).toList());
+        planner.reset();
+        // a pattern that does not compile is ignored like other invalid clauses
+        assertEquals(8, planner.filter("name~/(/").count());
+        planner.reset();
+        // commas inside a regex belong to it, and steps replay such clauses after a reload
+        java.util.regex.Pattern short5 = java.util.regex.Pattern.compile("^.{2,5}$");
+        List<String> expected = games.stream().map(BoardGame::getName)
+                .filter(name -> short5.matcher(name).find() && !name.startsWith("G"))
+                .sorted(SortComparator.nameComparator()).toList();
+        VersionedCatalog versions = new VersionedCatalog(new GameCatalog(games));
+        Planner session = new Planner(versions);
+        assertEquals(expected, session.filter("name~/^.{2,5}$/ , name~/^[^g]/")
+                .map(BoardGame::getName).toList());
+        assertEquals(List.of("NAME~/^.{2,5}$/,NAME~/^[^g]/"), session.filterHistory());
+        new Planner(versions).reload(games);
+        assertEquals(expected, session.filter("").map(BoardGame::getName).toList());
+        assertEquals(1, session.currentStep());
+        assertEquals(List.of("name~/a\\/,b/", " year>1"),
+                FilterHandler.splitClauses("name~/a\\/,b/, year>1"));
+        assertEquals(List.of("name~/a,b,c,"), FilterHandler.splitClauses("name~/a,b,c,"));
+        assertEquals(List.of("a", "", "name=x"), FilterHandler.splitClauses("a,,name=x"));
+
+        // patterns only apply to names, on other columns the clause is ignored
+        assertEquals(8, planner.filter("minplayers=2").count());
+        planner.reset();
+        assertEquals(8, planner.filter("rating~/5/, year=*").count());
+        planner.reset();
+        assertNull(FilterHandler.parseFilterExpression("numowned=1*"));
+
+        assertEquals(List.of(" wonders"), NamePattern.regex("^(7|seven) wonders").getLiterals());
+        assertEquals(List.of("a", "c"), NamePattern.regex("ab?c").getLiterals());
+        assertEquals(List.of("yz"), NamePattern.regex("x{2}yz").getLiterals());
+        assertEquals(List.of(), NamePattern.regex("go|chess").getLiterals());
+        assertEquals(List.of("dungeon", "crawl", "r"),
+                NamePattern.glob("*Dungeon*crawl?r").getLiterals());
+        assertSame(NamePattern.regex("^go"), NamePattern.regex("^go"));
+
+        // escapes with an operand give no fragment, as their operand is not literal text
+        assertEquals(List.of("days", " "), NamePattern.regex("\\d+ \\.?days").getLiterals());
+        for (String regex : List.of("\\x41bc", "\\u0041bc", "\\0101bc", "\\x{41}bc",
+                "\\QAbc\\E", "\\p{L}bc", "(a)\\1bc", "(?<n>a)\\k<n>bc")) {
+            assertTrue(NamePattern.regex(regex).matches("Aabc"), regex);
+            assertEquals(List.of(), NamePattern.regex(regex).getLiterals(), regex);
+        }
+
+        // the literal prefilter never rejects a name the regex accepts
+        java.util.Random random = new java.util.Random(11);
+        String[] pieces = {"a", "b", "ab", "a?", "b*", "(a|b)", "[ab]", ".", "a+", "\\.", "^",
+            "b{1,2}", "|", "\\d", "\\x41", "\\u0062", "\\0141", "\\cA", "\\s"};
+        String alphabet = "abAB.1 ";
+        for (int trial = 0; trial < 2000; trial++) {
+            StringBuilder regex = new StringBuilder();
+            for (int i = random.nextInt(4) + 1; i > 0; i--) {
+                regex.append(pieces[random.nextInt(pieces.length)]);
+            }
+            NamePattern pattern = NamePattern.regex(regex.toString());
+            java.util.regex.Pattern plain = java.util.regex.Pattern.compile(regex.toString(),
+                    java.util.regex.Pattern.CASE_INSENSITIVE);
+            for (int n = 0; n < 20; n++) {
+                StringBuilder name = new StringBuilder();
+                for (int i = random.nextInt(6); i > 0; i--) {
+                    name.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                assertEquals(plain.matcher(name).find(), pattern.matches(name.toString()),
+                        regex + " on " + name);
+            }
+        }
+    }
+
+    @Test
+    public void testNamePatternsIgnoreDefaultLocale() {
+        // a Turkish default locale lowers I to a dotless i, which must not hide matches
+        Locale before = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.forLanguageTag("tr"));
+            Set<BoardGame> named = Set.of(
+                    new BoardGame("ISTANBUL", 60, 2, 5, 40, 60, 2.5, 60, 7.5, 2014),
+                    new BoardGame("Hive", 61, 2, 2, 20, 20, 2.3, 61, 7.3, 2001));
+            Planner planner = new Planner(named);
+            assertTrue(NamePattern.regex("istanbul").matches("ISTANBUL"));
+            assertEquals(List.of("ISTANBUL"),
+                    planner.filter("name~/^istan/").map(BoardGame::getName).toList());
+            planner.reset();
+            assertEquals(List.of("ISTANBUL"),
+                    planner.filter("name=*stanb*").map(BoardGame::getName).toList());
+            planner.reset();
+            assertEquals(1, planner.count("name~=istanbul"));
+        } finally {
+            Locale.setDefault(before);
+        }
+    }
+
+    @Test
+    public void testNormalizedColumnsAreCached() {
+        GameCatalog catalog = new GameCatalog(games);
+        double[] ranks = catalog.normalized(GameData.RATING, ScoreSpec.Normalization.RANK);
+        assertSame(ranks, catalog.normalized(GameData.RATING, ScoreSpec.Normalization.RANK));
+        double[] scaled = catalog.normalized(GameData.YEAR, ScoreSpec.Normalization.MIN_MAX);
+        assertEquals(0.0, scaled[catalog.rowOfName("Go")]);
+        assertEquals(1.0, scaled[catalog.rowOfName("Monopoly")]);
+    }
+
+    @Test
+    public void testSeededSampleRepeats() {
+        Planner planner = new Planner(games);
+        List<BoardGame> first = planner.sample("", 3, 42L);
+        assertEquals(3, first.size());
+        assertEquals(first, planner.sample("", 3, 42L));
+        assertEquals(first, new Planner(games).sample("", 3, 42L));
+
+        // picks come back in name order
+        List<BoardGame> sorted = new ArrayList<>(first);
+        sorted.sort((a, b) -> a.getName().compareToIgnoreCase(b.getName()));
+        assertEquals(sorted, first);
+    }
+
+    @Test
+    public void testWeightedSampleSkipsZeroWeights() {
+        Set<BoardGame> weighted = new HashSet<>();
+        weighted.add(new BoardGame("heavy", 1, 1, 1, 1, 1, 0.0, 1, 9.0, 2000));
+        weighted.add(new BoardGame("light", 2, 1, 1, 1, 1, 0.0, 1, 0.5, 2000));
+        weighted.add(new BoardGame("unrated", 3, 1, 1, 1, 1, 0.0, 1, 0.0, 2000));
+        Planner planner = new Planner(weighted);
+
+        int heavy = 0;
+        for (long seed = 0; seed < 200; seed++) {
+            List<BoardGame> pick = planner.sample("", 1, GameData.RATING, seed);
+            assertEquals(1, pick.size());
+            assertNotEquals("unrated", pick.get(0).getName());
+            if (pick.get(0).getName().equals("heavy")) {
+                heavy++;
+            }
+        }
+        assertTrue(heavy > 150);
+
+        // a zero weight is never picked, even when asking for every game
+        assertEquals(2, planner.sample("", 3, GameData.RATING, 7L).size());
+        assertThrows(IllegalArgumentException.class,
+                () -> planner.sample("", 1, GameData.NAME, 7L));
+    }
+
+    @Test
+    public void testViewMatchesStream() {
+        Planner planner = new Planner(games);
+        List<BoardGame> expected = planner.filter("minPlayers >= 2", GameData.RATING, false)
+                .toList();
+        planner.reset();
+
+        ResultView view = planner.view("minPlayers >= 2", SortSpec.of(GameData.RATING, false));
+        assertEquals(expected.size(), view.size());
+        assertEquals(expected, view.asList());
+        for (int i = 0; i < view.size(); i++) {
+            assertEquals(expected.get(i), view.get(i));
+        }
+
+        // slices share the row ids of the view
+        ResultView slice = view.slice(1, 4);
+        assertEquals(3, slice.size());
+        assertEquals(view.rowId(1), slice.rowId(0));
+        assertEquals(expected.subList(1, 4), slice.stream().toList());
+        assertEquals(1, slice.slice(1, 2).size());
+        assertEquals(view.get(2), slice.slice(1, 2).get(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> slice.get(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> view.slice(2, view.size() + 1));
+    }
+
+    @Test
+    public void testSessionsShareCatalog() {
+        // Sessions over one catalog keep their own filters
+        GameCatalog catalog = new GameCatalog(games);
+        Planner first = new Planner(catalog);
+        Planner second = new Planner(catalog);
+        first.filter("minPlayers >= 2").count();
+        second.filter("name ~= go").count();
+
+        assertEquals(catalog, first.getCatalog());
+        assertEquals(List.of("MIN_PLAYERS>=2"), first.filterHistory());
+        assertEquals(List.of("NAME~=go"), second.filterHistory());
+        assertEquals(new Planner(games).filter("minPlayers >= 2").toList(),
+                first.filter("").toList());
+    }
+
+    @Test
+    public void testConcurrentSessions() throws Exception {
+        // Threads each run their own session, and all share one more, without a lock
+        GameCatalog catalog = new GameCatalog(games);
+        List<BoardGame> expected = new Planner(games)
+                .filter("minPlayers >= 2, maxPlayers <= 7", GameData.RATING, false).toList();
+        Planner shared = new Planner(catalog);
+        shared.filter("minPlayers >= 2").count();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 64; t++) {
+                results.add(pool.submit(() -> {
+                    Planner session = new Planner(catalog);
+                    boolean same = true;
+                    for (int i = 0; i < 50; i++) {
+                        session.filter("minPlayers >= 2").count();
+                        List<BoardGame> got = session
+                                .filter("maxPlayers <= 7", GameData.RATING, false).toList();
+                        same &= expected.equals(got);
+                        same &= shared.count("") == 7;
+                        shared.view("", SortSpec.of(GameData.YEAR, true)).size();
+                        session.reset();
+                    }
+                    return same;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, shared.currentStep());
+    }
+
+    @Test
+    public void testSessionManagerSpillsIdleSessions() throws Exception {
+        // With no budget, every idle session is spilled and rebuilt on its next lookup
+        Path dir = Files.createTempDirectory("sessions");
+        SessionManager manager = new SessionManager(new GameCatalog(games), 0, dir);
+        List<BoardGame> expected = manager.session("alice")
+                .filter("minPlayers >= 2, maxPlayers <= 7", GameData.RATING, false).toList();
+        manager.session("alice").filter("name ~= go").count();
+
+        manager.session("bob").filter("minPlayers > 5").count();
+        assertEquals(1, manager.getResidentSessions());
+        assertEquals(1, manager.getSpilledSessions());
+        assertEquals(1, manager.getEvictions());
+
+        Planner alice = manager.session("alice");
+        assertEquals(1, manager.getRehydrations());
+        assertTrue(manager.getRehydrationNanos() > 0);
+        assertEquals(2, alice.currentStep());
+        alice.undo();
+        assertEquals(expected, alice.filter("", GameData.RATING, false).toList());
+
+        manager.remove("bob");
+        assertEquals(1, manager.getResidentSessions());
+        assertEquals(0, manager.getSpilledSessions());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testSessionManagerConcurrentLookups() throws Exception {
+        // Spills and rebuilds run outside the lock, and every session keeps its filters
+        Path dir = Files.createTempDirectory("sessions");
+        SessionManager manager = new SessionManager(new GameCatalog(games), 0, dir);
+        for (int t = 0; t < 4; t++) {
+            manager.session("user" + t).filter("minPlayers >= 2").count();
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                String id = "user" + t;
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        assertEquals(1, manager.session(id).currentStep());
+                        assertEquals(7, manager.session(id).filter("").count());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(4, manager.getResidentSessions() + manager.getSpilledSessions());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(manager.getSpilledSessions(), files.count());
+        }
+    }
+
+    @Test
+    public void testSessionManagerDropsUnreadableSpillFile() throws Exception {
+        Path dir = Files.createTempDirectory("sessions");
+        SessionManager manager = new SessionManager(new GameCatalog(games), 0, dir);
+        manager.session("alice").filter("minPlayers >= 2").count();
+        manager.session("bob").filter("minPlayers > 5").count();
+        assertEquals(1, manager.getSpilledSessions());
+        try (Stream<Path> files = Files.list(dir)) {
+            Path file = files.findFirst().orElseThrow();
+            Files.write(file, new byte[] {1, 2, 3});
+        }
+
+        assertThrows(java.io.UncheckedIOException.class, () -> manager.session("alice"));
+        assertEquals(0, manager.getSpilledSessions());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+        assertEquals(0, manager.session("alice").currentStep());
+    }
+
+    @Test
+    public void testVersionReclaimedWhenUnreachable() throws InterruptedException {
+        VersionedCatalog versions = new VersionedCatalog(new GameCatalog(games));
+        VersionedCatalog.Snapshot pinned = versions.pin();
+        assertEquals(1, pinned.getVersion());
+        assertSame(pinned, versions.pin());
+
+        // the old version stays readable, and counted as live, while referenced
+        assertEquals(2, versions.publish(new GameCatalog(games)));
+        assertEquals(8, pinned.getCatalog().size());
+        System.gc();
+        assertEquals(2, versions.getLiveVersions());
+        assertEquals(0, versions.getReclaimed());
+
+        pinned = null;
+        for (int i = 0; i < 100 && versions.getReclaimed() == 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(1, versions.getLiveVersions());
+        assertEquals(1, versions.getReclaimed());
+        try (VersionedCatalog.Snapshot current = versions.pin()) {
+            assertEquals(2, current.getVersion());
+        }
+    }
+
+    @Test
+    public void testSessionsReplayOnNewVersion() {
+        // Publishing a catalog updates every session, but not views taken before
+        VersionedCatalog versions = new VersionedCatalog(new GameCatalog(games));
+        Planner first = new Planner(versions);
+        Planner second = new Planner(versions);
+        List<BoardGame> before = first.filter("minPlayers >= 2").toList();
+        ResultView pending = first.view("");
+
+        Set<BoardGame> smaller = new HashSet<>(games);
+        smaller.removeIf(game -> game.getMinPlayers() >= 6);
+        second.reload(smaller);
+
+        List<BoardGame> after = first.filter("").toList();
+        assertEquals(1, first.currentStep());
+        assertEquals(before.stream().filter(game -> game.getMinPlayers() < 6).toList(), after);
+        assertEquals(before, pending.asList());
+        assertEquals(5, second.count(""));
+        // the pending view still reads the first version, so it is not reclaimed
+        System.gc();
+        assertEquals(2, versions.getLiveVersions());
+        assertEquals(before.size(), pending.size());
+    }
+
+    @Test
+    public void testParallelConfigsSharePool() {
+        // Creating settings must not start a pool of its own each time
+        Set<BoardGame> many = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            many.add(new BoardGame("Game " + i, i, 1, 2 + i % 6, 10, 60, 2.0, i + 1, 5.0, 2000));
+        }
+        Planner planner = new Planner(many);
+        planner.setParallelConfig(new ParallelConfig(0, 3, 64));
+        planner.filter("maxPlayers > 3").count();
+        long before = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("ForkJoinPool-")).count();
+        for (int i = 0; i < 20; i++) {
+            planner.reset();
+            planner.setParallelConfig(new ParallelConfig(0, 3, 64));
+            planner.filter("maxPlayers > 3").count();
+        }
+        long after = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("ForkJoinPool-")).count();
+        assertTrue(after <= before + 3, before + " -> " + after);
+    }
+
+    @Test
+    public void testBatchMatchesSeparateFilters() {
+        List<QuerySpec> queries = List.of(
+                new QuerySpec("minPlayers >= 2"),
+                new QuerySpec("minPlayers >= 2, maxPlayers <= 7", SortSpec.parse("rating desc")),
+                new QuerySpec("maxPlayers <= 7, MINPLAYERS>=2", SortSpec.parse("year asc")),
+                new QuerySpec("name ~= go, minPlayers >= 2"),
+                new QuerySpec(""),
+                new QuerySpec("minPlayers >= 2"));
+        for (ParallelConfig config : List.of(ParallelConfig.SEQUENTIAL,
+                new ParallelConfig(0, 4, 64))) {
+            Planner planner = new Planner(games);
+            planner.setParallelConfig(config);
+            planner.filter("maxPlayers > 2").count();
+            List<ResultView> views = planner.batch(queries);
+
+            assertEquals(queries.size(), views.size());
+            for (int i = 0; i < queries.size(); i++) {
+                Planner single = new Planner(games);
+                single.filter("maxPlayers > 2").count();
+                List<BoardGame> expected = single.filter(queries.get(i).getFilter(),
+                        queries.get(i).getSortOn()).toList();
+                assertEquals(expected, views.get(i).asList(), queries.get(i).toString());
+            }
+            // the current filter is unchanged
+            assertEquals(1, planner.currentStep());
+        }
+    }
+
+    @Test
+    public void testSubscriptionDeltas() {
+        VersionedCatalog versions = new VersionedCatalog(new GameCatalog(games));
+        Planner planner = new Planner(versions);
+        SortSpec byRating = SortSpec.parse("rating desc");
+        List<ResultDelta> deltas = new ArrayList<>();
+        Subscription subscription = planner.subscribe("minPlayers >= 2", byRating, deltas::add);
+        assertEquals(planner.filter("minPlayers >= 2", byRating).toList(),
+                subscription.getResult().asList());
+        planner.reset();
+
+        // only the changed games are tested against the filter
+        BoardGame chess = new BoardGame("Chess", 7, 2, 2, 10, 20, 10.0, 700, 4.0, 2006);
+        BoardGame azul = new BoardGame("Azul", 9, 2, 4, 30, 45, 1.8, 50, 7.8, 2017);
+        BoardGame go = new BoardGame("Go", 1, 1, 5, 30, 30, 8.0, 100, 7.5, 2000);
+        BoardGame days = new BoardGame("17 days", 6, 1, 8, 70, 70, 9.0, 650, 9.0, 2005);
+        versions.update(List.of(chess, azul, go, days), List.of(8));
+
+        assertEquals(1, deltas.size());
+        ResultDelta delta = deltas.get(0);
+        assertEquals(2, delta.getVersion());
+        assertEquals(List.of(azul), delta.getAdded());
+        assertEquals(Set.of("Monopoly", "Go"), delta.getRemoved().stream()
+                .map(BoardGame::getName).collect(Collectors.toSet()));
+        assertEquals(List.of(chess), delta.getReordered());
+        assertEquals(planner.filter("minPlayers >= 2", byRating).toList(),
+                subscription.getResult().asList());
+
+        // a full publish is compared by id
+        versions.publish(new GameCatalog(games));
+        assertEquals(2, deltas.size());
+        assertEquals(2, deltas.get(1).getAdded().size());
+        assertEquals(List.of(azul), deltas.get(1).getRemoved());
+        assertEquals(1, deltas.get(1).getReordered().size());
+
+        subscription.close();
+        versions.update(List.of(azul), List.of());
+        assertEquals(2, deltas.size());
+        assertEquals(3, subscription.getVersion());
+    }
+
+    @Test
+    public void testSubscribeRejectsClausesThatNoLongerParse() {
+        VersionedCatalog versions = new VersionedCatalog(new GameCatalog(games));
+        Planner planner = new Planner(versions);
+        try {
+            ComputedColumn.define("span", "maxplayers - minplayers", false);
+            planner.filter("span >= 2").count();
+        } finally {
+            ComputedColumn.remove("span");
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> planner.subscribe("", SortSpec.parse("rating desc"), delta -> { }));
+        // no listener was left behind to fail on the next version
+        versions.publish(new GameCatalog(games));
+    }
+
+    @Test
+    public void testSubscriptionSeesExtraColumnChanges() {
+        BoardGame owned = new BoardGame("Owned", 50, 2, 4, 30, 60, 2.0, 10, 7.0, 2010,
+                Map.of(ExtraColumn.NUM_OWNED, "100"));
+        BoardGame other = new BoardGame("Other", 51, 2, 4, 30, 60, 2.0, 11, 7.0, 2010,
+                Map.of(ExtraColumn.NUM_OWNED, "300"));
+        VersionedCatalog versions = new VersionedCatalog(new GameCatalog(Set.of(owned, other)));
+        Planner planner = new Planner(versions);
+        List<ResultDelta> deltas = new ArrayList<>();
+        Subscription subscription = planner.subscribe("numowned > 200",
+                SortSpec.parse("numowned desc"), deltas::add);
+        assertEquals(List.of(other), subscription.getResult().asList());
+
+        // only the extra value changes, which still makes the game join the result
+        BoardGame more = new BoardGame("Owned", 50, 2, 4, 30, 60, 2.0, 10, 7.0, 2010,
+                Map.of(ExtraColumn.NUM_OWNED, "500"));
+        versions.update(List.of(more), List.of());
+        assertEquals(1, deltas.size());
+        assertEquals(List.of(more), deltas.get(0).getAdded());
+        assertEquals(List.of(more, other), subscription.getResult().asList());
+
+        // and a full publish of the old values takes it out again
+        versions.publish(new GameCatalog(Set.of(owned, other)));
+        assertEquals(2, deltas.size());
+        assertEquals(List.of(more), deltas.get(1).getRemoved());
+        assertEquals(List.of(other), subscription.getResult().asList());
+        subscription.close();
+    }
+}